@@ -178,7 +178,7 @@ export const ChatProvider = ({ children, modelId = 'gemma3:1b' }: { children: Re
         content: msg.content,
         timestamp: new Date(msg.createdAt),
         thinking: false,
-        think: ''
+        think: msg.reasoning ?? ''
       }));
       
       // Set the retrieved messages
@@ -215,7 +215,7 @@ export const ChatProvider = ({ children, modelId = 'gemma3:1b' }: { children: Re
       // Debug log to verify the content being sent
       console.debug('Saving message content:', actualContent);
       
-      const response = await chatApiService.sendMessage(chatId, actualContent);
+      const response = await chatApiService.sendMessage(chatId, actualContent, isUserMessage ? 'USER' : 'ASSISTANT');
       
       // If this was the first user message, the title might have been updated
       if (isUserMessage && state.messages.filter(m => m.role === 'user').length === 1) {
@@ -43,7 +43,7 @@ const chatApiService = {
   /**
    * Send a message to a chat
    */
-  sendMessage: async (chatId: string, content: string): Promise<ChatMessageResponse> => {
+  sendMessage: async (chatId: string, content: string, role: 'USER' | 'ASSISTANT' = 'USER'): Promise<ChatMessageResponse> => {
     if (!chatId) {
       throw new Error('Chat ID is required');
     }
@@ -69,7 +69,8 @@ const chatApiService = {
     console.debug(`Sending message to chat ${chatId}:`, messageContent.substring(0, 50) + (messageContent.length > 50 ? '...' : ''));
     
     const response = await api.post<ChatMessageResponse>(`/api/chats/${chatId}/messages`, {
-      content: messageContent
+      content: messageContent,
+      role
     });
     return response.data;
   },
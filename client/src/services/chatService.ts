@@ -17,6 +17,8 @@ interface ThinkingState {
   startTimestamp?: string;
   endTimestamp?: string;
   clientSideStartTime?: number;
+  // Whether the last server frame was a reasoning delta
+  inReasoningFrames?: boolean;
 }
 
 // Result of processing a message chunk
@@ -284,6 +286,29 @@ function transformToMessageWithThinking(
   }
 }
 
+// The server sends compact delta frames ({ content } for the answer, { reasoning } for the think
+// block) and one final stats frame ({ done: true, ... }); expand them to the Ollama chunk shape
+// used by the rest of this file, with the think tags the thinking logic expects
+function normalizeFrame(frame: any, modelId: string, state: ThinkingState): any {
+  if (frame.error || frame.message) return frame;
+  
+  let content = frame.content ?? '';
+  if (frame.reasoning != null) {
+    content = (state.inReasoningFrames ? '' : '<think>') + frame.reasoning;
+    state.inReasoningFrames = true;
+  } else if (state.inReasoningFrames && (content || frame.done)) {
+    content = '</think>' + content;
+    state.inReasoningFrames = false;
+  }
+  
+  return {
+    ...frame,
+    model: frame.model || modelId,
+    message: { role: 'assistant', content },
+    done: !!frame.done
+  };
+}
+
 // Process a single line of SSE data
 function processEventLine(
   line: string,
@@ -299,7 +324,7 @@ function processEventLine(
   const jsonStr = line.substring(5).trim(); // Remove 'data:' prefix
   
   try {
-    const data = JSON.parse(jsonStr);
+    const data = normalizeFrame(JSON.parse(jsonStr), modelId, state);
     
     // Check for errors
     if (data.error) {
@@ -59,6 +59,7 @@ export interface ChatMessageResponse {
   id: string;
   role: string;
   content: string;
+  reasoning?: string;
   tokens?: number;
   model?: string;
   createdAt: string;
@@ -0,0 +1,307 @@
+package com.congdinh.vivuchat.benchmarks;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.controllers.OllamaChatController;
+import com.congdinh.vivuchat.dtos.ollama.ConversationContext;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelDetails;
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelResponse;
+import com.congdinh.vivuchat.entities.Chat;
+import com.congdinh.vivuchat.services.interfaces.IConversationContextBuilder;
+import com.congdinh.vivuchat.services.interfaces.IModelRegistry;
+import com.congdinh.vivuchat.services.interfaces.IOllamaService;
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.embedded.EmbeddedWebServerFactoryCustomizerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test for non-streaming completions: a burst of concurrent requests
+ * against the real chat controller on embedded Tomcat (threads.max=100), with
+ * Ollama replaced by a one-second generation. Reports the peak and mean number
+ * of busy Tomcat worker threads; the mean stays flat as the burst grows because
+ * the controller answers through servlet async. The "blocking" variant calls
+ * block() on the worker, as the endpoint used to, for comparison.
+ * JMH sums the counters over iterations in the summary table, read them from
+ * the per-iteration lines. Client and server share the machine, so on few
+ * cores the largest burst is bound by connection setup, not by the workers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class CompletionLoadBenchmark {
+
+    private static final String BODY = """
+            {"model": "bench:latest", "messages": [{"role": "user", "content": "Xin chao"}]}
+            """;
+
+    @Param({"async", "blocking"})
+    public String endpoint;
+
+    @Param({"50", "200", "800"})
+    public int concurrency;
+
+    private ConfigurableApplicationContext context;
+    private ThreadPoolExecutor workers;
+    private HttpClient client;
+    private URI uri;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Threads {
+        public long peakBusyWorkers;
+        public double meanBusyWorkers;
+        public long failures;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peakBusyWorkers = 0;
+            meanBusyWorkers = 0;
+            failures = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(App.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(
+                        // Not the application's own properties and their debug logging
+                        "spring.config.name=completion-load-benchmark",
+                        "server.port=0",
+                        "server.tomcat.threads.max=100",
+                        // Enough connections and backlog for the whole burst, threads are what is
+                        // measured, not SYN retries
+                        "server.tomcat.max-connections=10000",
+                        "server.tomcat.accept-count=2000",
+                        // Keep a processor per connection between bursts, creating one registers it
+                        // under a lock every connection shares
+                        "server.tomcat.processor-cache=-1",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=warn")
+                .run();
+        TomcatWebServer webServer = (TomcatWebServer) ((ServletWebServerApplicationContext) context).getWebServer();
+        workers = (ThreadPoolExecutor) webServer.getTomcat().getConnector().getProtocolHandler().getExecutor();
+        int port = webServer.getPort();
+        uri = URI.create("http://127.0.0.1:" + port + ("async".equals(endpoint) ? "/api/ollama/chat" : "/blocking"));
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        context.close();
+    }
+
+    @Benchmark
+    public void burst(Threads threads) {
+        AtomicInteger peak = new AtomicInteger();
+        AtomicLong busySum = new AtomicLong();
+        AtomicLong samples = new AtomicLong();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> {
+            int busy = workers.getActiveCount();
+            peak.accumulateAndGet(busy, Math::max);
+            busySum.addAndGet(busy);
+            samples.incrementAndGet();
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            responses.add(client.sendAsync(HttpRequest.newBuilder(uri)
+                            .header("Content-Type", "application/json")
+                            .timeout(Duration.ofMinutes(2))
+                            .POST(HttpRequest.BodyPublishers.ofString(BODY))
+                            .build(),
+                    HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() != 200) {
+                threads.failures++;
+            }
+        }
+
+        sampler.shutdownNow();
+        threads.peakBusyWorkers = Math.max(threads.peakBusyWorkers, peak.get());
+        threads.meanBusyWorkers = Math.max(threads.meanBusyWorkers, (double) busySum.get() / Math.max(1, samples.get()));
+    }
+
+    @SpringBootConfiguration
+    @ImportAutoConfiguration({
+            ServletWebServerFactoryAutoConfiguration.class,
+            EmbeddedWebServerFactoryCustomizerAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class,
+            WebMvcAutoConfiguration.class,
+            HttpMessageConvertersAutoConfiguration.class,
+            JacksonAutoConfiguration.class
+    })
+    static class App {
+
+        @Bean
+        IOllamaService ollamaService() {
+            return new SlowOllamaService();
+        }
+
+        @Bean
+        OllamaChatController ollamaChatController(IOllamaService ollamaService) {
+            return new OllamaChatController(ollamaService, new OllamaConfig(), new PassThroughContextBuilder(),
+                    new EverythingInstalledRegistry());
+        }
+
+        @Bean
+        BlockingController blockingController(IOllamaService ollamaService) {
+            return new BlockingController(ollamaService);
+        }
+    }
+
+    // The endpoint as it was before servlet async: the worker waits for the generation
+    @RestController
+    static class BlockingController {
+
+        private final IOllamaService ollamaService;
+
+        BlockingController(IOllamaService ollamaService) {
+            this.ollamaService = ollamaService;
+        }
+
+        @PostMapping("/blocking")
+        OllamaCompletionResponse complete() {
+            return ollamaService.generateCompletion("bench:latest", List.of(), null).block();
+        }
+    }
+
+    // Ollama taking a second per generation. The stubs are plain classes, not Mockito
+    // mocks: Mockito serialises invocations on a lock, which throttles the burst
+    static class SlowOllamaService implements IOllamaService {
+
+        @Override
+        public Mono<OllamaCompletionResponse> generateCompletion(String model, List<Map<String, String>> messages,
+                                                                 Map<String, Object> options) {
+            return Mono.delay(Duration.ofSeconds(1))
+                    .map(tick -> OllamaCompletionResponse.builder()
+                            .model(model)
+                            .message(new OllamaCompletionResponse.OllamaMessage("assistant", "Chao ban"))
+                            .done(true)
+                            .build());
+        }
+
+        @Override
+        public Mono<OllamaCompletionResponse> requestCompletion(String model, List<Map<String, String>> messages,
+                                                                Map<String, Object> options) {
+            return generateCompletion(model, messages, options);
+        }
+
+        @Override
+        public Flux<ServerSentEvent<Object>> streamCompletion(String model, List<Map<String, String>> messages,
+                                                              boolean streaming, Map<String, Object> options) {
+            return Flux.error(new UnsupportedOperationException());
+        }
+
+        @Override
+        public Flux<ServerSentEvent<Object>> resumeCompletion(String lastEventId) {
+            return Flux.error(new UnsupportedOperationException());
+        }
+
+        @Override
+        public Flux<OllamaCompletionResponse> streamChat(String model, List<Map<String, String>> messages,
+                                                         Map<String, Object> options) {
+            return Flux.error(new UnsupportedOperationException());
+        }
+    }
+
+    static class PassThroughContextBuilder implements IConversationContextBuilder {
+
+        @Override
+        public ConversationContext forChat(Chat chat) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ConversationContext fit(String model, List<Map<String, String>> messages) {
+            return ConversationContext.builder().messages(messages).build();
+        }
+    }
+
+    static class EverythingInstalledRegistry implements IModelRegistry {
+
+        @Override
+        public Flux<OllamaModelResponse> listLocalModels() {
+            return Flux.empty();
+        }
+
+        @Override
+        public Flux<OllamaModelResponse> listRunningModels() {
+            return Flux.empty();
+        }
+
+        @Override
+        public Mono<OllamaModelDetails> getModelDetails(String model) {
+            return Mono.empty();
+        }
+
+        @Override
+        public boolean isInstalled(String model) {
+            return true;
+        }
+
+        @Override
+        public Mono<Boolean> checkInstalled(String model) {
+            return Mono.just(true);
+        }
+
+        @Override
+        public void invalidate(String model) {
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.congdinh.vivuchat.benchmarks;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import com.congdinh.vivuchat.services.implementations.OllamaStreamEvents;
+import com.congdinh.vivuchat.services.implementations.TokenBatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent SSE streams with and without token coalescing. Every stream gets
+ * one token every few milliseconds, like Ollama, and every frame is written and
+ * flushed to /dev/null on its own, one write syscall per frame like Tomcat
+ * behind nginx. Reports frames (flushes), the time spent writing them and
+ * the process CPU time, which also covers the simulated token source;
+ * streamFlushMillis=0 disables coalescing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class StreamCoalescingBenchmark {
+
+    @Param({"0", "40"})
+    public int streamFlushMillis;
+
+    @Param({"500"})
+    public int streams;
+
+    @Param({"200"})
+    public int tokensPerStream;
+
+    @Param({"10"})
+    public int tokenIntervalMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private TokenBatcher tokenBatcher;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Writes {
+        public long frames;
+        public long writeMillis;
+        public long cpuMillis;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            frames = 0;
+            writeMillis = 0;
+            cpuMillis = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        OllamaConfig ollamaConfig = new OllamaConfig();
+        ollamaConfig.setStreamFlushMillis(streamFlushMillis);
+        tokenBatcher = new TokenBatcher(ollamaConfig, new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public void streams(Writes writes) throws IOException {
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long cpuBefore = os.getProcessCpuTime();
+        AtomicLong frames = new AtomicLong();
+        AtomicLong writeNanos = new AtomicLong();
+
+        Flux.range(0, streams)
+                .flatMap(stream -> Flux.using(
+                        () -> new FileOutputStream("/dev/null"),
+                        out -> OllamaStreamEvents.toEvents(tokenBatcher.batch(tokens()), "bench")
+                                .doOnNext(event -> write(out, event, frames, writeNanos)),
+                        StreamCoalescingBenchmark::close), streams)
+                .blockLast();
+
+        writes.frames += frames.get();
+        writes.writeMillis += TimeUnit.NANOSECONDS.toMillis(writeNanos.get());
+        writes.cpuMillis += TimeUnit.NANOSECONDS.toMillis(os.getProcessCpuTime() - cpuBefore);
+    }
+
+    private Flux<OllamaCompletionResponse> tokens() {
+        return Flux.interval(Duration.ofMillis(tokenIntervalMillis))
+                .take(tokensPerStream)
+                .map(i -> OllamaCompletionResponse.builder()
+                        .model("bench")
+                        .message(new OllamaCompletionResponse.OllamaMessage("assistant", " token" + i))
+                        .done(i == tokensPerStream - 1)
+                        .build());
+    }
+
+    // What the SSE writer does per frame: serialize, write and flush
+    private void write(OutputStream out, ServerSentEvent<Object> event, AtomicLong frames, AtomicLong writeNanos) {
+        long started = System.nanoTime();
+        try {
+            String frame = "event:" + event.event() + "\ndata:" + objectMapper.writeValueAsString(event.data()) + "\n\n";
+            out.write(frame.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            frames.incrementAndGet();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeNanos.addAndGet(System.nanoTime() - started);
+        }
+    }
+
+    private static void close(OutputStream out) {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
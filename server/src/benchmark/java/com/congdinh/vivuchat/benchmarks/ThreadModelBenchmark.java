@@ -0,0 +1,131 @@
+package com.congdinh.vivuchat.benchmarks;
+
+import com.congdinh.vivuchat.config.ConcurrencyLimitedDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to serve a burst of requests on Tomcat's platform pool against virtual
+ * threads. Each request waits on a slow upstream (Ollama), then holds one of a
+ * small pool of JDBC connections for a short query, the shape of a chat reply
+ * being saved. The virtual variant goes through the same connection gate as
+ * spring.threads.virtual.enabled=true.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ThreadModelBenchmark {
+
+    private static final int POOL_SIZE = 10;
+    // server.tomcat.threads.max in application.properties
+    private static final int TOMCAT_THREADS = 100;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"2000"})
+    public int requests;
+
+    @Param({"200"})
+    public int upstreamMillis;
+
+    @Param({"1"})
+    public int queryMillis;
+
+    private ExecutorService executor;
+    private DataSource dataSource;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        DataSource pool = new FixedPool(POOL_SIZE);
+        if ("virtual".equals(threads)) {
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+            dataSource = new ConcurrencyLimitedDataSource(pool, POOL_SIZE, 30_000);
+        } else {
+            executor = Executors.newFixedThreadPool(TOMCAT_THREADS);
+            dataSource = pool;
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int burst() throws Exception {
+        List<Future<?>> pending = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            pending.add(executor.submit(() -> {
+                Thread.sleep(upstreamMillis);
+                try (Connection connection = dataSource.getConnection()) {
+                    Thread.sleep(queryMillis);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : pending) {
+            future.get();
+        }
+        return pending.size();
+    }
+
+    // Stands in for Hikari: a fixed number of connections, callers wait for a free one
+    private static final class FixedPool extends AbstractDataSource {
+
+        private final Semaphore connections;
+
+        private FixedPool(int size) {
+            this.connections = new Semaphore(size, true);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            try {
+                connections.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for a connection", e);
+            }
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if ("close".equals(method.getName())) {
+                            connections.release();
+                        }
+                        return null;
+                    });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+    }
+}
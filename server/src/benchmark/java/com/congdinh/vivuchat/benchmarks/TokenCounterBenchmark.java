@@ -0,0 +1,94 @@
+package com.congdinh.vivuchat.benchmarks;
+
+import com.congdinh.vivuchat.services.implementations.BpeTokenizer;
+import com.congdinh.vivuchat.services.implementations.HeuristicTokenCounter;
+import com.congdinh.vivuchat.services.implementations.TokenizerVocabLoader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts per second of the vocabulary tokenizer against the heuristic
+ * estimate. Add "-jvmArgsAppend -Dbenchmark.vocab=/path/to/tokenizer.json" (or a .gguf)
+ * to the JMH options to measure a real vocabulary, otherwise a small letter-pair
+ * vocabulary is built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenCounterBenchmark {
+
+    private static final String PROSE = "The quick brown fox jumps over the lazy dog while the model "
+            + "streams its answer back to the browser one token at a time. ";
+
+    // prose: ordinary sentences, paste: one long run without spaces like a minified file or base64 blob
+    @Param({"prose", "paste"})
+    public String shape;
+
+    @Param({"1000", "100000"})
+    public int length;
+
+    private BpeTokenizer tokenizer;
+    private final HeuristicTokenCounter heuristic = new HeuristicTokenCounter();
+    private String text;
+
+    @Setup
+    public void setUp() throws Exception {
+        String vocab = System.getProperty("benchmark.vocab");
+        tokenizer = vocab != null
+                ? TokenizerVocabLoader.load(Path.of(vocab), new ObjectMapper())
+                : letterPairs();
+        String unit = "prose".equals(shape) ? PROSE : PROSE.replace(" ", "");
+        text = unit.repeat(length / unit.length() + 1).substring(0, length);
+    }
+
+    @Benchmark
+    public int vocabulary() {
+        return tokenizer.count(text);
+    }
+
+    @Benchmark
+    public int heuristic() {
+        return heuristic.count(null, text);
+    }
+
+    // Every lower-case letter, space-prefixed letters and all letter pairs, enough to exercise the merge loop
+    private static BpeTokenizer letterPairs() {
+        Map<String, Integer> vocab = new HashMap<>();
+        List<String[]> merges = new ArrayList<>();
+        for (char c = 'a'; c <= 'z'; c++) {
+            vocab.put(String.valueOf(c), vocab.size());
+            vocab.put(String.valueOf(Character.toUpperCase(c)), vocab.size());
+        }
+        vocab.put("Ġ", vocab.size());
+        vocab.put(".", vocab.size());
+        for (char a = 'a'; a <= 'z'; a++) {
+            merges.add(new String[]{"Ġ", String.valueOf(a)});
+            vocab.put("Ġ" + a, vocab.size());
+            for (char b = 'a'; b <= 'z'; b++) {
+                merges.add(new String[]{String.valueOf(a), String.valueOf(b)});
+                vocab.put("" + a + b, vocab.size());
+            }
+        }
+        return BpeTokenizer.byteLevel(vocab, merges, BpeTokenizer.preTokenizerFor(null));
+    }
+}
@@ -0,0 +1,21 @@
+package com.congdinh.vivuchat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.jobs")
+public class CompletionJobConfig {
+    // Whether this instance claims and runs jobs (instances can be API-only)
+    private boolean workerEnabled = true;
+    // Jobs run at once by this instance
+    private int workerConcurrency = 2;
+    private long pollMillis = 1000;
+    // A claim expires unless renewed, letting another instance retry after a crash
+    private int leaseSeconds = 60;
+    private int maxAttempts = 3;
+    // How often job subscribers are sent the current status
+    private long statusPollMillis = 1000;
+}
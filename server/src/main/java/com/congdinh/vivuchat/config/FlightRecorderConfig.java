@@ -0,0 +1,18 @@
+package com.congdinh.vivuchat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.jfr")
+public class FlightRecorderConfig {
+    // Continuous in-process recording that admins can dump on demand
+    private boolean enabled = true;
+    // A .jfc resource location, or a JDK configuration name such as "default" or "profile"
+    private String profile = "classpath:jfr/vivuchat.jfc";
+    // How much history the recording keeps on disk, whichever limit is hit first
+    private int maxAgeMinutes = 30;
+    private long maxSizeMb = 256;
+}
@@ -4,6 +4,11 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "app.ollama")
@@ -15,4 +20,64 @@ public class OllamaConfig {
     private double defaultRepeatPenalty = 1.2;
     private boolean defaultNuma = true;
     private String defaultModel = "deepseek-r1:latest";
+    
+    // Ollama backends, falls back to apiUrl when empty
+    private List<String> nodes = new ArrayList<>();
+    // Consecutive failures before a node is ejected from the pool
+    private int nodeFailureThreshold = 3;
+    private int nodeEjectionSeconds = 30;
+    private int runningModelsRefreshSeconds = 15;
+    // A generation whose load_duration reaches this is counted as a cold model load
+    private long coldLoadThresholdMillis = 1000;
+    // Model catalogue cache: refreshed in the background, dropped if refreshes keep failing
+    private int modelCatalogRefreshSeconds = 60;
+    private int modelCatalogExpireMinutes = 30;
+    // Longest a pull/push progress stream stays open for one caller
+    private int modelTransferTimeoutMinutes = 180;
+    
+    // Admission control: concurrent generations per model, defaults to parallel slots x nodes
+    private int parallelSlotsPerNode = 4;
+    private Map<String, Integer> modelConcurrency = new HashMap<>();
+    private int maxQueuedPerModel = 200;
+    // Deficit round robin quantum per user, in cost units (1 unit = 4 KB of prompt)
+    private int schedulerQuantum = 1;
+    
+    // Cache for deterministic completions (temperature 0 with a fixed seed)
+    private boolean responseCacheEnabled = true;
+    private long responseCacheMaxBytes = 64L * 1024 * 1024;
+    private boolean responseCacheOffHeap = false;
+    private int responseCacheTtlMinutes = 60;
+    // Size of the synthetic chunks used to replay a cached answer as a stream
+    private int responseCacheReplayChunkChars = 16;
+    
+    // SSE token coalescing: flush every N ms or M bytes, the first token is sent at once (0 disables)
+    private int streamFlushMillis = 40;
+    private int streamFlushBytes = 512;
+    // Keep-alive comment interval on SSE streams, a failed write cancels the upstream generation
+    private int sseHeartbeatSeconds = 10;
+    // Resumable SSE: events kept per generation for Last-Event-ID reconnects, how long a
+    // generation without clients keeps running, and how long a finished one stays resumable
+    private int streamResumeBufferEvents = 1024;
+    private int streamResumeGraceSeconds = 15;
+    private int streamResumeRetentionSeconds = 60;
+    
+    // Conversation context: every request to a model uses its context size as num_ctx (Ollama
+    // reloads the runner when num_ctx changes), the prompt budget is that minus room for the reply
+    private int contextTokens = 4096;
+    private Map<String, Integer> modelContextTokens = new HashMap<>();
+    private int replyReserveTokens = 1024;
+    
+    // Batch API: completions run at once per batch (callers may ask for up to the max)
+    private int batchParallelism = 4;
+    private int batchMaxParallelism = 16;
+    private int batchTimeoutMinutes = 720;
+    
+    // Chat titles: generated after the first reply by this model (the chat's model when blank or not installed)
+    private String titleModel = "";
+    private int titleMaxTokens = 32;
+    private int titleMaxChars = 60;
+    
+    public int contextTokens(String model) {
+        return modelContextTokens.getOrDefault(model, contextTokens);
+    }
 }
@@ -0,0 +1,72 @@
+package com.congdinh.vivuchat.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * Execution mode for blocking code. With spring.threads.virtual.enabled=true
+ * Tomcat handles requests on virtual threads and blocking work handed off from
+ * reactive pipelines runs on virtual threads too. Since thousands of virtual
+ * threads can then reach JPA at once, JDBC connections are gated by a fair
+ * semaphore and carrier-thread pinning is reported from JFR.
+ */
+@Slf4j
+@Configuration
+public class ThreadingConfig {
+
+    // Where reactive pipelines run blocking calls such as JPA saves
+    @Bean(destroyMethod = "dispose")
+    public Scheduler blockingScheduler(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            log.info("Running blocking work on virtual threads");
+            return Schedulers.fromExecutorService(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("blocking-", 0).factory()),
+                    "blocking-virtual");
+        }
+        return Schedulers.boundedElastic();
+    }
+
+    @Configuration
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    static class VirtualThreads {
+
+        // Static so the data source is wrapped before anything asks for a connection
+        @Bean
+        static BeanPostProcessor dataSourceConcurrencyLimiter(
+                @Value("${app.threads.dbConcurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int permits,
+                @Value("${spring.datasource.hikari.connection-timeout:30000}") long timeoutMillis
+        ) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitedDataSource)) {
+                        log.info("Limiting data source {} to {} concurrent connections", beanName, permits);
+                        return new ConcurrencyLimitedDataSource(dataSource, permits, timeoutMillis);
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        @Bean
+        VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+                MeterRegistry meterRegistry,
+                @Value("${app.threads.pinnedThresholdMillis:20}") long thresholdMillis
+        ) {
+            return new VirtualThreadPinningMonitor(meterRegistry, Duration.ofMillis(thresholdMillis));
+        }
+    }
+}
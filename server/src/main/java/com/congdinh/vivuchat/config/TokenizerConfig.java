@@ -0,0 +1,16 @@
+package com.congdinh.vivuchat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.tokenizer")
+public class TokenizerConfig {
+    // Model name -> GGUF file or exported tokenizer.json holding its vocabulary
+    private Map<String, String> vocabs = new HashMap<>();
+}
@@ -0,0 +1,31 @@
+package com.congdinh.vivuchat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.limits")
+public class UsageLimitConfig {
+    private boolean enabled = true;
+    // Applied when no user or role override sets a value, 0 means unlimited
+    private int requestsPerMinute = 20;
+    private long tokensPerDay = 200_000;
+    // Overrides by role name (ROLE_ADMIN, ROLE_USER), the most generous of a user's roles wins
+    private Map<String, Limit> roles = new HashMap<>();
+    // Overrides by username, taking precedence over roles
+    private Map<String, Limit> users = new HashMap<>();
+    // How often in-memory counters are written to and refreshed from Postgres
+    private int reconcileSeconds = 30;
+
+    @Data
+    public static class Limit {
+        // Unset values fall back to the defaults above
+        private Integer requestsPerMinute;
+        private Long tokensPerDay;
+    }
+}
@@ -0,0 +1,18 @@
+package com.congdinh.vivuchat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.metering")
+public class UsageMeteringConfig {
+    private boolean enabled = true;
+    // How often minute rollups are written to Postgres, a minute is rewritten until it closes
+    private int flushSeconds = 15;
+    // Rows per batched INSERT statement
+    private int batchSize = 500;
+    // Longest time range the admin usage API answers in one call
+    private int maxQueryDays = 92;
+}
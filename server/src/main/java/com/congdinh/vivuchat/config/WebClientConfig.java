@@ -21,8 +21,9 @@ import java.util.concurrent.TimeUnit;
 @Configuration
 public class WebClientConfig {
 
+    // Shared by every Ollama node, the node balancer clones it and sets the node base URL
     @Bean
-    public WebClient ollamaWebClient(OllamaConfig ollamaConfig) {
+    public WebClient.Builder ollamaWebClientBuilder(OllamaConfig ollamaConfig) {
         // Create a connection provider with proper connection pooling
         ConnectionProvider provider = ConnectionProvider.builder("ollama-connection-pool")
                 .maxConnections(50)
@@ -46,13 +47,11 @@ public class WebClientConfig {
                 .build();
 
         return WebClient.builder()
-                .baseUrl(ollamaConfig.getApiUrl())
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .exchangeStrategies(exchangeStrategies)
                 .filter(logRequest())
                 .filter(logResponse())
-                .filter(handleErrors())
-                .build();
+                .filter(handleErrors());
     }
     
     // Request logging filter
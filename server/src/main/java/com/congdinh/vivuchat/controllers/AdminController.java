@@ -8,9 +8,12 @@ import com.congdinh.vivuchat.repositories.IRefreshTokenRepository;
 import com.congdinh.vivuchat.repositories.IUserRepository;
 import com.congdinh.vivuchat.services.interfaces.IAuthService;
 import com.congdinh.vivuchat.services.interfaces.IRefreshTokenService;
+import com.congdinh.vivuchat.dtos.admin.UsageReportResponse;
 import com.congdinh.vivuchat.dtos.admin.UserAdminResponse;
 import com.congdinh.vivuchat.dtos.admin.UserStatusUpdateRequest;
 import com.congdinh.vivuchat.services.interfaces.IAdminUserService;
+import com.congdinh.vivuchat.services.interfaces.IFlightRecorderService;
+import com.congdinh.vivuchat.services.interfaces.IUsageMeter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -26,11 +29,18 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +61,8 @@ public class AdminController {
     private final IRefreshTokenRepository refreshTokenRepository;
     private final ApplicationEventPublisher eventPublisher;
     private final IAdminUserService adminUserService;
+    private final IUsageMeter usageMeter;
+    private final IFlightRecorderService flightRecorderService;
 
     @PostMapping("/tokens/revoke")
     @Operation(
@@ -246,6 +258,75 @@ public class AdminController {
         }
     }
 
+    @GetMapping("/usage")
+    @Operation(
+        summary = "Query model usage",
+        description = "Requests, tokens and Ollama timings from per-minute rollups, as totals per user and model "
+                + "or bucketed by minute, hour or day. Defaults to the last 24 hours; the current minute "
+                + "appears once it has been flushed.",
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Usage report",
+                content = @Content(schema = @Schema(implementation = UsageReportResponse.class))
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Invalid time range or granularity"
+            ),
+            @ApiResponse(
+                responseCode = "403",
+                description = "Access denied"
+            )
+        }
+    )
+    public ResponseEntity<UsageReportResponse> getUsage(
+            @Parameter(description = "Range start (ISO-8601), inclusive")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @Parameter(description = "Range end (ISO-8601), exclusive")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String model,
+            @Parameter(description = "total, minute, hour or day")
+            @RequestParam(defaultValue = "total") String granularity) {
+        
+        return ResponseEntity.ok(usageMeter.report(from, to, username, model, granularity));
+    }
+
+    @GetMapping("/diagnostics/recording")
+    @Operation(
+        summary = "Dump the JFR recording",
+        description = "Downloads the continuous Flight Recorder recording (Ollama exchanges, transactions, "
+                + "JWT verification and JVM events over the last app.jfr.maxAgeMinutes). Open it in JDK Mission Control "
+                + "or with `jfr print --events vivuchat.OllamaExchange`.",
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Recording file"
+            ),
+            @ApiResponse(
+                responseCode = "403",
+                description = "Access denied"
+            )
+        }
+    )
+    public ResponseEntity<StreamingResponseBody> dumpRecording() {
+        Path file = flightRecorderService.dump();
+        
+        // The dump is a temporary file, removed once it has been sent
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"vivuchat-" + Instant.now().getEpochSecond() + ".jfr\"")
+                .body(body);
+    }
+
     // Helper method to get client IP address
     private String getClientIp(HttpServletRequest request) {
         String xfHeader = request.getHeader("X-Forwarded-For");
@@ -5,6 +5,7 @@ import com.congdinh.vivuchat.dtos.requests.MessageRequest;
 import com.congdinh.vivuchat.dtos.responses.ChatResponse;
 import com.congdinh.vivuchat.dtos.responses.ChatMessageResponse;
 import com.congdinh.vivuchat.services.interfaces.IChatService;
+import com.congdinh.vivuchat.services.interfaces.IUserEventService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -21,10 +22,13 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.UUID;
@@ -38,6 +42,7 @@ import java.util.UUID;
 public class ChatController {
 
     private final IChatService chatService;
+    private final IUserEventService userEventService;
 
     @PostMapping
     @Operation(
@@ -61,6 +66,20 @@ public class ChatController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdChat);
     }
 
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Follow chat updates",
+        description = "Server-Sent Events for background changes to the user's chats, "
+                + "such as a 'chat-title' event ({chatId, title}) once a title has been generated",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "SSE stream of chat update events"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+        }
+    )
+    public Flux<ServerSentEvent<Object>> followChatEvents(@AuthenticationPrincipal UserDetails userDetails) {
+        return userEventService.subscribe(userDetails.getUsername());
+    }
+
     @GetMapping("/{chatId}")
     @Operation(
         summary = "Get chat by ID",
@@ -129,7 +148,7 @@ public class ChatController {
     @PostMapping("/{chatId}/messages")
     @Operation(
         summary = "Send message to chat",
-        description = "Send a message to the chat and get AI response",
+        description = "Save a message in the chat as written by the user, or by the assistant when role is ASSISTANT",
         responses = {
             @ApiResponse(
                 responseCode = "200", 
@@ -151,6 +170,45 @@ public class ChatController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping(path = "/{chatId}/completions/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Stream AI reply",
+        description = "Save the user message, stream the model reply as Server-Sent Events and save the reply when it finishes",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "SSE stream of completion chunks, followed by a 'saved' event"),
+            @ApiResponse(responseCode = "400", description = "Invalid message, or a reply is already being generated for the chat"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "404", description = "Chat not found")
+        }
+    )
+    public Flux<ServerSentEvent<Object>> streamReply(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @Parameter(description = "Chat ID", required = true)
+            @PathVariable UUID chatId,
+            @Valid @RequestBody MessageRequest request) {
+        
+        return chatService.streamReply(userDetails.getUsername(), chatId, request);
+    }
+
+    @GetMapping(path = "/{chatId}/completions/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Follow the AI reply in progress",
+        description = "Attach to the reply currently being streamed for the chat (e.g. from another tab or device). "
+                + "Starts with a 'snapshot' event holding the text so far, then the live events of the same generation.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "SSE stream: snapshot, completion chunks, then a 'saved' event"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "404", description = "No reply in progress for this chat")
+        }
+    )
+    public Flux<ServerSentEvent<Object>> attachReply(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @Parameter(description = "Chat ID", required = true)
+            @PathVariable UUID chatId) {
+        
+        return chatService.attachReply(userDetails.getUsername(), chatId);
+    }
+
     @GetMapping("/{chatId}/messages")
     @Operation(
         summary = "Get chat messages",
@@ -0,0 +1,102 @@
+package com.congdinh.vivuchat.controllers;
+
+import com.congdinh.vivuchat.dtos.requests.MessageRequest;
+import com.congdinh.vivuchat.dtos.responses.CompletionJobResponse;
+import com.congdinh.vivuchat.services.interfaces.ICompletionJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+@Slf4j
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+@Tag(name = "Completion Jobs", description = "Queued chat completions that survive restarts")
+@SecurityRequirement(name = "bearerAuth")
+public class CompletionJobController {
+
+    private final ICompletionJobService completionJobService;
+
+    @PostMapping("/chats/{chatId}/jobs")
+    @Operation(
+        summary = "Queue an AI reply",
+        description = "Save the user message and queue a job that writes the model reply to the chat. "
+                + "Poll the job or follow its events for the result.",
+        responses = {
+            @ApiResponse(
+                responseCode = "202",
+                description = "Job queued",
+                content = @Content(schema = @Schema(implementation = CompletionJobResponse.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid message"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "404", description = "Chat not found")
+        }
+    )
+    public ResponseEntity<CompletionJobResponse> submitJob(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @Parameter(description = "Chat ID", required = true)
+            @PathVariable UUID chatId,
+            @Valid @RequestBody MessageRequest request) {
+        
+        CompletionJobResponse job = completionJobService.submit(userDetails.getUsername(), chatId, request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    @Operation(
+        summary = "Get job status",
+        description = "Current status of a completion job, with the reply once it has completed",
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Job retrieved successfully",
+                content = @Content(schema = @Schema(implementation = CompletionJobResponse.class))
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "404", description = "Job not found")
+        }
+    )
+    public ResponseEntity<CompletionJobResponse> getJob(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @Parameter(description = "Job ID", required = true)
+            @PathVariable UUID jobId) {
+        
+        return ResponseEntity.ok(completionJobService.getJob(userDetails.getUsername(), jobId));
+    }
+
+    @GetMapping(path = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Follow a job",
+        description = "Server-Sent Events for each status change of the job, ending with a 'completed' or 'failed' event",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "SSE stream of job status events"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "404", description = "Job not found")
+        }
+    )
+    public Flux<ServerSentEvent<Object>> followJob(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @Parameter(description = "Job ID", required = true)
+            @PathVariable UUID jobId) {
+        
+        return completionJobService.subscribe(userDetails.getUsername(), jobId);
+    }
+}
@@ -0,0 +1,117 @@
+package com.congdinh.vivuchat.controllers;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.BatchCompletionResult;
+import com.congdinh.vivuchat.services.interfaces.IBatchCompletionService;
+import com.congdinh.vivuchat.services.interfaces.IGenerationScheduler;
+import com.congdinh.vivuchat.services.interfaces.IUsageLimiter;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.context.Context;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.Principal;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/ollama/batch")
+@RequiredArgsConstructor
+@Tag(name = "Ollama Batch", description = "Batch chat completions for offline jobs")
+@SecurityRequirement(name = "bearerAuth")
+public class OllamaBatchController {
+
+    private final IBatchCompletionService batchCompletionService;
+    private final OllamaConfig ollamaConfig;
+    private final IUsageLimiter usageLimiter;
+
+    @PostMapping(produces = "application/x-ndjson")
+    @Operation(
+            summary = "Run a batch of chat completions",
+            description = "Accepts a JSON array or an NDJSON stream of chat requests ({model, messages, options}). "
+                    + "Results stream back as NDJSON in completion order, each tagged with the request index.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "NDJSON stream of {index, response} or {index, error} lines"
+                    ),
+                    @ApiResponse(responseCode = "429", description = "Request rate or daily token quota exceeded")
+            }
+    )
+    public ResponseBodyEmitter runBatch(
+            InputStream body,
+            @RequestParam(required = false) Integer parallelism,
+            Principal principal,
+            HttpServletRequest request
+    ) {
+        // Batches outlive the MVC async timeout, they get their own
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(
+                TimeUnit.MINUTES.toMillis(ollamaConfig.getBatchTimeoutMinutes()));
+        
+        // Queued fairly against interactive users under the caller's name
+        String requester = principal != null ? principal.getName() : "ip:" + request.getRemoteAddr();
+        int requested = parallelism != null ? parallelism : ollamaConfig.getBatchParallelism();
+        
+        // The batch counts as one request, admitted before the first line is written so the error
+        // still reaches the exception handlers and an over-limit caller gets a 429. Its lines only
+        // check the daily token quota.
+        // Each line is written before the next result is requested, a slow client slows the batch
+        Disposable batch = usageLimiter.admit(requester, roles(principal))
+                .doOnSuccess(admitted -> log.info("Starting batch for {} with parallelism {}", requester, requested))
+                .thenMany(Flux.defer(() -> batchCompletionService.run(body, requested)))
+                .contextWrite(Context.of(IGenerationScheduler.REQUESTER_KEY, requester,
+                        IUsageLimiter.ADMISSION_KEY, IUsageLimiter.Admission.ADMITTED))
+                .subscribe(
+                        result -> send(emitter, result),
+                        emitter::completeWithError,
+                        emitter::complete);
+        
+        emitter.onTimeout(batch::dispose);
+        emitter.onError(e -> batch.dispose());
+        return emitter;
+    }
+
+    // Roles of an authenticated caller, none for anonymous ones, null (looked up by the limiter) otherwise
+    private Collection<String> roles(Principal principal) {
+        if (principal instanceof Authentication authentication) {
+            return authentication.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .toList();
+        }
+        return principal == null ? List.of() : null;
+    }
+
+    private void send(ResponseBodyEmitter emitter, BatchCompletionResult result) {
+        try {
+            // One write and flush per line
+            Set<ResponseBodyEmitter.DataWithMediaType> line = new LinkedHashSet<>(2);
+            line.add(new ResponseBodyEmitter.DataWithMediaType(result, MediaType.APPLICATION_JSON));
+            line.add(new ResponseBodyEmitter.DataWithMediaType("\n", MediaType.TEXT_PLAIN));
+            emitter.send(line);
+        } catch (IOException e) {
+            // Client went away, failing here cancels the rest of the batch
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package com.congdinh.vivuchat.controllers;
 
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.ConversationContext;
 import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import com.congdinh.vivuchat.exceptions.QueueFullException;
+import com.congdinh.vivuchat.exceptions.RateLimitExceededException;
+import com.congdinh.vivuchat.exceptions.ResourceNotFoundException;
+import com.congdinh.vivuchat.services.interfaces.IConversationContextBuilder;
+import com.congdinh.vivuchat.services.interfaces.IModelRegistry;
 import com.congdinh.vivuchat.services.interfaces.IOllamaService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -15,11 +22,14 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RestController
@@ -30,6 +40,9 @@ import java.util.Optional;
 public class OllamaChatController {
 
     private final IOllamaService ollamaService;
+    private final OllamaConfig ollamaConfig;
+    private final IConversationContextBuilder contextBuilder;
+    private final IModelRegistry modelRegistry;
 
     @Data
     public static class ChatRequest {
@@ -48,43 +61,77 @@ public class OllamaChatController {
                             responseCode = "200",
                             description = "Completion generated successfully",
                             content = @Content(schema = @Schema(implementation = OllamaCompletionResponse.class))
-                    )
+                    ),
+                    @ApiResponse(responseCode = "404", description = "Model not installed"),
+                    @ApiResponse(responseCode = "429", description = "Request rate or daily token quota exceeded"),
+                    @ApiResponse(responseCode = "503", description = "Model queue full, retry after the Retry-After delay")
             }
     )
-    public ResponseEntity<OllamaCompletionResponse> generateCompletion(@RequestBody ChatRequest request) {
-        try {
-            OllamaCompletionResponse response = ollamaService.generateCompletion(
-                request.getModel(), 
-                request.getMessages(),
-                request.getOptions()
-            );
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.error("Error generating completion", e);
-            
-            // Store model in a final variable to use in lambda
-            final String finalModel = request.getModel();
-            
-            // Create an error response
-            OllamaCompletionResponse.OllamaMessage errorMessage = new OllamaCompletionResponse.OllamaMessage(
-                "assistant", 
-                "I'm sorry, I encountered an error while processing your request. Please try again later."
-            );
-            
-            OllamaCompletionResponse errorResponse = OllamaCompletionResponse.builder()
-                .model(finalModel)
-                .message(errorMessage)
-                .done(true)
-                .build();
-                
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+    public DeferredResult<ResponseEntity<OllamaCompletionResponse>> generateCompletion(@RequestBody ChatRequest request) {
+        requireInstalled(request.getModel());
+        
+        // Servlet async: the Tomcat worker is released while Ollama generates. The
+        // deferred result uses the Ollama timeout rather than the MVC async default.
+        final String finalModel = request.getModel();
+        DeferredResult<ResponseEntity<OllamaCompletionResponse>> result = new DeferredResult<>(
+                TimeUnit.SECONDS.toMillis(ollamaConfig.getTimeoutSeconds()),
+                () -> errorResponse(finalModel));
+        
+        // The client sends its whole history, only what fits the budget goes to Ollama
+        ConversationContext context = contextBuilder.fit(request.getModel(), request.getMessages());
+        Disposable call = ollamaService.generateCompletion(
+                    request.getModel(), 
+                    context.getMessages(),
+                    request.getOptions()
+                )
+                .subscribe(
+                        response -> result.setResult(ResponseEntity.ok(response)),
+                        e -> {
+                            if (e instanceof RateLimitExceededException || e instanceof QueueFullException
+                                    || e instanceof ResourceNotFoundException) {
+                                // Answered as 429/503 with Retry-After, or 404, by the exception handler
+                                result.setErrorResult(e);
+                                return;
+                            }
+                            log.error("Error generating completion", e);
+                            result.setResult(errorResponse(finalModel));
+                        });
+        
+        // Drop the upstream call when the client disconnects or the request times out
+        result.onCompletion(call::dispose);
+        result.onError(e -> call.dispose());
+        return result;
+    }
+    
+    // Unknown models are refused before their history is tokenized or anything is queued
+    private void requireInstalled(String model) {
+        String resolved = model == null || model.isEmpty() ? ollamaConfig.getDefaultModel() : model;
+        if (!modelRegistry.isInstalled(resolved)) {
+            throw new ResourceNotFoundException("Model not found: " + resolved);
         }
     }
+    
+    private ResponseEntity<OllamaCompletionResponse> errorResponse(String model) {
+        // Create an error response
+        OllamaCompletionResponse.OllamaMessage errorMessage = new OllamaCompletionResponse.OllamaMessage(
+            "assistant", 
+            "I'm sorry, I encountered an error while processing your request. Please try again later."
+        );
+        
+        OllamaCompletionResponse errorResponse = OllamaCompletionResponse.builder()
+            .model(model)
+            .message(errorMessage)
+            .done(true)
+            .build();
+            
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+    }
 
     @PostMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @Operation(
             summary = "Stream chat completion",
-            description = "Generate a streaming chat completion from Ollama as Server-Sent Events",
+            description = "Generate a streaming chat completion from Ollama as Server-Sent Events. "
+                    + "Sending the Last-Event-ID of a dropped stream resumes it while it is still buffered.",
             responses = {
                     @ApiResponse(
                             responseCode = "200",
@@ -92,15 +139,29 @@ public class OllamaChatController {
                     )
             }
     )
-    public Flux<ServerSentEvent<Object>> streamCompletion(@RequestBody ChatRequest request) {
+    public Flux<ServerSentEvent<Object>> streamCompletion(
+            @RequestBody ChatRequest request,
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId
+    ) {
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                return ollamaService.resumeCompletion(lastEventId);
+            } catch (ResourceNotFoundException e) {
+                // Too late to resume, generate again from the request body
+                log.info("Cannot resume stream, starting a new one: {}", e.getMessage());
+            }
+        }
+        
         try {
             boolean streaming = Optional.ofNullable(request.getStreaming()).orElse(true);
             log.info("Streaming request with model: {}, streaming: {}, options: {}", 
                     request.getModel(), streaming, request.getOptions());
             
+            requireInstalled(request.getModel());
+            ConversationContext context = contextBuilder.fit(request.getModel(), request.getMessages());
             return ollamaService.streamCompletion(
                     request.getModel(), 
-                    request.getMessages(), 
+                    context.getMessages(), 
                     streaming,
                     request.getOptions()
             )
@@ -118,6 +179,11 @@ public class OllamaChatController {
                     .data(errorData)
                     .build());
             });
+        } catch (ResourceNotFoundException e) {
+            return Flux.just(ServerSentEvent.builder()
+                .event("error")
+                .data(Map.of("error", e.getMessage(), "done", true))
+                .build());
         } catch (Exception e) {
             log.error("Error setting up stream", e);
             
@@ -132,4 +198,21 @@ public class OllamaChatController {
                 .build());
         }
     }
+
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Resume a chat completion stream",
+            description = "Continue a stream after the given event id (Last-Event-ID header as sent by EventSource, "
+                    + "or the lastEventId parameter) without generating again",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "SSE stream of the remaining completion tokens"),
+                    @ApiResponse(responseCode = "404", description = "Stream finished too long ago, position no longer buffered, or started by someone else")
+            }
+    )
+    public Flux<ServerSentEvent<Object>> resumeCompletion(
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) String lastEventId
+    ) {
+        return ollamaService.resumeCompletion(lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
 }
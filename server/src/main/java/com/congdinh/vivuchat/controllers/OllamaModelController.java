@@ -1,8 +1,11 @@
 package com.congdinh.vivuchat.controllers;
 
+import com.congdinh.vivuchat.config.OllamaConfig;
 import com.congdinh.vivuchat.dtos.ollama.OllamaModelDetails;
 import com.congdinh.vivuchat.dtos.ollama.OllamaModelResponse;
-import com.congdinh.vivuchat.services.interfaces.IOllamaModelService;
+import com.congdinh.vivuchat.dtos.ollama.OllamaTransferProgress;
+import com.congdinh.vivuchat.services.interfaces.IModelRegistry;
+import com.congdinh.vivuchat.services.interfaces.IReactiveOllamaModelService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,24 +17,34 @@ import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/ollama/models")
 @RequiredArgsConstructor
-@Tag(name = "Ollama Models", description = "Ollama model management endpoints")
+@Tag(name = "Ollama Models", description = "Ollama model management endpoints (pull, push, copy and delete require ADMIN)")
 @SecurityRequirement(name = "bearerAuth")
 public class OllamaModelController {
 
-    private final IOllamaModelService ollamaModelService;
+    // Reactive service so long model operations never hold a Tomcat worker
+    private final IReactiveOllamaModelService ollamaModelService;
+    // Catalogue reads are served from the registry cache
+    private final IModelRegistry modelRegistry;
+    private final OllamaConfig ollamaConfig;
 
     @Data
     public static class ModelRequest {
@@ -58,14 +71,10 @@ public class OllamaModelController {
                     )
             }
     )
-    public ResponseEntity<List<OllamaModelResponse>> listLocalModels() {
-        try {
-            List<OllamaModelResponse> models = ollamaModelService.listLocalModels();
-            return ResponseEntity.ok(models);
-        } catch (Exception e) {
-            log.error("Error listing local models", e);
-            return ResponseEntity.ok(Collections.emptyList());
-        }
+    public Mono<ResponseEntity<List<OllamaModelResponse>>> listLocalModels() {
+        return modelRegistry.listLocalModels()
+                .collectList()
+                .map(ResponseEntity::ok);
     }
 
     @GetMapping("/running")
@@ -80,14 +89,10 @@ public class OllamaModelController {
                     )
             }
     )
-    public ResponseEntity<List<OllamaModelResponse>> listRunningModels() {
-        try {
-            List<OllamaModelResponse> models = ollamaModelService.listRunningModels();
-            return ResponseEntity.ok(models);
-        } catch (Exception e) {
-            log.error("Error listing running models", e);
-            return ResponseEntity.ok(Collections.emptyList());
-        }
+    public Mono<ResponseEntity<List<OllamaModelResponse>>> listRunningModels() {
+        return modelRegistry.listRunningModels()
+                .collectList()
+                .map(ResponseEntity::ok);
     }
 
     @GetMapping("/{model}")
@@ -106,18 +111,10 @@ public class OllamaModelController {
                     )
             }
     )
-    public ResponseEntity<OllamaModelDetails> getModelDetails(@PathVariable String model) {
-        try {
-            OllamaModelDetails details = ollamaModelService.getModelDetails(model);
-            if (details != null) {
-                return ResponseEntity.ok(details);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (Exception e) {
-            log.error("Error getting model details for {}", model, e);
-            return ResponseEntity.notFound().build();
-        }
+    public Mono<ResponseEntity<OllamaModelDetails>> getModelDetails(@PathVariable String model) {
+        return modelRegistry.getModelDetails(model)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
     @PostMapping("/copy")
@@ -135,18 +132,11 @@ public class OllamaModelController {
                     )
             }
     )
-    public ResponseEntity<Map<String, String>> copyModel(@RequestBody CopyModelRequest request) {
-        try {
-            boolean result = ollamaModelService.copyModel(request.getSource(), request.getDestination());
-            if (result) {
-                return ResponseEntity.ok(Map.of("message", "Model copied successfully"));
-            } else {
-                return ResponseEntity.badRequest().body(Map.of("message", "Failed to copy model"));
-            }
-        } catch (Exception e) {
-            log.error("Error copying model from {} to {}", request.getSource(), request.getDestination(), e);
-            return ResponseEntity.badRequest().body(Map.of("message", "Error: " + e.getMessage()));
-        }
+    public Mono<ResponseEntity<Map<String, String>>> copyModel(@RequestBody CopyModelRequest request) {
+        return ollamaModelService.copyModel(request.getSource(), request.getDestination())
+                .map(result -> result
+                        ? ResponseEntity.ok(Map.of("message", "Model copied successfully"))
+                        : ResponseEntity.badRequest().body(Map.of("message", "Failed to copy model")));
     }
 
     @DeleteMapping("/{model}")
@@ -164,19 +154,11 @@ public class OllamaModelController {
                     )
             }
     )
-    public ResponseEntity<Map<String, String>> deleteModel(@PathVariable String model) {
-        try {
-            boolean result = ollamaModelService.deleteModel(model);
-            if (result) {
-                return ResponseEntity.ok(Map.of("message", "Model deleted successfully"));
-            } else {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Model not found"));
-            }
-        } catch (Exception e) {
-            log.error("Error deleting model {}", model, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("message", "Error deleting model: " + e.getMessage()));
-        }
+    public Mono<ResponseEntity<Map<String, String>>> deleteModel(@PathVariable String model) {
+        return ollamaModelService.deleteModel(model)
+                .map(result -> result
+                        ? ResponseEntity.ok(Map.of("message", "Model deleted successfully"))
+                        : ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Model not found")));
     }
 
     @PostMapping("/pull")
@@ -190,15 +172,9 @@ public class OllamaModelController {
                     )
             }
     )
-    public ResponseEntity<Map<String, String>> pullModel(@RequestBody ModelRequest request) {
-        try {
-            String status = ollamaModelService.pullModel(request.getModel(), request.isInsecure(), request.isStream());
-            return ResponseEntity.ok(Map.of("status", status));
-        } catch (Exception e) {
-            log.error("Error pulling model {}", request.getModel(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("status", "error: " + e.getMessage()));
-        }
+    public Mono<ResponseEntity<Map<String, String>>> pullModel(@RequestBody ModelRequest request) {
+        return ollamaModelService.pullModel(request.getModel(), request.isInsecure(), request.isStream())
+                .map(status -> ResponseEntity.ok(Map.of("status", status)));
     }
 
     @PostMapping("/push")
@@ -212,14 +188,66 @@ public class OllamaModelController {
                     )
             }
     )
-    public ResponseEntity<Map<String, String>> pushModel(@RequestBody ModelRequest request) {
+    public Mono<ResponseEntity<Map<String, String>>> pushModel(@RequestBody ModelRequest request) {
+        return ollamaModelService.pushModel(request.getModel(), request.isInsecure(), request.isStream())
+                .map(status -> ResponseEntity.ok(Map.of("status", status)));
+    }
+
+    @PostMapping(path = "/pull/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Pull model with progress",
+            description = "Download a model and relay Ollama's progress as Server-Sent Events ('progress' per line, "
+                    + "'error' on failure). Callers pulling the same model at the same time share one download, "
+                    + "which is cancelled shortly after the last of them disconnects. Requires ADMIN.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "SSE stream of pull progress"
+                    )
+            }
+    )
+    public SseEmitter pullModelWithProgress(@RequestBody ModelRequest request) {
+        return relayProgress(ollamaModelService.pullModelProgress(request.getModel(), request.isInsecure()));
+    }
+
+    @PostMapping(path = "/push/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Push model with progress",
+            description = "Upload a model and relay Ollama's progress as Server-Sent Events",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "SSE stream of push progress"
+                    )
+            }
+    )
+    public SseEmitter pushModelWithProgress(@RequestBody ModelRequest request) {
+        return relayProgress(ollamaModelService.pushModelProgress(request.getModel(), request.isInsecure()));
+    }
+
+    // Transfers of multi-GB models outlive the MVC async timeout, they get their own
+    private SseEmitter relayProgress(Flux<OllamaTransferProgress> progress) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(ollamaConfig.getModelTransferTimeoutMinutes()));
+        
+        // Leaving only stops this caller's relay, a shared pull keeps going while others follow it
+        Disposable relay = progress.subscribe(
+                line -> send(emitter, line),
+                emitter::completeWithError,
+                emitter::complete);
+        
+        emitter.onCompletion(relay::dispose);
+        emitter.onTimeout(relay::dispose);
+        emitter.onError(e -> relay.dispose());
+        return emitter;
+    }
+
+    private void send(SseEmitter emitter, OllamaTransferProgress line) {
         try {
-            String status = ollamaModelService.pushModel(request.getModel(), request.isInsecure(), request.isStream());
-            return ResponseEntity.ok(Map.of("status", status));
-        } catch (Exception e) {
-            log.error("Error pushing model {}", request.getModel(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("status", "error: " + e.getMessage()));
+            emitter.send(SseEmitter.event()
+                    .name(line.isFailed() ? "error" : "progress")
+                    .data(line, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -235,33 +263,28 @@ public class OllamaModelController {
                     )
             }
     )
-    public ResponseEntity<Map<String, Object>> getAvailableModels() {
-        try {
-            List<OllamaModelResponse> models = ollamaModelService.listLocalModels();
-            List<Map<String, Object>> formattedModels = models.stream()
-                    .map(model -> {
-                        Map<String, Object> modelMap = new HashMap<>();
-                        modelMap.put("name", model.getName());
-                        modelMap.put("displayName", model.getName().replace(":", " "));
-                        
-                        // Extract parameter size if available
-                        if (model.getDetails() != null && model.getDetails().getParameterSize() != null) {
-                            modelMap.put("size", model.getDetails().getParameterSize());
-                        }
-                        
-                        // Add other relevant details
-                        modelMap.put("modified", model.getModifiedAt());
-                        
-                        return modelMap;
-                    })
-                    .toList();
+    public Mono<ResponseEntity<Map<String, Object>>> getAvailableModels() {
+        return modelRegistry.listLocalModels()
+                .map(model -> {
+                    Map<String, Object> modelMap = new HashMap<>();
+                    modelMap.put("name", model.getName());
+                    modelMap.put("displayName", model.getName().replace(":", " "));
                     
-            Map<String, Object> response = new HashMap<>();
-            response.put("models", formattedModels);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.error("Error getting available models", e);
-            return ResponseEntity.ok(Map.of("models", Collections.emptyList()));
-        }
+                    // Extract parameter size if available
+                    if (model.getDetails() != null && model.getDetails().getParameterSize() != null) {
+                        modelMap.put("size", model.getDetails().getParameterSize());
+                    }
+                    
+                    // Add other relevant details
+                    modelMap.put("modified", model.getModifiedAt());
+                    
+                    return modelMap;
+                })
+                .collectList()
+                .map(formattedModels -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("models", formattedModels);
+                    return ResponseEntity.ok(response);
+                });
     }
 }
@@ -0,0 +1,42 @@
+package com.congdinh.vivuchat.dtos.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsageReportResponse {
+    private Instant from;
+    private Instant to;
+    // total, minute, hour or day
+    private String granularity;
+    private String username;
+    private String model;
+    private List<UsageRow> rows;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UsageRow {
+        // Start of the bucket, null for totals over the whole range
+        private Instant bucketStart;
+        private String username;
+        private String model;
+        private long requests;
+        private long promptTokens;
+        private long evalTokens;
+        private long totalDurationMs;
+        private long loadDurationMs;
+        private long evalDurationMs;
+        // Decode throughput, eval tokens over eval time
+        private double evalTokensPerSecond;
+    }
+}
@@ -0,0 +1,20 @@
+package com.congdinh.vivuchat.dtos.ollama;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+// One entry of a batch, shaped like a /api/ollama/chat request
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCompletionRequest {
+    private String model;
+    private List<Map<String, String>> messages;
+    private Map<String, Object> options;
+}
@@ -0,0 +1,19 @@
+package com.congdinh.vivuchat.dtos.ollama;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One NDJSON line of a batch response, index is the position of the request in the input
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchCompletionResult {
+    private long index;
+    private OllamaCompletionResponse response;
+    private String error;
+}
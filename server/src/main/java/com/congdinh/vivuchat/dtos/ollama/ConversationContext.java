@@ -0,0 +1,20 @@
+package com.congdinh.vivuchat.dtos.ollama;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+// Conversation history trimmed to a model's token budget
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationContext {
+    private List<Map<String, String>> messages;
+    private int promptTokens;
+    private int droppedMessages;
+}
@@ -0,0 +1,25 @@
+package com.congdinh.vivuchat.dtos.ollama;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// SSE frame carrying only the text generated since the previous frame,
+// answer text in content and think-block text in reasoning
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OllamaStreamDelta {
+    private String content;
+    private String reasoning;
+    
+    public static OllamaStreamDelta answer(String content) {
+        return new OllamaStreamDelta(content, null);
+    }
+    
+    public static OllamaStreamDelta reasoning(String reasoning) {
+        return new OllamaStreamDelta(null, reasoning);
+    }
+}
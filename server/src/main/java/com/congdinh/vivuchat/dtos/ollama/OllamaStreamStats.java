@@ -0,0 +1,55 @@
+package com.congdinh.vivuchat.dtos.ollama;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Final SSE frame of a stream, sent once with Ollama's timing and token counts
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OllamaStreamStats {
+    private String model;
+    
+    @Builder.Default
+    private boolean done = true;
+    
+    @JsonProperty("done_reason")
+    private String doneReason;
+    
+    @JsonProperty("prompt_eval_count")
+    private int promptEvalCount;
+    
+    @JsonProperty("eval_count")
+    private int evalCount;
+    
+    @JsonProperty("total_duration")
+    private long totalDuration;
+    
+    @JsonProperty("load_duration")
+    private long loadDuration;
+    
+    @JsonProperty("prompt_eval_duration")
+    private long promptEvalDuration;
+    
+    @JsonProperty("eval_duration")
+    private long evalDuration;
+
+    public static OllamaStreamStats from(OllamaCompletionResponse chunk) {
+        return OllamaStreamStats.builder()
+                .model(chunk.getModel())
+                .doneReason(chunk.getDone_reason())
+                .promptEvalCount(chunk.getPrompt_eval_count())
+                .evalCount(chunk.getEval_count())
+                .totalDuration(chunk.getTotal_duration())
+                .loadDuration(chunk.getLoad_duration())
+                .promptEvalDuration(chunk.getPrompt_eval_duration())
+                .evalDuration(chunk.getEval_duration())
+                .build();
+    }
+}
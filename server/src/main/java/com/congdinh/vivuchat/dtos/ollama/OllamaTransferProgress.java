@@ -0,0 +1,29 @@
+package com.congdinh.vivuchat.dtos.ollama;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One progress line of a pull or push: the stage, and byte counts while a layer transfers
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OllamaTransferProgress {
+    private String status;
+    private String digest;
+    private Long total;
+    private Long completed;
+    private String error;
+    // Ollama node the line comes from, pulls run on every node
+    private String node;
+    
+    public boolean isFailed() {
+        return error != null;
+    }
+}
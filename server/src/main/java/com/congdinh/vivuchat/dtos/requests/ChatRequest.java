@@ -1,5 +1,6 @@
 package com.congdinh.vivuchat.dtos.requests;
 
+import com.congdinh.vivuchat.entities.Chat;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -12,7 +13,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class ChatRequest {
     @Builder.Default
-    private String title = "New Chat";
+    private String title = Chat.DEFAULT_TITLE;
     
     private String description;
     
@@ -1,5 +1,6 @@
 package com.congdinh.vivuchat.dtos.requests;
 
+import com.congdinh.vivuchat.entities.Message.MessageRole;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -13,4 +14,7 @@ import lombok.NoArgsConstructor;
 public class MessageRequest {
     @NotBlank(message = "Content is required")
     private String content;
+
+    // Who wrote the message when saving it directly, USER when absent
+    private MessageRole role;
 }
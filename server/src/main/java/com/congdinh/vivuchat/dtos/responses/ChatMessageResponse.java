@@ -2,6 +2,7 @@ package com.congdinh.vivuchat.dtos.responses;
 
 import com.congdinh.vivuchat.entities.Message.MessageRole;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,6 +19,8 @@ public class ChatMessageResponse {
     private UUID id;
     private MessageRole role;
     private String content;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String reasoning;
     private Integer tokens;
     private String model;
     
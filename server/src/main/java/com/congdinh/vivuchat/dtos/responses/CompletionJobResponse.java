@@ -0,0 +1,33 @@
+package com.congdinh.vivuchat.dtos.responses;
+
+import com.congdinh.vivuchat.entities.CompletionJob.JobStatus;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CompletionJobResponse {
+    private UUID id;
+    private UUID chatId;
+    private JobStatus status;
+    private int attempts;
+    private String error;
+    // The assistant reply, once the job completed
+    private ChatMessageResponse result;
+    
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
+    private Instant createdAt;
+    
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
+    private Instant finishedAt;
+}
@@ -19,6 +19,9 @@ import java.util.UUID;
 @AllArgsConstructor
 public class Chat {
     
+    // Title of a chat the user has not named, replaced by a generated one after the first reply
+    public static final String DEFAULT_TITLE = "New Chat";
+    
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
@@ -0,0 +1,85 @@
+package com.congdinh.vivuchat.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "completion_jobs", indexes = {
+        @Index(name = "idx_completion_jobs_status_created", columnList = "status, created_at")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompletionJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    
+    // Jobs go with their chat and prompt, a deleted reply only clears the link
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "chat_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Chat chat;
+    
+    // The user message this job answers
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "prompt_message_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Message promptMessage;
+    
+    // The assistant message written when the job completes
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "result_message_id")
+    @OnDelete(action = OnDeleteAction.SET_NULL)
+    private Message resultMessage;
+    
+    // Owner's username, used for fair scheduling without loading the user
+    @Column(nullable = false)
+    private String requester;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private JobStatus status;
+    
+    @Builder.Default
+    private int attempts = 0;
+    
+    @Column(columnDefinition = "TEXT")
+    private String error;
+    
+    // Instance running the job, and until when its claim holds without a renewal
+    private String workerId;
+    private Instant leaseExpiresAt;
+    
+    // A queued job deferred by rate limiting or a full model queue is not claimed before this
+    @Column(name = "not_before")
+    private Instant notBefore;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+    
+    @UpdateTimestamp
+    private Instant updatedAt;
+    
+    private Instant startedAt;
+    private Instant finishedAt;
+    
+    public boolean isFinished() {
+        return status == JobStatus.COMPLETED || status == JobStatus.FAILED;
+    }
+    
+    public enum JobStatus {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+}
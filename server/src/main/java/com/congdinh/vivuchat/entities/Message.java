@@ -28,6 +28,11 @@ public class Message {
     @Column(columnDefinition = "TEXT", nullable = false)
     private String content;
     
+    // Think-block text of an assistant reply, kept out of content so history
+    // and prompt building never have to load or scan it
+    @Column(columnDefinition = "TEXT")
+    private String reasoning;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "chat_id", nullable = false)
     private Chat chat;
@@ -36,7 +41,7 @@ public class Message {
     @Column(updatable = false)
     private Instant createdAt;
     
-    // Optional: Other metadata like tokens used, etc.
+    // Token count of the content in the chat model's vocabulary
     private Integer tokens;
     
     private String model;
@@ -0,0 +1,57 @@
+package com.congdinh.vivuchat.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "usage_rollups", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_usage_rollups_bucket_username_model", columnNames = {"bucket_start", "username", "model"})
+}, indexes = {
+        @Index(name = "idx_usage_rollups_username_bucket", columnList = "username, bucket_start"),
+        @Index(name = "idx_usage_rollups_model_bucket", columnList = "model, bucket_start")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsageRollup {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    
+    // Start of the UTC minute the completions finished in
+    @Column(name = "bucket_start", nullable = false)
+    private Instant bucketStart;
+    
+    // Requester as resolved for scheduling: a username, or ip:<address> for anonymous callers
+    @Column(nullable = false)
+    private String username;
+    
+    @Column(nullable = false)
+    private String model;
+    
+    @Column(nullable = false)
+    private long requests;
+    
+    // Summed prompt_eval_count and eval_count
+    @Column(name = "prompt_tokens", nullable = false)
+    private long promptTokens;
+    
+    @Column(name = "eval_tokens", nullable = false)
+    private long evalTokens;
+    
+    // Summed durations as reported by Ollama, in nanoseconds
+    @Column(name = "total_duration_ns", nullable = false)
+    private long totalDurationNs;
+    
+    @Column(name = "load_duration_ns", nullable = false)
+    private long loadDurationNs;
+    
+    @Column(name = "eval_duration_ns", nullable = false)
+    private long evalDurationNs;
+}
@@ -0,0 +1,41 @@
+package com.congdinh.vivuchat.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Entity
+@Table(name = "user_token_usage", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_token_usage_username_day", columnNames = {"username", "usage_day"})
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserTokenUsage {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    
+    // Requester as resolved for scheduling: a username, or ip:<address> for anonymous callers
+    @Column(nullable = false)
+    private String username;
+    
+    // UTC day the tokens were generated on
+    @Column(name = "usage_day", nullable = false)
+    private LocalDate usageDay;
+    
+    // Generated tokens (eval_count) summed over the day
+    @Column(nullable = false)
+    private long tokens;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+}
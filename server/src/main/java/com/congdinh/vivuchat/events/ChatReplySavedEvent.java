@@ -0,0 +1,19 @@
+package com.congdinh.vivuchat.events;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.UUID;
+
+// Published when an assistant reply was saved to a chat that still has the default title
+@Getter
+public class ChatReplySavedEvent extends ApplicationEvent {
+    private final UUID chatId;
+    private final String username;
+
+    public ChatReplySavedEvent(Object source, UUID chatId, String username) {
+        super(source);
+        this.chatId = chatId;
+        this.username = username;
+    }
+}
@@ -0,0 +1,23 @@
+package com.congdinh.vivuchat.events;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+// Published after a model was pulled, copied or deleted on the Ollama nodes
+@Getter
+public class ModelCatalogChangedEvent extends ApplicationEvent {
+    private final String model;
+    private final ChangeType changeType;
+
+    public ModelCatalogChangedEvent(Object source, String model, ChangeType changeType) {
+        super(source);
+        this.model = model;
+        this.changeType = changeType;
+    }
+
+    public enum ChangeType {
+        PULLED,
+        COPIED,
+        DELETED
+    }
+}
@@ -0,0 +1,21 @@
+package com.congdinh.vivuchat.exceptions;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a generation cannot be queued because the model's queue is full.
+ */
+@Getter
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class QueueFullException extends RuntimeException {
+
+    // Suggested wait before retrying, from how long queued generations currently wait
+    private final long retryAfterSeconds;
+
+    public QueueFullException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
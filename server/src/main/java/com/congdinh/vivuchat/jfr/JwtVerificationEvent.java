@@ -0,0 +1,31 @@
+package com.congdinh.vivuchat.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Bearer token handling in JwtAuthenticationFilter: signature validation and
+ * building the Authentication from the claims, which verifies the token again.
+ */
+@Name("vivuchat.JwtVerification")
+@Label("JWT Verification")
+@Category({"VivuChat", "Security"})
+@Description("Verification of a request's bearer token")
+@StackTrace(false)
+public class JwtVerificationEvent extends jdk.jfr.Event {
+
+    @Label("Request URI")
+    public String requestUri;
+
+    @Label("Valid")
+    public boolean valid;
+
+    @Label("Validation Time")
+    @Description("Time spent in TokenService.validateToken")
+    @Timespan
+    public long validationTime;
+}
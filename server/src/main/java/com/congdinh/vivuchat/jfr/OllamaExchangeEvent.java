@@ -0,0 +1,48 @@
+package com.congdinh.vivuchat.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One call from OllamaService to an Ollama node, from subscription until the
+ * response ends. Committed on the thread that saw the end of the response.
+ */
+@Name("vivuchat.OllamaExchange")
+@Label("Ollama Exchange")
+@Category({"VivuChat", "Ollama"})
+@Description("A chat request sent to an Ollama node and its response")
+@StackTrace(false)
+public class OllamaExchangeEvent extends jdk.jfr.Event {
+
+    @Label("Model")
+    public String model;
+
+    @Label("Node")
+    @Description("Base URL of the node that served the call")
+    public String node;
+
+    @Label("Streaming")
+    public boolean streaming;
+
+    @Label("Response Bytes")
+    @Description("Bytes received, 0 for non-streamed calls which are decoded whole")
+    @DataAmount
+    public long responseBytes;
+
+    @Label("Chunks")
+    @Description("NDJSON chunks decoded, 1 for non-streamed calls")
+    public int chunks;
+
+    @Label("Time To First Chunk")
+    @Timespan
+    public long timeToFirstChunk;
+
+    @Label("Outcome")
+    @Description("complete, error or cancel")
+    public String outcome;
+}
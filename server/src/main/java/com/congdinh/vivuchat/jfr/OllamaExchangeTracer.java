@@ -0,0 +1,79 @@
+package com.congdinh.vivuchat.jfr;
+
+import com.congdinh.vivuchat.services.interfaces.IOllamaNodeBalancer;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.function.Function;
+
+/**
+ * Wraps Ollama calls in an OllamaExchangeEvent. Must be applied inside the
+ * node balancer's call so the node is in the Reactor context. Costs one
+ * event allocation per call when recording is off.
+ */
+public final class OllamaExchangeTracer {
+
+    private OllamaExchangeTracer() {
+    }
+
+    // Counts raw bytes before decoding and chunks after it
+    public static <T> Flux<T> stream(String model, Flux<DataBuffer> body, Function<Flux<DataBuffer>, Flux<T>> decode) {
+        return Flux.deferContextual(ctx -> {
+            OllamaExchangeEvent event = new OllamaExchangeEvent();
+            if (!event.isEnabled()) {
+                return decode.apply(body);
+            }
+            event.model = model;
+            event.node = ctx.getOrDefault(IOllamaNodeBalancer.NODE_KEY, "unknown");
+            event.streaming = true;
+            long[] start = new long[1];
+            return decode.apply(body.doOnNext(buffer -> event.responseBytes += buffer.readableByteCount()))
+                    .doOnSubscribe(subscription -> {
+                        event.begin();
+                        start[0] = System.nanoTime();
+                    })
+                    .doOnNext(chunk -> {
+                        if (event.chunks++ == 0) {
+                            event.timeToFirstChunk = System.nanoTime() - start[0];
+                        }
+                    })
+                    .doFinally(signal -> commit(event, signal));
+        });
+    }
+
+    public static <T> Mono<T> call(String model, Mono<T> response) {
+        return Mono.deferContextual(ctx -> {
+            OllamaExchangeEvent event = new OllamaExchangeEvent();
+            if (!event.isEnabled()) {
+                return response;
+            }
+            event.model = model;
+            event.node = ctx.getOrDefault(IOllamaNodeBalancer.NODE_KEY, "unknown");
+            long[] start = new long[1];
+            return response
+                    .doOnSubscribe(subscription -> {
+                        event.begin();
+                        start[0] = System.nanoTime();
+                    })
+                    .doOnNext(result -> {
+                        event.chunks = 1;
+                        event.timeToFirstChunk = System.nanoTime() - start[0];
+                    })
+                    .doFinally(signal -> commit(event, signal));
+        });
+    }
+
+    private static void commit(OllamaExchangeEvent event, SignalType signal) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.outcome = switch (signal) {
+                case ON_ERROR -> "error";
+                case CANCEL -> "cancel";
+                default -> "complete";
+            };
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.congdinh.vivuchat.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A database transaction from begin to commit or rollback. Begin time covers
+ * taking a connection from Hikari, so pool waits show up there.
+ */
+@Name("vivuchat.Transaction")
+@Label("Transaction")
+@Category({"VivuChat", "Database"})
+@Description("A Spring-managed JPA transaction")
+@StackTrace(false)
+public class TransactionEvent extends jdk.jfr.Event {
+
+    @Label("Name")
+    @Description("Transactional method, e.g. ChatService.sendMessage")
+    public String name;
+
+    @Label("Read Only")
+    public boolean readOnly;
+
+    @Label("Begin Time")
+    @Description("Time to begin the transaction, including the wait for a pooled connection")
+    @Timespan
+    public long beginTime;
+
+    @Label("Outcome")
+    @Description("commit, rollback or failed")
+    public String outcome;
+}
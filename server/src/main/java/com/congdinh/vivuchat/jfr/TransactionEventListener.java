@@ -0,0 +1,76 @@
+package com.congdinh.vivuchat.jfr;
+
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Records a TransactionEvent for every new transaction started by the JPA
+ * transaction manager, which Spring Boot registers this listener with.
+ * Transactions on one thread nest (REQUIRES_NEW), so open events are kept
+ * on a per-thread stack.
+ */
+@Component
+public class TransactionEventListener implements TransactionExecutionListener {
+
+    private static final ThreadLocal<Deque<TransactionEvent>> OPEN = ThreadLocal.withInitial(ArrayDeque::new);
+
+    @Override
+    public void beforeBegin(TransactionExecution transaction) {
+        // Pushed even when disabled so begin and end always pair up
+        TransactionEvent event = new TransactionEvent();
+        event.begin();
+        event.beginTime = System.nanoTime();
+        event.name = shortName(transaction.getTransactionName());
+        event.readOnly = transaction.isReadOnly();
+        OPEN.get().push(event);
+    }
+
+    @Override
+    public void afterBegin(TransactionExecution transaction, @Nullable Throwable beginFailure) {
+        TransactionEvent event = OPEN.get().peek();
+        if (event == null) {
+            return;
+        }
+        event.beginTime = System.nanoTime() - event.beginTime;
+        if (beginFailure != null) {
+            finish("failed");
+        }
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, @Nullable Throwable commitFailure) {
+        finish(commitFailure == null ? "commit" : "failed");
+    }
+
+    @Override
+    public void afterRollback(TransactionExecution transaction, @Nullable Throwable rollbackFailure) {
+        finish("rollback");
+    }
+
+    private static void finish(String outcome) {
+        Deque<TransactionEvent> open = OPEN.get();
+        TransactionEvent event = open.poll();
+        if (open.isEmpty()) {
+            OPEN.remove();
+        }
+        if (event != null && event.shouldCommit()) {
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    // "com.congdinh.vivuchat.services.implementations.ChatService.sendMessage" -> "ChatService.sendMessage"
+    private static String shortName(@Nullable String name) {
+        if (name == null) {
+            return "programmatic";
+        }
+        int method = name.lastIndexOf('.');
+        int type = method > 0 ? name.lastIndexOf('.', method - 1) : -1;
+        return name.substring(type + 1);
+    }
+}
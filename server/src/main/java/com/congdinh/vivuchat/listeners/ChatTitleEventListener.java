@@ -0,0 +1,23 @@
+package com.congdinh.vivuchat.listeners;
+
+import com.congdinh.vivuchat.events.ChatReplySavedEvent;
+import com.congdinh.vivuchat.services.interfaces.IChatTitleService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatTitleEventListener {
+
+    private final IChatTitleService chatTitleService;
+
+    // Only once the reply is committed, so the title worker can read it
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleChatReplySaved(ChatReplySavedEvent event) {
+        log.debug("First reply saved in chat {}, generating a title", event.getChatId());
+        chatTitleService.generateTitle(event.getChatId(), event.getUsername());
+    }
+}
@@ -0,0 +1,43 @@
+package com.congdinh.vivuchat.listeners;
+
+import com.congdinh.vivuchat.events.ModelCatalogChangedEvent;
+import com.congdinh.vivuchat.events.ModelCatalogChangedEvent.ChangeType;
+import com.congdinh.vivuchat.services.implementations.GenerationCancellationTracker;
+import com.congdinh.vivuchat.services.implementations.InferenceMetrics;
+import com.congdinh.vivuchat.services.implementations.OllamaNode;
+import com.congdinh.vivuchat.services.interfaces.IGenerationScheduler;
+import com.congdinh.vivuchat.services.interfaces.IModelRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Stream;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ModelCatalogEventListener {
+
+    private final IModelRegistry modelRegistry;
+    private final IGenerationScheduler generationScheduler;
+    private final InferenceMetrics inferenceMetrics;
+    private final GenerationCancellationTracker cancellationTracker;
+
+    @EventListener
+    public void handleModelCatalogChanged(ModelCatalogChangedEvent event) {
+        log.info("Model {} {}, refreshing the model registry", event.getModel(), event.getChangeType());
+        modelRegistry.invalidate(event.getModel());
+        
+        // Per-model state is keyed by the name callers used, with or without the tag
+        if (event.getChangeType() == ChangeType.DELETED && event.getModel() != null) {
+            Stream.of(event.getModel(), OllamaNode.normalizeModelName(event.getModel()))
+                    .distinct()
+                    .forEach(model -> {
+                        generationScheduler.removeModel(model);
+                        inferenceMetrics.removeModel(model);
+                        cancellationTracker.removeModel(model);
+                    });
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.congdinh.vivuchat.entities.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -25,4 +26,9 @@ public interface IChatRepository extends JpaRepository<Chat, UUID> {
     // Fix: Changed from countByCreatedBy to count chats by user id
     @Query("SELECT COUNT(c) FROM Chat c WHERE c.user.id = :userId")
     Integer countByUserId(@Param("userId") UUID userId);
+    
+    // Leaves a title the user set in the meantime alone
+    @Modifying
+    @Query("UPDATE Chat c SET c.title = :title WHERE c.id = :id AND c.title = :expected")
+    int updateTitleIfUnchanged(@Param("id") UUID id, @Param("expected") String expected, @Param("title") String title);
 }
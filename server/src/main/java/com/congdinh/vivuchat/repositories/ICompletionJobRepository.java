@@ -0,0 +1,44 @@
+package com.congdinh.vivuchat.repositories;
+
+import com.congdinh.vivuchat.entities.Chat;
+import com.congdinh.vivuchat.entities.CompletionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ICompletionJobRepository extends JpaRepository<CompletionJob, UUID> {
+    
+    // Oldest claimable jobs: queued and not deferred, or running on a worker whose lease ran out.
+    // Rows locked by another instance's claim are skipped instead of waited on.
+    @Query(value = """
+            SELECT * FROM completion_jobs
+            WHERE (status = 'QUEUED' AND (not_before IS NULL OR not_before <= :now))
+               OR (status = 'RUNNING' AND lease_expires_at < :now)
+            ORDER BY created_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<CompletionJob> lockClaimable(@Param("now") Instant now, @Param("limit") int limit);
+    
+    @Modifying
+    @Query("UPDATE CompletionJob j SET j.leaseExpiresAt = :until "
+            + "WHERE j.id IN :ids AND j.workerId = :workerId AND j.status = 'RUNNING'")
+    int renewLeases(@Param("ids") Collection<UUID> ids, @Param("workerId") String workerId, @Param("until") Instant until);
+    
+    // Run before the chat is deleted, schemas created before the ON DELETE rules have no cascade
+    @Modifying
+    @Query("DELETE FROM CompletionJob j WHERE j.chat = :chat")
+    int deleteByChat(@Param("chat") Chat chat);
+    
+    @Query("SELECT j FROM CompletionJob j JOIN FETCH j.chat c JOIN FETCH c.user LEFT JOIN FETCH j.resultMessage WHERE j.id = :id")
+    Optional<CompletionJob> findWithChatById(@Param("id") UUID id);
+}
@@ -17,13 +17,24 @@ import java.util.UUID;
 public interface IMessageRepository extends JpaRepository<Message, UUID> {
     List<Message> findByChatOrderByCreatedAtAsc(Chat chat);
     List<Message> findByChatOrderByCreatedAtDesc(Chat chat, Pageable pageable);
+    
+    // History for prompt building, without the reasoning column
+    List<MessageHistory> findHistoryByChatOrderByCreatedAtDesc(Chat chat, Pageable pageable);
+    List<MessageHistory> findTop2HistoryByChatOrderByCreatedAtAsc(Chat chat);
+    
     Page<Message> findByChat(Chat chat, Pageable pageable);
     long countByChat(Chat chat);
     
-    List<Message> findByChatAndRole(Chat chat, MessageRole role);
     List<Message> findByChatIdOrderByCreatedAtAsc(UUID chatId);
     
     // Fix the query to join with the user property of the chat
     @Query("SELECT COUNT(m) FROM Message m JOIN m.chat c WHERE c.user.id = :userId")
     Integer countByUser(@Param("userId") UUID userId);
+    
+    interface MessageHistory {
+        UUID getId();
+        MessageRole getRole();
+        String getContent();
+        Integer getTokens();
+    }
 }
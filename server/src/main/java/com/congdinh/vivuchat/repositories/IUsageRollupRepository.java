@@ -0,0 +1,67 @@
+package com.congdinh.vivuchat.repositories;
+
+import com.congdinh.vivuchat.entities.UsageRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface IUsageRollupRepository extends JpaRepository<UsageRollup, UUID> {
+    
+    // Totals per user and model over [from, to), either filter may be null
+    @Query("""
+            SELECT r.username AS username, r.model AS model,
+                   SUM(r.requests) AS requests, SUM(r.promptTokens) AS promptTokens, SUM(r.evalTokens) AS evalTokens,
+                   SUM(r.totalDurationNs) AS totalDurationNs, SUM(r.loadDurationNs) AS loadDurationNs,
+                   SUM(r.evalDurationNs) AS evalDurationNs
+            FROM UsageRollup r
+            WHERE r.bucketStart >= :from AND r.bucketStart < :to
+              AND (:username IS NULL OR r.username = :username)
+              AND (:model IS NULL OR r.model = :model)
+            GROUP BY r.username, r.model
+            ORDER BY SUM(r.evalTokens) DESC
+            """)
+    List<UsageTotals> summarize(@Param("from") Instant from, @Param("to") Instant to,
+                                @Param("username") String username, @Param("model") String model);
+    
+    // Totals per UTC minute, hour or day bucket, then user and model. Aliases are quoted
+    // so Postgres keeps their case for the projection.
+    @Query(value = """
+            SELECT CAST(EXTRACT(EPOCH FROM date_trunc(:unit, bucket_start AT TIME ZONE 'UTC')) AS bigint) AS "bucketEpochSecond",
+                   username AS "username", model AS "model",
+                   CAST(SUM(requests) AS bigint) AS "requests",
+                   CAST(SUM(prompt_tokens) AS bigint) AS "promptTokens",
+                   CAST(SUM(eval_tokens) AS bigint) AS "evalTokens",
+                   CAST(SUM(total_duration_ns) AS bigint) AS "totalDurationNs",
+                   CAST(SUM(load_duration_ns) AS bigint) AS "loadDurationNs",
+                   CAST(SUM(eval_duration_ns) AS bigint) AS "evalDurationNs"
+            FROM usage_rollups
+            WHERE bucket_start >= :from AND bucket_start < :to
+              AND (CAST(:username AS varchar) IS NULL OR username = CAST(:username AS varchar))
+              AND (CAST(:model AS varchar) IS NULL OR model = CAST(:model AS varchar))
+            GROUP BY 1, username, model
+            ORDER BY 1, username, model
+            """, nativeQuery = true)
+    List<UsageBucketTotals> timeline(@Param("unit") String unit, @Param("from") Instant from, @Param("to") Instant to,
+                                     @Param("username") String username, @Param("model") String model);
+    
+    interface UsageTotals {
+        String getUsername();
+        String getModel();
+        Long getRequests();
+        Long getPromptTokens();
+        Long getEvalTokens();
+        Long getTotalDurationNs();
+        Long getLoadDurationNs();
+        Long getEvalDurationNs();
+    }
+    
+    interface UsageBucketTotals extends UsageTotals {
+        Long getBucketEpochSecond();
+    }
+}
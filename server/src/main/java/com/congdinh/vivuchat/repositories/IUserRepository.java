@@ -3,8 +3,11 @@ package com.congdinh.vivuchat.repositories;
 import com.congdinh.vivuchat.entities.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,6 +16,10 @@ public interface IUserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+    
+    // Users with their roles in one query, for refreshing per-user limits
+    @EntityGraph(attributePaths = "roles")
+    List<User> findByUsernameIn(Collection<String> usernames);
 
     // Admin search functions
     Page<User> findByIsActive(Boolean isActive, Pageable pageable);
@@ -0,0 +1,33 @@
+package com.congdinh.vivuchat.repositories;
+
+import com.congdinh.vivuchat.entities.UserTokenUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface IUserTokenUsageRepository extends JpaRepository<UserTokenUsage, UUID> {
+    
+    Optional<UserTokenUsage> findByUsernameAndUsageDay(String username, LocalDate usageDay);
+    
+    List<UserTokenUsage> findByUsageDayAndUsernameIn(LocalDate usageDay, Collection<String> usernames);
+    
+    // Adds to the day's total, so instances sharing the table never overwrite each other's counts
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_token_usage (id, username, usage_day, tokens, updated_at)
+            VALUES (:id, :username, :day, :tokens, now())
+            ON CONFLICT (username, usage_day)
+            DO UPDATE SET tokens = user_token_usage.tokens + EXCLUDED.tokens, updated_at = now()
+            """, nativeQuery = true)
+    int addTokens(@Param("id") UUID id, @Param("username") String username,
+                  @Param("day") LocalDate day, @Param("tokens") long tokens);
+}
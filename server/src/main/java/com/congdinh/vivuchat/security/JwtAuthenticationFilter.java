@@ -1,5 +1,6 @@
 package com.congdinh.vivuchat.security;
 
+import com.congdinh.vivuchat.jfr.JwtVerificationEvent;
 import com.congdinh.vivuchat.services.interfaces.ITokenService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -27,15 +28,29 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     protected void doFilterInternal(@NonNull HttpServletRequest request,
                                    @NonNull HttpServletResponse response,
                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        JwtVerificationEvent event = new JwtVerificationEvent();
+        String jwt = null;
         try {
-            String jwt = parseJwt(request);
-            if (jwt != null && tokenService.validateToken(jwt)) {
-                // Get authentication directly from token service instead of using userDetailsService
-                Authentication authentication = tokenService.getAuthentication(jwt);
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+            jwt = parseJwt(request);
+            if (jwt != null) {
+                event.begin();
+                long validationStart = System.nanoTime();
+                event.valid = tokenService.validateToken(jwt);
+                event.validationTime = System.nanoTime() - validationStart;
+                if (event.valid) {
+                    // Get authentication directly from token service instead of using userDetailsService
+                    Authentication authentication = tokenService.getAuthentication(jwt);
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         } catch (Exception e) {
             log.error("Cannot set user authentication: {}", e.getMessage());
+        } finally {
+            // Only requests that carried a token are recorded
+            if (jwt != null && event.shouldCommit()) {
+                event.requestUri = request.getRequestURI();
+                event.commit();
+            }
         }
 
         filterChain.doFilter(request, response);
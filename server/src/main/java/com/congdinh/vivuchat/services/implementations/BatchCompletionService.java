@@ -0,0 +1,126 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.BatchCompletionRequest;
+import com.congdinh.vivuchat.dtos.ollama.BatchCompletionResult;
+import com.congdinh.vivuchat.exceptions.ResourceNotFoundException;
+import com.congdinh.vivuchat.services.interfaces.IBatchCompletionService;
+import com.congdinh.vivuchat.services.interfaces.IConversationContextBuilder;
+import com.congdinh.vivuchat.services.interfaces.IModelRegistry;
+import com.congdinh.vivuchat.services.interfaces.IOllamaService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a batch of completions with bounded parallelism. Requests are parsed
+ * one at a time from the body and only pulled when a slot frees up, so
+ * memory stays flat whatever the batch size; a large batch simply keeps the
+ * request body unread until it gets there.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchCompletionService implements IBatchCompletionService {
+
+    private final IOllamaService ollamaService;
+    private final IConversationContextBuilder contextBuilder;
+    private final IModelRegistry modelRegistry;
+    private final OllamaConfig ollamaConfig;
+    private final ObjectMapper objectMapper;
+    private final Scheduler blockingScheduler;
+
+    @Override
+    public Flux<BatchCompletionResult> run(InputStream requests, int parallelism) {
+        int concurrency = Math.max(1, Math.min(parallelism, ollamaConfig.getBatchMaxParallelism()));
+        
+        // Errors are delayed so a malformed line does not cancel completions already running
+        return read(requests)
+                .flatMapDelayError(this::complete, concurrency, 1)
+                .onErrorResume(e -> {
+                    log.warn("Batch input rejected: {}", e.getMessage());
+                    return Mono.just(BatchCompletionResult.builder()
+                            .index(-1)
+                            .error("Invalid batch input: " + e.getMessage())
+                            .build());
+                });
+    }
+
+    private Mono<BatchCompletionResult> complete(IndexedRequest item) {
+        BatchCompletionRequest request = item.request();
+        if (request.getMessages() == null || request.getMessages().isEmpty()) {
+            return Mono.just(BatchCompletionResult.builder()
+                    .index(item.index())
+                    .error("messages must not be empty")
+                    .build());
+        }
+        String model = request.getModel() != null && !request.getModel().isEmpty()
+                ? request.getModel()
+                : ollamaConfig.getDefaultModel();
+        // Unknown models are refused before the history is tokenized
+        return modelRegistry.checkInstalled(model)
+                .flatMap(installed -> {
+                    if (!installed) {
+                        return Mono.error(new ResourceNotFoundException("Model not found: " + model));
+                    }
+                    // Trimmed to the model's budget like chat requests, num_ctx is the same for every caller
+                    List<Map<String, String>> messages = contextBuilder.fit(model, request.getMessages()).getMessages();
+                    return ollamaService.requestCompletion(model, messages, request.getOptions())
+                            .map(response -> BatchCompletionResult.builder()
+                                    .index(item.index())
+                                    .response(response)
+                                    .build());
+                })
+                .onErrorResume(e -> Mono.just(BatchCompletionResult.builder()
+                        .index(item.index())
+                        .error(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName())
+                        .build()));
+    }
+
+    // Jackson iterates the elements of a root-level array, or consecutive root values for NDJSON
+    private Flux<IndexedRequest> read(InputStream requests) {
+        return Flux.<IndexedRequest, Cursor>generate(
+                        () -> new Cursor(objectMapper.readerFor(BatchCompletionRequest.class).readValues(requests)),
+                        (cursor, sink) -> {
+                            if (cursor.items.hasNext()) {
+                                sink.next(new IndexedRequest(cursor.index++, cursor.items.next()));
+                            } else {
+                                sink.complete();
+                            }
+                            return cursor;
+                        },
+                        Cursor::close)
+                // Reading the servlet input stream blocks
+                .subscribeOn(blockingScheduler);
+    }
+
+    private record IndexedRequest(long index, BatchCompletionRequest request) {
+    }
+
+    private static final class Cursor {
+        private final MappingIterator<BatchCompletionRequest> items;
+        private long index;
+
+        private Cursor(MappingIterator<BatchCompletionRequest> items) {
+            this.items = items;
+        }
+
+        private void close() {
+            try {
+                items.close();
+            } catch (IOException e) {
+                log.debug("Failed to close batch input: {}", e.toString());
+            }
+        }
+    }
+}
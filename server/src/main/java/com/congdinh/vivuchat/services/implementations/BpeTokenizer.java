@@ -0,0 +1,452 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Counts tokens the way llama.cpp tokenizes them, for the two vocabulary
+ * families Ollama models ship with: byte-level BPE (GPT-2 style, used by
+ * Llama 3, Qwen 2 and the DeepSeek R1 distills) and SentencePiece (Llama 2,
+ * Mistral). Both are reduced to the same loop over int symbol ids merged by
+ * a primitive pair table. Merging keeps the symbols in a linked list and
+ * the candidate pairs in a min-heap like llama.cpp, so a piece merges in
+ * O(n log n) with scratch arrays reused across the pieces of one call.
+ * SentencePiece text is merged word by word, which can differ from llama.cpp
+ * by a token on long whitespace runs. Pieces are cut every 1024 symbols, so a
+ * long paste without spaces may count a token more per cut.
+ */
+public final class BpeTokenizer {
+
+    // Pre-tokenizer regexes by GGUF tokenizer.ggml.pre, the GPT-2 one is the fallback
+    private static final String GPT2_PATTERN =
+            "'s|'t|'re|'ve|'m|'ll|'d| ?\\p{L}+| ?\\p{N}+| ?[^\\s\\p{L}\\p{N}]+|\\s+(?!\\S)|\\s+";
+    private static final String LLAMA3_PATTERN =
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+";
+    private static final String QWEN2_PATTERN =
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+";
+
+    private static final char SPM_SPACE = '\u2581';
+    private static final int MAX_PIECE_SYMBOLS = 1024;
+    private static final int MERGED = Integer.MIN_VALUE;
+    private static final int NORMAL_TOKEN = 1;
+    private static final int USER_DEFINED_TOKEN = 4;
+
+    private enum Kind { BYTE_LEVEL, SENTENCE_PIECE }
+
+    private final Kind kind;
+    private final Pattern preTokenizer;
+    // Byte-level: id of each byte's mapped character; SentencePiece: id of its <0xXX> fallback token
+    private final int[] byteTokens = new int[256];
+    // SentencePiece: id of each single-code-point token
+    private final int[] bmpTokens;
+    private final Map<Integer, Integer> supplementaryTokens;
+    private final int unknownToken;
+    private final PairTable merges;
+
+    private BpeTokenizer(Kind kind, Pattern preTokenizer, int[] bmpTokens, Map<Integer, Integer> supplementaryTokens,
+                         int unknownToken, PairTable merges) {
+        this.kind = kind;
+        this.preTokenizer = preTokenizer;
+        this.bmpTokens = bmpTokens;
+        this.supplementaryTokens = supplementaryTokens;
+        this.unknownToken = unknownToken;
+        this.merges = merges;
+    }
+
+    public static Pattern preTokenizerFor(String pre) {
+        if (pre == null) {
+            return Pattern.compile(GPT2_PATTERN);
+        }
+        return switch (pre) {
+            case "llama3", "llama-bpe", "llama-v3", "smaug-bpe" -> Pattern.compile(LLAMA3_PATTERN);
+            case "qwen2", "deepseek-r1-qwen" -> Pattern.compile(QWEN2_PATTERN);
+            default -> Pattern.compile(GPT2_PATTERN);
+        };
+    }
+
+    // Byte-level BPE from a vocabulary and its ranked "left right" merges
+    public static BpeTokenizer byteLevel(Map<String, Integer> vocab, List<String[]> merges, Pattern preTokenizer) {
+        BpeTokenizer tokenizer = new BpeTokenizer(Kind.BYTE_LEVEL, preTokenizer, null, null, -1,
+                new PairTable(merges.size()));
+        char[] byteChars = byteLevelAlphabet();
+        for (int b = 0; b < 256; b++) {
+            tokenizer.byteTokens[b] = vocab.getOrDefault(String.valueOf(byteChars[b]), -1);
+        }
+        for (int rank = 0; rank < merges.size(); rank++) {
+            String[] pair = merges.get(rank);
+            Integer left = vocab.get(pair[0]);
+            Integer right = vocab.get(pair[1]);
+            Integer merged = vocab.get(pair[0] + pair[1]);
+            if (left != null && right != null && merged != null) {
+                tokenizer.merges.put(left, right, merged, rank);
+            }
+        }
+        return tokenizer;
+    }
+
+    // SentencePiece: merges are every split of a token into two tokens, best score first
+    public static BpeTokenizer sentencePiece(List<String> tokens, float[] scores, int[] tokenTypes, int unknownToken) {
+        Map<String, Integer> vocab = new HashMap<>(tokens.size() * 2);
+        for (int id = 0; id < tokens.size(); id++) {
+            if (isMergeable(tokenTypes, id)) {
+                vocab.putIfAbsent(tokens.get(id), id);
+            }
+        }
+        
+        List<Integer> byScore = new ArrayList<>(vocab.values());
+        byScore.sort((a, b) -> Float.compare(scores[b], scores[a]));
+        int[] rank = new int[tokens.size()];
+        for (int i = 0; i < byScore.size(); i++) {
+            rank[byScore.get(i)] = i;
+        }
+        
+        int[] bmpTokens = new int[Character.MAX_VALUE + 1];
+        Arrays.fill(bmpTokens, -1);
+        Map<Integer, Integer> supplementary = new HashMap<>();
+        PairTable pairs = new PairTable(vocab.size() * 4);
+        for (Map.Entry<String, Integer> entry : vocab.entrySet()) {
+            String piece = entry.getKey();
+            int id = entry.getValue();
+            if (piece.codePointCount(0, piece.length()) == 1) {
+                int codePoint = piece.codePointAt(0);
+                if (codePoint <= Character.MAX_VALUE) {
+                    bmpTokens[codePoint] = id;
+                } else {
+                    supplementary.put(codePoint, id);
+                }
+                continue;
+            }
+            for (int split = piece.offsetByCodePoints(0, 1); split < piece.length();
+                 split = piece.offsetByCodePoints(split, 1)) {
+                Integer left = vocab.get(piece.substring(0, split));
+                Integer right = vocab.get(piece.substring(split));
+                if (left != null && right != null) {
+                    pairs.put(left, right, id, rank[id]);
+                }
+            }
+        }
+        
+        BpeTokenizer tokenizer = new BpeTokenizer(Kind.SENTENCE_PIECE, null, bmpTokens, supplementary,
+                unknownToken, pairs);
+        Arrays.fill(tokenizer.byteTokens, -1);
+        for (int id = 0; id < tokens.size(); id++) {
+            String token = tokens.get(id);
+            if (token.length() == 6 && token.startsWith("<0x") && token.endsWith(">")) {
+                tokenizer.byteTokens[Integer.parseInt(token.substring(3, 5), 16)] = id;
+            }
+        }
+        return tokenizer;
+    }
+
+    public int count(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return kind == Kind.BYTE_LEVEL ? countByteLevel(text) : countSentencePiece(text);
+    }
+
+    private int countByteLevel(CharSequence text) {
+        Merger merger = new Merger();
+        int total = 0;
+        Matcher matcher = preTokenizer.matcher(text);
+        while (matcher.find()) {
+            int end = matcher.end();
+            for (int i = matcher.start(); i < end; i++) {
+                int codePoint = Character.codePointAt(text, i);
+                if (Character.isSupplementaryCodePoint(codePoint)) {
+                    i++;
+                }
+                // A code point is at most 4 UTF-8 bytes
+                if (merger.length + 4 > MAX_PIECE_SYMBOLS) {
+                    total += merger.merge();
+                }
+                appendUtf8(codePoint, merger);
+            }
+            total += merger.merge();
+        }
+        return total;
+    }
+
+    private int countSentencePiece(CharSequence text) {
+        Merger merger = new Merger();
+        int total = 0;
+        // Llama's SentencePiece adds a dummy space prefix and spells spaces as U+2581
+        boolean previousSpace = false;
+        appendPiece(SPM_SPACE, merger);
+        for (int i = 0; i < text.length(); i++) {
+            int codePoint = Character.codePointAt(text, i);
+            if (Character.isSupplementaryCodePoint(codePoint)) {
+                i++;
+            }
+            boolean space = codePoint == ' ';
+            if (space) {
+                codePoint = SPM_SPACE;
+                if (!previousSpace && merger.length > 0) {
+                    total += merger.merge();
+                }
+            }
+            previousSpace = space;
+            if (merger.length + 4 > MAX_PIECE_SYMBOLS) {
+                total += merger.merge();
+            }
+            appendPiece(codePoint, merger);
+        }
+        return total + merger.merge();
+    }
+
+    private void appendUtf8(int codePoint, Merger merger) {
+        if (codePoint < 0x80) {
+            merger.add(byteTokens[codePoint]);
+        } else if (codePoint < 0x800) {
+            merger.add(byteTokens[0xC0 | (codePoint >> 6)]);
+            merger.add(byteTokens[0x80 | (codePoint & 0x3F)]);
+        } else if (codePoint < 0x10000) {
+            merger.add(byteTokens[0xE0 | (codePoint >> 12)]);
+            merger.add(byteTokens[0x80 | ((codePoint >> 6) & 0x3F)]);
+            merger.add(byteTokens[0x80 | (codePoint & 0x3F)]);
+        } else {
+            merger.add(byteTokens[0xF0 | (codePoint >> 18)]);
+            merger.add(byteTokens[0x80 | ((codePoint >> 12) & 0x3F)]);
+            merger.add(byteTokens[0x80 | ((codePoint >> 6) & 0x3F)]);
+            merger.add(byteTokens[0x80 | (codePoint & 0x3F)]);
+        }
+    }
+
+    private void appendPiece(int codePoint, Merger merger) {
+        int id = codePoint <= Character.MAX_VALUE
+                ? bmpTokens[codePoint]
+                : supplementaryTokens.getOrDefault(codePoint, -1);
+        if (id >= 0) {
+            merger.add(id);
+            return;
+        }
+        if (byteTokens[0] < 0) {
+            merger.add(unknownToken);
+            return;
+        }
+        // Unknown characters fall back to one token per UTF-8 byte
+        byte[] bytes = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            merger.add(byteTokens[b & 0xFF]);
+        }
+    }
+
+    // Scratch state for one piece: symbols linked through prev/next, candidate pairs in a
+    // binary min-heap of (rank << 32 | left position). Entries go stale as neighbours merge
+    // and are checked against the current pair when they come out.
+    private final class Merger {
+        private int[] symbols = new int[64];
+        private int[] prev = new int[64];
+        private int[] next = new int[64];
+        private long[] heap = new long[64];
+        private int length;
+        private int heapSize;
+
+        private void add(int id) {
+            if (length == symbols.length) {
+                symbols = Arrays.copyOf(symbols, length * 2);
+                prev = new int[length * 2];
+                next = new int[length * 2];
+            }
+            symbols[length++] = id;
+        }
+
+        // Merges the best-ranked adjacent pair until none is left, leftmost first among equal
+        // ranks; returns the token count and empties the piece
+        private int merge() {
+            int count = length;
+            for (int i = 0; i < length; i++) {
+                prev[i] = i - 1;
+                next[i] = i + 1;
+            }
+            if (length > 0) {
+                next[length - 1] = -1;
+            }
+            heapSize = 0;
+            for (int i = 0; i + 1 < length; i++) {
+                offer(i);
+            }
+            while (heapSize > 0) {
+                long top = poll();
+                int left = (int) top;
+                int right = next[left];
+                if (symbols[left] == MERGED || right < 0) {
+                    continue;
+                }
+                int slot = merges.find(symbols[left], symbols[right]);
+                if (slot < 0 || merges.rank(slot) != (int) (top >>> 32)) {
+                    continue;
+                }
+                symbols[left] = merges.merged(slot);
+                symbols[right] = MERGED;
+                next[left] = next[right];
+                if (next[left] >= 0) {
+                    prev[next[left]] = left;
+                }
+                count--;
+                if (prev[left] >= 0) {
+                    offer(prev[left]);
+                }
+                if (next[left] >= 0) {
+                    offer(left);
+                }
+            }
+            length = 0;
+            return count;
+        }
+
+        private void offer(int left) {
+            int slot = merges.find(symbols[left], symbols[next[left]]);
+            if (slot < 0) {
+                return;
+            }
+            if (heapSize == heap.length) {
+                heap = Arrays.copyOf(heap, heapSize * 2);
+            }
+            long entry = ((long) merges.rank(slot) << 32) | left;
+            int i = heapSize++;
+            while (i > 0 && heap[(i - 1) >> 1] > entry) {
+                heap[i] = heap[(i - 1) >> 1];
+                i = (i - 1) >> 1;
+            }
+            heap[i] = entry;
+        }
+
+        private long poll() {
+            long top = heap[0];
+            long last = heap[--heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= last) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+
+    private static boolean isMergeable(int[] tokenTypes, int id) {
+        if (tokenTypes == null || id >= tokenTypes.length) {
+            return true;
+        }
+        return tokenTypes[id] == NORMAL_TOKEN || tokenTypes[id] == USER_DEFINED_TOKEN;
+    }
+
+    // GPT-2 maps every byte to a printable character so the vocabulary has no raw bytes
+    private static char[] byteLevelAlphabet() {
+        char[] chars = new char[256];
+        int next = 256;
+        for (int b = 0; b < 256; b++) {
+            boolean printable = (b >= '!' && b <= '~') || (b >= 0xA1 && b <= 0xAC) || (b >= 0xAE && b <= 0xFF);
+            chars[b] = printable ? (char) b : (char) next++;
+        }
+        return chars;
+    }
+
+    // Open-addressing map from a (left, right) id pair to the merged id and its rank
+    private static final class PairTable {
+        private static final long EMPTY = -1L;
+
+        private long[] keys;
+        private int[] mergedIds;
+        private int[] ranks;
+        private int mask;
+        private int size;
+
+        private PairTable(int expected) {
+            allocate(Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1);
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            mergedIds = new int[capacity];
+            ranks = new int[capacity];
+            mask = capacity - 1;
+            size = 0;
+            Arrays.fill(keys, EMPTY);
+        }
+
+        private void put(int left, int right, int merged, int rank) {
+            // Kept at most half full so lookups stay short
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            long key = key(left, right);
+            int slot = hash(key) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                size++;
+            } else if (rank >= ranks[slot]) {
+                // The best-ranked merge for a pair wins
+                return;
+            }
+            keys[slot] = key;
+            mergedIds[slot] = merged;
+            ranks[slot] = rank;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldMerged = mergedIds;
+            int[] oldRanks = ranks;
+            allocate(oldKeys.length * 2);
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != EMPTY) {
+                    put((int) (oldKeys[slot] >>> 32), (int) oldKeys[slot], oldMerged[slot], oldRanks[slot]);
+                }
+            }
+        }
+
+        private int find(int left, int right) {
+            if (left < 0 || right < 0) {
+                return -1;
+            }
+            long key = key(left, right);
+            int slot = hash(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private int merged(int slot) {
+            return mergedIds[slot];
+        }
+
+        private int rank(int slot) {
+            return ranks[slot];
+        }
+
+        private static long key(int left, int right) {
+            return ((long) left << 32) | (right & 0xFFFFFFFFL);
+        }
+
+        private static int hash(long key) {
+            key ^= key >>> 33;
+            key *= 0xFF51AFD7ED558CCDL;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+    }
+}
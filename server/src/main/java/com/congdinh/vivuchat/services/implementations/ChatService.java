@@ -1,5 +1,6 @@
 package com.congdinh.vivuchat.services.implementations;
 
+import com.congdinh.vivuchat.config.OllamaConfig;
 import com.congdinh.vivuchat.dtos.requests.ChatRequest;
 import com.congdinh.vivuchat.dtos.requests.MessageRequest;
 import com.congdinh.vivuchat.dtos.responses.ChatResponse;
@@ -8,20 +9,37 @@ import com.congdinh.vivuchat.entities.Chat;
 import com.congdinh.vivuchat.entities.Message;
 import com.congdinh.vivuchat.entities.Message.MessageRole;
 import com.congdinh.vivuchat.entities.User;
+import com.congdinh.vivuchat.events.ChatReplySavedEvent;
+import com.congdinh.vivuchat.exceptions.ResourceNotFoundException;
 import com.congdinh.vivuchat.repositories.IChatRepository;
+import com.congdinh.vivuchat.repositories.ICompletionJobRepository;
 import com.congdinh.vivuchat.repositories.IMessageRepository;
 import com.congdinh.vivuchat.repositories.IUserRepository;
+import com.congdinh.vivuchat.dtos.ollama.ConversationContext;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
 import com.congdinh.vivuchat.services.interfaces.IChatService;
-import com.congdinh.vivuchat.services.interfaces.IOllamaModelService;
+import com.congdinh.vivuchat.services.interfaces.IConversationContextBuilder;
+import com.congdinh.vivuchat.services.interfaces.IModelRegistry;
+import com.congdinh.vivuchat.services.interfaces.IOllamaService;
+import com.congdinh.vivuchat.services.interfaces.ITokenCounter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
@@ -30,8 +48,17 @@ public class ChatService implements IChatService {
 
     private final IChatRepository chatRepository;
     private final IMessageRepository messageRepository;
+    private final ICompletionJobRepository completionJobRepository;
     private final IUserRepository userRepository;
-    private final IOllamaModelService ollamaModelService;
+    private final IModelRegistry modelRegistry;
+    private final IOllamaService ollamaService;
+    private final TransactionTemplate transactionTemplate;
+    private final OllamaConfig ollamaConfig;
+    private final Scheduler blockingScheduler;
+    private final IConversationContextBuilder contextBuilder;
+    private final ITokenCounter tokenCounter;
+    private final ResumableStreamRegistry resumableStreams;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -39,14 +66,14 @@ public class ChatService implements IChatService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
                 
-        // Validate that the model exists in Ollama
-        boolean modelExists = ollamaModelService.getModelDetails(request.getModel()) != null;
+        // Validate against the cached catalogue, no Ollama call inside the transaction
+        boolean modelExists = modelRegistry.isInstalled(request.getModel());
         if (!modelExists) {
             throw new IllegalArgumentException("Model not found: " + request.getModel());
         }
                 
         Chat chat = Chat.builder()
-                .title(request.getTitle())
+                .title(request.getTitle() != null && !request.getTitle().isBlank() ? request.getTitle() : Chat.DEFAULT_TITLE)
                 .description(request.getDescription())
                 .model(request.getModel())
                 .user(user)
@@ -95,6 +122,8 @@ public class ChatService implements IChatService {
         Chat chat = chatRepository.findByIdAndUser(chatId, user)
                 .orElseThrow(() -> new RuntimeException("Chat not found or you don't have access"));
                 
+        // Jobs reference the chat and its messages, so they go first
+        completionJobRepository.deleteByChat(chat);
         chatRepository.delete(chat);
         log.info("Deleted chat with ID: {} for user: {}", chatId, username);
     }
@@ -116,56 +145,137 @@ public class ChatService implements IChatService {
             throw new IllegalArgumentException("Message content cannot be empty");
         }
         
-        // Improved logic for determining message role
-        MessageRole messageRole;
-        
-        // Check if the content includes thinking tags (which would indicate it's from the AI assistant)
-        if (request.getContent().contains("<think>") || request.getContent().contains("</think>")) {
+        // The client says who wrote the message, a leading think block is always an AI reply
+        // and its reasoning goes to its own column
+        String content = request.getContent();
+        ReasoningSplitter.Split split = ReasoningSplitter.split(content);
+        MessageRole messageRole = Optional.ofNullable(request.getRole()).orElse(MessageRole.USER);
+        if (split.reasoning() != null) {
             messageRole = MessageRole.ASSISTANT;
-            log.debug("Detected as assistant message (contains thinking tags)");
-        } else {
-            // Look at the most recent message in the chat
-            List<Message> recentMessages = messageRepository.findByChatOrderByCreatedAtDesc(chat, Pageable.ofSize(1));
-            
-            // If the last message was from a user, this is likely the assistant's response
-            // If the last message was from the assistant, this is likely a user's message
-            if (!recentMessages.isEmpty() && recentMessages.get(0).getRole() == MessageRole.USER) {
-                messageRole = MessageRole.ASSISTANT;
-                log.debug("Detected as assistant message (follows user message)");
-            } else {
-                messageRole = MessageRole.USER;
-                log.debug("Detected as user message");
-            }
+            content = split.answer();
         }
         
-        // Save the message with the determined role
+        // Save the message with its role
         Message message = Message.builder()
                 .role(messageRole)
-                .content(request.getContent())
+                .content(content)
+                .reasoning(split.reasoning())
                 .chat(chat)
                 .model(chat.getModel())
+                .tokens(tokenCounter.count(chat.getModel(), content))
                 .build();
                 
         message = messageRepository.save(message);
         log.debug("Saved message to database with role: {}", message.getRole());
         
-        // If this is a user message, check if we should update the chat title
-        if (message.getRole() == MessageRole.USER) {
-            List<Message> userMessages = messageRepository.findByChatAndRole(chat, MessageRole.USER);
+        if (message.getRole() == MessageRole.ASSISTANT) {
+            replySaved(chat, username);
+        }
+        
+        return mapToMessageResponse(message);
+    }
+
+    @Override
+    public Flux<ServerSentEvent<Object>> streamReply(String username, UUID chatId, MessageRequest request) {
+        // Validate message content
+        if (request.getContent() == null || request.getContent().trim().isEmpty()) {
+            throw new IllegalArgumentException("Message content cannot be empty");
+        }
+        
+        // Save the user message and load the history in one short transaction,
+        // the stream itself runs after this method has returned
+        AtomicReference<ResumableStreamRegistry.Reservation> reservation = new AtomicReference<>();
+        ReplyContext context;
+        try {
+            context = transactionTemplate.execute(status -> {
+                User user = userRepository.findByUsername(username)
+                        .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+                        
+                Chat chat = chatRepository.findByIdAndUser(chatId, user)
+                        .orElseThrow(() -> new RuntimeException("Chat not found or you don't have access"));
+                
+                // Claimed before the user message is saved: a second reply would replace the running one
+                // for attached tabs and interleave the history, and must not leave its message behind
+                reservation.set(resumableStreams.reserve(replyKey(chatId), username));
+                
+                Message userMessage = messageRepository.save(Message.builder()
+                        .role(MessageRole.USER)
+                        .content(request.getContent())
+                        .chat(chat)
+                        .model(chat.getModel())
+                        .tokens(tokenCounter.count(chat.getModel(), request.getContent()))
+                        .build());
+                log.debug("Saved user message {} for streamed reply", userMessage.getId());
             
-            // If this is the first user message, use it to set the chat title
-            if (userMessages.size() == 1 || chat.getTitle().equals("New Chat")) {
-                String title = request.getContent();
-                if (title.length() > 30) {
-                    title = title.substring(0, 27) + "...";
-                }
-                chat.setTitle(title);
-                chatRepository.save(chat);
-                log.info("Updated chat title to: {}", title);
+                // Only as much history as fits the model's token budget
+                return new ReplyContext(chat, contextBuilder.forChat(chat));
+            });
+        } catch (RuntimeException e) {
+            // Nothing was saved, the chat is free for the next message
+            if (reservation.get() != null) {
+                reservation.get().release();
             }
+            throw e;
         }
         
-        return mapToMessageResponse(message);
+        Chat chat = context.chat();
+        StringBuilder reply = new StringBuilder();
+        AtomicInteger evalCount = new AtomicInteger();
+        
+        ConversationContext history = context.history();
+        Flux<OllamaCompletionResponse> chunks = ollamaService.streamChat(chat.getModel(), history.getMessages(), null)
+                .doOnNext(chunk -> {
+                    if (chunk.getMessage() != null && chunk.getMessage().getContent() != null) {
+                        reply.append(chunk.getMessage().getContent());
+                    }
+                    if (chunk.isDone()) {
+                        evalCount.set(chunk.getEval_count());
+                    }
+                });
+        Flux<ServerSentEvent<Object>> tokens = OllamaStreamEvents.toEvents(chunks, chat.getModel());
+        
+        // Persist the assistant reply once the stream has finished, off the Netty event loop
+        // (on a virtual thread when that mode is enabled)
+        Mono<ServerSentEvent<Object>> saved = Mono.fromCallable(() -> saveAssistantReply(chat, username, reply.toString(), evalCount.get()))
+                .subscribeOn(blockingScheduler)
+                .map(message -> ServerSentEvent.<Object>builder()
+                        .event("saved")
+                        .data(mapToMessageResponse(message))
+                        .build());
+        
+        Flux<ServerSentEvent<Object>> events = tokens.concatWith(saved)
+                .onErrorResume(e -> {
+                    log.error("Error streaming reply for chat {}: {}", chatId, e.getMessage());
+                    
+                    Map<String, Object> errorData = Map.of(
+                        "error", e.getMessage() != null ? e.getMessage() : "Unknown error",
+                        "done", true
+                    );
+                    
+                    return Flux.just(ServerSentEvent.<Object>builder()
+                            .event("error")
+                            .data(errorData)
+                            .build());
+                });
+        
+        // One generation per reply, other tabs of the chat attach to it instead of calling Ollama again
+        Flux<ServerSentEvent<Object>> shared = reservation.get().start(events)
+                .doOnCancel(() -> log.debug("Client disconnected from reply stream for chat {}", chatId));
+        return OllamaStreamEvents.withHeartbeat(shared, Duration.ofSeconds(ollamaConfig.getSseHeartbeatSeconds()));
+    }
+    
+    @Override
+    public Flux<ServerSentEvent<Object>> attachReply(String username, UUID chatId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+            chatRepository.findByIdAndUser(chatId, user)
+                    .orElseThrow(() -> new RuntimeException("Chat not found or you don't have access"));
+        });
+        
+        Flux<ServerSentEvent<Object>> events = resumableStreams.attach(replyKey(chatId))
+                .orElseThrow(() -> new ResourceNotFoundException("No reply is being generated for this chat"));
+        return OllamaStreamEvents.withHeartbeat(events, Duration.ofSeconds(ollamaConfig.getSseHeartbeatSeconds()));
     }
 
     @Override
@@ -184,6 +294,42 @@ public class ChatService implements IChatService {
                 .toList();
     }
     
+    private Message saveAssistantReply(Chat chat, String username, String reply, int evalCount) {
+        if (reply.isEmpty()) {
+            throw new IllegalStateException("Model returned an empty reply");
+        }
+        
+        ReasoningSplitter.Split split = ReasoningSplitter.split(reply);
+        Message message = messageRepository.save(Message.builder()
+                .role(MessageRole.ASSISTANT)
+                .content(split.answer())
+                .reasoning(split.reasoning())
+                .chat(chat)
+                .model(chat.getModel())
+                // Ollama's own count covers the reasoning too, so it is only used for plain replies
+                .tokens(evalCount > 0 && split.reasoning() == null
+                        ? evalCount
+                        : tokenCounter.count(chat.getModel(), split.answer()))
+                .build());
+        log.debug("Saved streamed assistant reply {} for chat {}", message.getId(), chat.getId());
+        replySaved(chat, username);
+        return message;
+    }
+    
+    // An untitled chat gets its title generated once the reply is committed
+    private void replySaved(Chat chat, String username) {
+        if (Chat.DEFAULT_TITLE.equals(chat.getTitle())) {
+            eventPublisher.publishEvent(new ChatReplySavedEvent(this, chat.getId(), username));
+        }
+    }
+    
+    private static String replyKey(UUID chatId) {
+        return "chat:" + chatId;
+    }
+    
+    private record ReplyContext(Chat chat, ConversationContext history) {
+    }
+    
     private ChatResponse mapToResponse(Chat chat, List<Message> messages) {
         List<ChatMessageResponse> messageResponses = messages.stream()
                 .map(this::mapToMessageResponse)
@@ -205,6 +351,7 @@ public class ChatService implements IChatService {
                 .id(message.getId())
                 .role(message.getRole())
                 .content(message.getContent())
+                .reasoning(message.getReasoning())
                 .tokens(message.getTokens())
                 .model(message.getModel())
                 .createdAt(message.getCreatedAt())
@@ -0,0 +1,142 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.entities.Chat;
+import com.congdinh.vivuchat.entities.Message.MessageRole;
+import com.congdinh.vivuchat.repositories.IChatRepository;
+import com.congdinh.vivuchat.repositories.IMessageRepository;
+import com.congdinh.vivuchat.repositories.IMessageRepository.MessageHistory;
+import com.congdinh.vivuchat.services.interfaces.IChatTitleService;
+import com.congdinh.vivuchat.services.interfaces.IGenerationScheduler;
+import com.congdinh.vivuchat.services.interfaces.IModelRegistry;
+import com.congdinh.vivuchat.services.interfaces.IOllamaService;
+import com.congdinh.vivuchat.services.interfaces.IUsageLimiter;
+import com.congdinh.vivuchat.services.interfaces.IUserEventService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.context.Context;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Names chats after their first exchange. A small model is asked for a title
+ * in the background; the title is only written if the chat still has the
+ * default one (the user may have renamed it meanwhile) and is then pushed to
+ * the user's open clients. If the model fails, the first question is used.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatTitleService implements IChatTitleService {
+
+    private static final int EXCHANGE_EXCERPT_CHARS = 1000;
+    private static final String TITLE_PROMPT = "Write a short title (at most 6 words) for the conversation below, "
+            + "in the language of the user. Reply with the title only, without quotes or trailing punctuation.";
+
+    private final IChatRepository chatRepository;
+    private final IMessageRepository messageRepository;
+    private final IOllamaService ollamaService;
+    private final IModelRegistry modelRegistry;
+    private final IUserEventService userEventService;
+    private final TransactionTemplate transactionTemplate;
+    private final OllamaConfig ollamaConfig;
+    private final Scheduler blockingScheduler;
+    
+    private final Set<UUID> inFlight = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void generateTitle(UUID chatId, String username) {
+        if (!inFlight.add(chatId)) {
+            return;
+        }
+        
+        Mono.fromCallable(() -> transactionTemplate.execute(status -> firstExchange(chatId)))
+                .subscribeOn(blockingScheduler)
+                .flatMap(exchange -> exchange.map(this::askForTitle).orElseGet(Mono::empty))
+                // Queued fairly behind the user's own generations, without using up their limits
+                .contextWrite(Context.of(IGenerationScheduler.REQUESTER_KEY, username,
+                        IUsageLimiter.ADMISSION_KEY, IUsageLimiter.Admission.SYSTEM))
+                .publishOn(blockingScheduler)
+                .filter(title -> transactionTemplate.execute(status ->
+                        chatRepository.updateTitleIfUnchanged(chatId, Chat.DEFAULT_TITLE, title)) > 0)
+                .doFinally(signal -> inFlight.remove(chatId))
+                .subscribe(
+                        title -> {
+                            log.info("Titled chat {}: {}", chatId, title);
+                            userEventService.publish(username, "chat-title", Map.of("chatId", chatId, "title", title));
+                        },
+                        e -> log.error("Failed to title chat {}: {}", chatId, e.getMessage()));
+    }
+
+    private Optional<Exchange> firstExchange(UUID chatId) {
+        Chat chat = chatRepository.findById(chatId).orElse(null);
+        if (chat == null || !Chat.DEFAULT_TITLE.equals(chat.getTitle())) {
+            return Optional.empty();
+        }
+        List<MessageHistory> first = messageRepository.findTop2HistoryByChatOrderByCreatedAtAsc(chat);
+        if (first.size() < 2 || first.get(0).getRole() != MessageRole.USER
+                || first.get(1).getRole() != MessageRole.ASSISTANT) {
+            return Optional.empty();
+        }
+        return Optional.of(new Exchange(chat.getModel(), first.get(0).getContent(), first.get(1).getContent()));
+    }
+
+    private Mono<String> askForTitle(Exchange exchange) {
+        String titleModel = ollamaConfig.getTitleModel();
+        // Falls back to the chat's own model when the small one is not installed
+        String model = titleModel != null && !titleModel.isBlank() && modelRegistry.isInstalled(titleModel)
+                ? titleModel
+                : exchange.model();
+        
+        List<Map<String, String>> messages = List.of(
+                Map.of("role", "system", "content", TITLE_PROMPT),
+                Map.of("role", "user", "content", "User: " + excerpt(exchange.question())
+                        + "\n\nAssistant: " + excerpt(exchange.answer())));
+        Map<String, Object> options = Map.of(
+                "temperature", 0.2,
+                "num_predict", ollamaConfig.getTitleMaxTokens());
+        
+        return ollamaService.requestCompletion(model, messages, options)
+                .mapNotNull(response -> response.getMessage() != null ? clean(response.getMessage().getContent()) : null)
+                .onErrorResume(e -> {
+                    log.warn("Title model {} failed, using the first question: {}", model, e.getMessage());
+                    return Mono.empty();
+                })
+                .defaultIfEmpty(truncate(exchange.question().strip()));
+    }
+
+    // First line of the answer, without reasoning, quotes or a trailing period
+    private String clean(String text) {
+        if (text == null) {
+            return null;
+        }
+        String title = ReasoningSplitter.split(text).answer().lines()
+                .map(String::strip)
+                .filter(line -> !line.isEmpty())
+                .findFirst()
+                .orElse("")
+                .replaceAll("^[\"'*#\\s]+|[\"'*.\\s]+$", "");
+        return title.isEmpty() ? null : truncate(title);
+    }
+
+    private String truncate(String title) {
+        int max = ollamaConfig.getTitleMaxChars();
+        return title.length() > max ? title.substring(0, max - 3) + "..." : title;
+    }
+
+    private static String excerpt(String text) {
+        return text.length() > EXCHANGE_EXCERPT_CHARS ? text.substring(0, EXCHANGE_EXCERPT_CHARS) : text;
+    }
+
+    private record Exchange(String model, String question, String answer) {
+    }
+}
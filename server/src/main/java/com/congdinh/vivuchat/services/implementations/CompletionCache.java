@@ -0,0 +1,247 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionRequest;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import com.congdinh.vivuchat.services.interfaces.ICompletionCache;
+import com.congdinh.vivuchat.services.interfaces.ICompletionCoalescer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cache for reproducible completions. Answers are stored deflated in a
+ * Caffeine (W-TinyLFU) cache bounded by total bytes, optionally in direct
+ * buffers outside the heap, and can be replayed as a synthetic stream.
+ */
+@Slf4j
+@Service
+public class CompletionCache implements ICompletionCache {
+
+    // Rough per-entry bookkeeping cost on top of the payload
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final OllamaConfig ollamaConfig;
+    private final ObjectMapper objectMapper;
+    private final ICompletionCoalescer completionCoalescer;
+    private final Cache<String, Payload> cache;
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    public CompletionCache(OllamaConfig ollamaConfig,
+                           ObjectMapper objectMapper,
+                           ICompletionCoalescer completionCoalescer,
+                           MeterRegistry meterRegistry) {
+        this.ollamaConfig = ollamaConfig;
+        this.objectMapper = objectMapper;
+        this.completionCoalescer = completionCoalescer;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(ollamaConfig.getResponseCacheMaxBytes())
+                .weigher((String key, Payload payload) -> key.length() + payload.size() + ENTRY_OVERHEAD_BYTES)
+                .expireAfterWrite(Duration.ofMinutes(ollamaConfig.getResponseCacheTtlMinutes()))
+                .removalListener((String key, Payload payload, RemovalCause cause) -> {
+                    if (payload != null) {
+                        storedBytes.addAndGet(-payload.size());
+                    }
+                })
+                .recordStats()
+                .build();
+        
+        // Hit rate, evictions and size under cache.* with cache=ollama.responses
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "ollama.responses");
+        Gauge.builder("vivuchat.cache.payload.bytes", storedBytes, AtomicLong::get)
+                .description("Compressed bytes held by the completion cache")
+                .tag("offHeap", String.valueOf(ollamaConfig.isResponseCacheOffHeap()))
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean isCacheable(OllamaCompletionRequest request) {
+        if (!ollamaConfig.isResponseCacheEnabled() || request.getOptions() == null) {
+            return false;
+        }
+        Map<String, Object> options = request.getOptions();
+        return options.get("temperature") instanceof Number temperature
+                && temperature.doubleValue() == 0.0
+                && options.get("seed") != null;
+    }
+
+    @Override
+    public String keyOf(OllamaCompletionRequest request) {
+        // The answer does not depend on whether it was streamed
+        OllamaCompletionRequest keyRequest = OllamaCompletionRequest.builder()
+                .model(request.getModel())
+                .messages(request.getMessages())
+                .options(request.getOptions())
+                .build();
+        return completionCoalescer.keyOf("cache", keyRequest);
+    }
+
+    @Override
+    public Optional<OllamaCompletionResponse> get(String key) {
+        Payload payload = cache.getIfPresent(key);
+        if (payload == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(inflate(payload.bytes()), OllamaCompletionResponse.class));
+        } catch (IOException | DataFormatException e) {
+            log.warn("Dropping unreadable cached completion {}: {}", key, e.toString());
+            cache.invalidate(key);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void put(String key, OllamaCompletionResponse response) {
+        try {
+            byte[] compressed = deflate(objectMapper.writeValueAsBytes(response));
+            Payload payload = ollamaConfig.isResponseCacheOffHeap()
+                    ? new DirectPayload(compressed)
+                    : new HeapPayload(compressed);
+            storedBytes.addAndGet(payload.size());
+            cache.put(key, payload);
+            log.debug("Cached completion {} ({} bytes compressed)", key, payload.size());
+        } catch (IOException e) {
+            log.warn("Failed to cache completion {}: {}", key, e.toString());
+        }
+    }
+
+    @Override
+    public Flux<OllamaCompletionResponse> record(String key, Flux<OllamaCompletionResponse> chunks) {
+        StringBuilder content = new StringBuilder();
+        return chunks.doOnNext(chunk -> {
+            if (chunk.getMessage() != null && chunk.getMessage().getContent() != null) {
+                content.append(chunk.getMessage().getContent());
+            }
+            if (chunk.isDone()) {
+                put(key, chunk.toBuilder()
+                        .message(new OllamaCompletionResponse.OllamaMessage("assistant", content.toString()))
+                        .build());
+            }
+        });
+    }
+
+    @Override
+    public Flux<OllamaCompletionResponse> replay(OllamaCompletionResponse cached) {
+        String content = cached.getMessage() != null && cached.getMessage().getContent() != null
+                ? cached.getMessage().getContent()
+                : "";
+        int chunkSize = Math.max(1, ollamaConfig.getResponseCacheReplayChunkChars());
+        
+        List<OllamaCompletionResponse> chunks = new ArrayList<>(content.length() / chunkSize + 2);
+        int start = 0;
+        while (start < content.length()) {
+            int end = Math.min(content.length(), start + chunkSize);
+            // Do not split a surrogate pair across chunks
+            if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+                end++;
+            }
+            chunks.add(OllamaCompletionResponse.builder()
+                    .model(cached.getModel())
+                    .created_at(cached.getCreated_at())
+                    .message(new OllamaCompletionResponse.OllamaMessage("assistant", content.substring(start, end)))
+                    .done(false)
+                    .build());
+            start = end;
+        }
+        
+        OllamaCompletionResponse last = cached.toBuilder()
+                .message(new OllamaCompletionResponse.OllamaMessage("assistant", ""))
+                .build();
+        chunks.add(last);
+        return Flux.fromIterable(chunks);
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated cache payload");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private interface Payload {
+        byte[] bytes();
+        int size();
+    }
+
+    private record HeapPayload(byte[] data) implements Payload {
+        @Override
+        public byte[] bytes() {
+            return data;
+        }
+
+        @Override
+        public int size() {
+            return data.length;
+        }
+    }
+
+    // Kept outside the Java heap so a large cache does not add GC pressure
+    private static final class DirectPayload implements Payload {
+        private final ByteBuffer buffer;
+
+        private DirectPayload(byte[] data) {
+            this.buffer = ByteBuffer.allocateDirect(data.length).put(data).flip();
+        }
+
+        @Override
+        public byte[] bytes() {
+            byte[] data = new byte[buffer.remaining()];
+            buffer.duplicate().get(data);
+            return data;
+        }
+
+        @Override
+        public int size() {
+            return buffer.capacity();
+        }
+    }
+}
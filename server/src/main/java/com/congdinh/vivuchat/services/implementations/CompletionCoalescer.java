@@ -0,0 +1,102 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionRequest;
+import com.congdinh.vivuchat.services.interfaces.ICompletionCoalescer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight deduplication for completions. When several users send the
+ * same prompt with the same options at once, only the first call reaches
+ * Ollama and its result is multicast to everyone who joined while it ran.
+ */
+@Slf4j
+@Service
+public class CompletionCoalescer implements ICompletionCoalescer {
+
+    // Sorted map keys so that equal options always serialize to the same bytes
+    private final JsonMapper canonicalMapper = JsonMapper.builder()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .build();
+    private final Map<String, Flux<?>> inFlight = new ConcurrentHashMap<>();
+    private final Counter started;
+    private final Counter joined;
+
+    public CompletionCoalescer(MeterRegistry meterRegistry) {
+        this.started = Counter.builder("vivuchat.coalescer.started")
+                .description("Completions that started an upstream call")
+                .register(meterRegistry);
+        this.joined = Counter.builder("vivuchat.coalescer.joined")
+                .description("Completions that joined an identical in-flight call")
+                .register(meterRegistry);
+        Gauge.builder("vivuchat.coalescer.inflight", inFlight, Map::size)
+                .description("Distinct completions currently in flight")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String keyOf(String kind, OllamaCompletionRequest request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(kind.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(canonicalMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Cannot compute completion key", e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Flux<T> coalesce(String key, Supplier<Flux<T>> upstream) {
+        return Flux.defer(() -> {
+            boolean[] created = new boolean[1];
+            Flux<T> shared = (Flux<T>) inFlight.computeIfAbsent(key, k -> {
+                created[0] = true;
+                return share(k, upstream.get());
+            });
+            if (created[0]) {
+                started.increment();
+            } else {
+                joined.increment();
+                log.debug("Joined in-flight completion {}", key);
+            }
+            return shared;
+        });
+    }
+
+    @Override
+    public <T> Mono<T> coalesceMono(String key, Supplier<Mono<T>> upstream) {
+        return coalesce(key, () -> upstream.get().flux()).singleOrEmpty();
+    }
+
+    // Replay so a late joiner still receives the chunks it missed; refCount cancels
+    // the upstream as soon as the last subscriber goes away
+    private <T> Flux<T> share(String key, Flux<T> source) {
+        AtomicReference<Flux<T>> self = new AtomicReference<>();
+        Flux<T> shared = source
+                .doFinally(signal -> inFlight.remove(key, self.get()))
+                .replay()
+                .refCount(1);
+        self.set(shared);
+        return shared;
+    }
+}
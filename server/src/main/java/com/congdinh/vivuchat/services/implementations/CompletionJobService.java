@@ -0,0 +1,136 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.CompletionJobConfig;
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.requests.MessageRequest;
+import com.congdinh.vivuchat.dtos.responses.ChatMessageResponse;
+import com.congdinh.vivuchat.dtos.responses.CompletionJobResponse;
+import com.congdinh.vivuchat.entities.Chat;
+import com.congdinh.vivuchat.entities.CompletionJob;
+import com.congdinh.vivuchat.entities.CompletionJob.JobStatus;
+import com.congdinh.vivuchat.entities.Message;
+import com.congdinh.vivuchat.entities.Message.MessageRole;
+import com.congdinh.vivuchat.entities.User;
+import com.congdinh.vivuchat.exceptions.ResourceNotFoundException;
+import com.congdinh.vivuchat.repositories.IChatRepository;
+import com.congdinh.vivuchat.repositories.ICompletionJobRepository;
+import com.congdinh.vivuchat.repositories.IMessageRepository;
+import com.congdinh.vivuchat.repositories.IUserRepository;
+import com.congdinh.vivuchat.services.interfaces.ICompletionJobService;
+import com.congdinh.vivuchat.services.interfaces.ITokenCounter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CompletionJobService implements ICompletionJobService {
+    
+    private final ICompletionJobRepository jobRepository;
+    private final IChatRepository chatRepository;
+    private final IMessageRepository messageRepository;
+    private final IUserRepository userRepository;
+    private final ITokenCounter tokenCounter;
+    private final CompletionJobConfig jobConfig;
+    private final OllamaConfig ollamaConfig;
+    private final Scheduler blockingScheduler;
+    
+    @Override
+    @Transactional
+    public CompletionJobResponse submit(String username, UUID chatId, MessageRequest request) {
+        if (request.getContent() == null || request.getContent().trim().isEmpty()) {
+            throw new IllegalArgumentException("Message content cannot be empty");
+        }
+        
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+        
+        Chat chat = chatRepository.findByIdAndUser(chatId, user)
+                .orElseThrow(() -> new ResourceNotFoundException("Chat not found or you don't have access"));
+        
+        // The prompt and its job commit together, so a queued job always has its message
+        Message prompt = messageRepository.save(Message.builder()
+                .role(MessageRole.USER)
+                .content(request.getContent())
+                .chat(chat)
+                .model(chat.getModel())
+                .tokens(tokenCounter.count(chat.getModel(), request.getContent()))
+                .build());
+        
+        CompletionJob job = jobRepository.save(CompletionJob.builder()
+                .chat(chat)
+                .promptMessage(prompt)
+                .requester(username)
+                .status(JobStatus.QUEUED)
+                .build());
+        log.info("Queued completion job {} for chat {}", job.getId(), chatId);
+        
+        return mapToResponse(job);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public CompletionJobResponse getJob(String username, UUID jobId) {
+        return mapToResponse(findOwnedJob(username, jobId));
+    }
+    
+    @Override
+    public Flux<ServerSentEvent<Object>> subscribe(String username, UUID jobId) {
+        // Resolve ownership up front so an unknown job is a 404 rather than an error event
+        CompletionJobResponse current = mapToResponse(findOwnedJob(username, jobId));
+        
+        Flux<CompletionJobResponse> polled = Flux.interval(Duration.ofMillis(jobConfig.getStatusPollMillis()))
+                .concatMap(tick -> Mono.fromCallable(() -> mapToResponse(findOwnedJob(username, jobId)))
+                        .subscribeOn(blockingScheduler));
+        
+        Flux<ServerSentEvent<Object>> events = Flux.concat(Flux.just(current), polled)
+                .distinctUntilChanged(job -> job.getStatus() + ":" + job.getAttempts())
+                .takeUntil(job -> job.getStatus() == JobStatus.COMPLETED || job.getStatus() == JobStatus.FAILED)
+                .map(job -> ServerSentEvent.<Object>builder()
+                        .id(job.getStatus() + "-" + job.getAttempts())
+                        .event(job.getStatus().name().toLowerCase())
+                        .data(job)
+                        .build())
+                .doOnCancel(() -> log.debug("Client stopped following job {}", jobId));
+        
+        return OllamaStreamEvents.withHeartbeat(events, Duration.ofSeconds(ollamaConfig.getSseHeartbeatSeconds()));
+    }
+    
+    private CompletionJob findOwnedJob(String username, UUID jobId) {
+        return jobRepository.findWithChatById(jobId)
+                .filter(job -> job.getChat().getUser().getUsername().equals(username))
+                .orElseThrow(() -> new ResourceNotFoundException("Job not found: " + jobId));
+    }
+    
+    private CompletionJobResponse mapToResponse(CompletionJob job) {
+        Message result = job.getResultMessage();
+        return CompletionJobResponse.builder()
+                .id(job.getId())
+                .chatId(job.getChat().getId())
+                .status(job.getStatus())
+                .attempts(job.getAttempts())
+                .error(job.getError())
+                .result(result == null ? null : ChatMessageResponse.builder()
+                        .id(result.getId())
+                        .role(result.getRole())
+                        .content(result.getContent())
+                        .reasoning(result.getReasoning())
+                        .tokens(result.getTokens())
+                        .model(result.getModel())
+                        .createdAt(result.getCreatedAt())
+                        .build())
+                .createdAt(job.getCreatedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+}
@@ -0,0 +1,225 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.CompletionJobConfig;
+import com.congdinh.vivuchat.dtos.ollama.ConversationContext;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import com.congdinh.vivuchat.entities.Chat;
+import com.congdinh.vivuchat.entities.CompletionJob;
+import com.congdinh.vivuchat.entities.CompletionJob.JobStatus;
+import com.congdinh.vivuchat.entities.Message;
+import com.congdinh.vivuchat.entities.Message.MessageRole;
+import com.congdinh.vivuchat.events.ChatReplySavedEvent;
+import com.congdinh.vivuchat.exceptions.QueueFullException;
+import com.congdinh.vivuchat.exceptions.RateLimitExceededException;
+import com.congdinh.vivuchat.repositories.ICompletionJobRepository;
+import com.congdinh.vivuchat.repositories.IMessageRepository;
+import com.congdinh.vivuchat.services.interfaces.IConversationContextBuilder;
+import com.congdinh.vivuchat.services.interfaces.IGenerationScheduler;
+import com.congdinh.vivuchat.services.interfaces.IOllamaService;
+import com.congdinh.vivuchat.services.interfaces.ITokenCounter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.context.Context;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs queued completion jobs. Every instance polls the same table; a claim locks
+ * rows with SKIP LOCKED so instances never wait on or double-claim each other's jobs,
+ * and a lease lets another instance pick a job up again if its worker dies.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CompletionJobWorker {
+    
+    private final ICompletionJobRepository jobRepository;
+    private final IMessageRepository messageRepository;
+    private final IConversationContextBuilder contextBuilder;
+    private final IOllamaService ollamaService;
+    private final ITokenCounter tokenCounter;
+    private final TransactionTemplate transactionTemplate;
+    private final CompletionJobConfig jobConfig;
+    private final Scheduler blockingScheduler;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    private final String workerId = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    private final Set<UUID> running = ConcurrentHashMap.newKeySet();
+    
+    @Scheduled(fixedDelayString = "${app.jobs.pollMillis:1000}")
+    public void poll() {
+        if (!jobConfig.isWorkerEnabled()) {
+            return;
+        }
+        
+        int free = jobConfig.getWorkerConcurrency() - running.size();
+        if (free <= 0) {
+            return;
+        }
+        
+        List<UUID> claimed = transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            return jobRepository.lockClaimable(now, free).stream()
+                    .filter(job -> {
+                        if (job.getStatus() != JobStatus.RUNNING) {
+                            return true;
+                        }
+                        // A job whose worker keeps dying or hanging has used its attempts too
+                        if (job.getAttempts() >= jobConfig.getMaxAttempts()) {
+                            job.setStatus(JobStatus.FAILED);
+                            job.setError("Lease expired on worker " + job.getWorkerId() + " after " + job.getAttempts() + " attempts");
+                            finish(job);
+                            log.error("Job {} failed: {}", job.getId(), job.getError());
+                            return false;
+                        }
+                        log.warn("Reclaiming job {} from worker {} after its lease expired", job.getId(), job.getWorkerId());
+                        return true;
+                    })
+                    .map(job -> {
+                        job.setStatus(JobStatus.RUNNING);
+                        job.setWorkerId(workerId);
+                        job.setLeaseExpiresAt(now.plusSeconds(jobConfig.getLeaseSeconds()));
+                        job.setAttempts(job.getAttempts() + 1);
+                        job.setStartedAt(now);
+                        job.setNotBefore(null);
+                        return job.getId();
+                    })
+                    .toList();
+        });
+        
+        if (claimed != null) {
+            claimed.forEach(this::run);
+        }
+    }
+    
+    // Renew well before expiry so a slow generation is not taken over by another instance
+    @Scheduled(fixedDelayString = "#{${app.jobs.leaseSeconds:60} * 1000 / 3}")
+    public void renewLeases() {
+        if (running.isEmpty()) {
+            return;
+        }
+        
+        Instant until = Instant.now().plusSeconds(jobConfig.getLeaseSeconds());
+        Integer renewed = transactionTemplate.execute(status -> jobRepository.renewLeases(Set.copyOf(running), workerId, until));
+        log.debug("Renewed {} of {} job leases held by {}", renewed, running.size(), workerId);
+    }
+    
+    private void run(UUID jobId) {
+        running.add(jobId);
+        
+        Mono.fromCallable(() -> transactionTemplate.execute(status -> {
+                    CompletionJob job = jobRepository.findWithChatById(jobId).orElseThrow();
+                    return new JobInput(job.getChat().getModel(), job.getRequester(), contextBuilder.forChat(job.getChat()));
+                }))
+                .subscribeOn(blockingScheduler)
+                .flatMap(input -> ollamaService.requestCompletion(input.model(), input.history().getMessages(), null)
+                        // Queue fairly behind the job owner's other generations
+                        .contextWrite(Context.of(IGenerationScheduler.REQUESTER_KEY, input.requester())))
+                .publishOn(blockingScheduler)
+                .doOnNext(response -> complete(jobId, response))
+                .doOnError(e -> fail(jobId, e))
+                .doFinally(signal -> running.remove(jobId))
+                .subscribe(response -> { }, e -> log.debug("Job {} attempt failed: {}", jobId, e.getMessage()));
+    }
+    
+    private void complete(UUID jobId, OllamaCompletionResponse response) {
+        String content = response.getMessage() != null ? response.getMessage().getContent() : null;
+        if (content == null || content.isEmpty()) {
+            throw new IllegalStateException("Model returned an empty reply");
+        }
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            CompletionJob job = jobRepository.findWithChatById(jobId).orElseThrow();
+            if (!ownsJob(job)) {
+                log.warn("Dropping result of job {}, it was reclaimed by worker {}", jobId, job.getWorkerId());
+                return;
+            }
+            
+            ReasoningSplitter.Split split = ReasoningSplitter.split(content);
+            Message reply = messageRepository.save(Message.builder()
+                    .role(MessageRole.ASSISTANT)
+                    .content(split.answer())
+                    .reasoning(split.reasoning())
+                    .chat(job.getChat())
+                    .model(job.getChat().getModel())
+                    .tokens(response.getEval_count() > 0 && split.reasoning() == null
+                            ? response.getEval_count()
+                            : tokenCounter.count(job.getChat().getModel(), split.answer()))
+                    .build());
+            
+            job.setResultMessage(reply);
+            if (Chat.DEFAULT_TITLE.equals(job.getChat().getTitle())) {
+                eventPublisher.publishEvent(new ChatReplySavedEvent(this, job.getChat().getId(), job.getRequester()));
+            }
+            job.setStatus(JobStatus.COMPLETED);
+            job.setError(null);
+            finish(job);
+            log.info("Completed job {} with message {} after {} attempt(s)", jobId, reply.getId(), job.getAttempts());
+        });
+    }
+    
+    private void fail(UUID jobId, Throwable error) {
+        transactionTemplate.executeWithoutResult(status -> {
+            CompletionJob job = jobRepository.findById(jobId).orElse(null);
+            if (job == null || !ownsJob(job)) {
+                return;
+            }
+            
+            job.setError(error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName());
+            long deferSeconds = deferSeconds(error);
+            if (deferSeconds > 0) {
+                // Over the owner's limits or shed by a full queue: not the job's fault, so the
+                // attempt is given back and the job waits out the Retry-After delay
+                job.setAttempts(job.getAttempts() - 1);
+                job.setStatus(JobStatus.QUEUED);
+                job.setWorkerId(null);
+                job.setLeaseExpiresAt(null);
+                job.setNotBefore(Instant.now().plusSeconds(deferSeconds));
+                log.info("Job {} deferred for {}s: {}", jobId, deferSeconds, job.getError());
+            } else if (job.getAttempts() >= jobConfig.getMaxAttempts()) {
+                job.setStatus(JobStatus.FAILED);
+                finish(job);
+                log.error("Job {} failed after {} attempts: {}", jobId, job.getAttempts(), job.getError());
+            } else {
+                // Back to the queue, any instance may retry it
+                job.setStatus(JobStatus.QUEUED);
+                job.setWorkerId(null);
+                job.setLeaseExpiresAt(null);
+                log.warn("Job {} attempt {} failed, requeued: {}", jobId, job.getAttempts(), job.getError());
+            }
+        });
+    }
+    
+    private static long deferSeconds(Throwable error) {
+        if (error instanceof RateLimitExceededException rateLimited) {
+            return rateLimited.getRetryAfterSeconds();
+        }
+        if (error instanceof QueueFullException queueFull) {
+            return queueFull.getRetryAfterSeconds();
+        }
+        return 0;
+    }
+    
+    private boolean ownsJob(CompletionJob job) {
+        return job.getStatus() == JobStatus.RUNNING && workerId.equals(job.getWorkerId());
+    }
+    
+    private void finish(CompletionJob job) {
+        job.setFinishedAt(Instant.now());
+        job.setLeaseExpiresAt(null);
+    }
+    
+    private record JobInput(String model, String requester, ConversationContext history) {
+    }
+}
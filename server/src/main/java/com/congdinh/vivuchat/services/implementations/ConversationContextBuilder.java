@@ -0,0 +1,208 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.ConversationContext;
+import com.congdinh.vivuchat.entities.Chat;
+import com.congdinh.vivuchat.entities.Message;
+import com.congdinh.vivuchat.repositories.IMessageRepository;
+import com.congdinh.vivuchat.repositories.IMessageRepository.MessageHistory;
+import com.congdinh.vivuchat.services.interfaces.IConversationContextBuilder;
+import com.congdinh.vivuchat.services.interfaces.ITokenCounter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the message list sent to Ollama within a per-model token budget.
+ * System prompts, the latest message and the first exchange are pinned; the
+ * rest is a sliding window of the most recent turns. Reasoning is not sent
+ * back: stored replies keep it in a separate column that history reads skip,
+ * and think tags in client-supplied history (or older rows) are dropped from
+ * all but the latest assistant turn.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConversationContextBuilder implements IConversationContextBuilder {
+
+    // Role and template tokens Ollama adds around each message
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final int HISTORY_PAGE_SIZE = 32;
+    private static final Pattern THINK_BLOCK = Pattern.compile("(?s)<think>.*?</think>\\s*");
+    private static final String THINK_OPEN = "<think>";
+
+    private final IMessageRepository messageRepository;
+    private final ITokenCounter tokenCounter;
+    private final OllamaConfig ollamaConfig;
+
+    @Override
+    public ConversationContext forChat(Chat chat) {
+        String model = chat.getModel();
+        int budget = promptBudget(model);
+        
+        // Newest pages first, stop loading once the window is surely full
+        List<MessageHistory> newestFirst = new ArrayList<>();
+        int estimate = 0;
+        for (int page = 0; estimate < budget; page++) {
+            List<MessageHistory> batch = messageRepository.findHistoryByChatOrderByCreatedAtDesc(
+                    chat, PageRequest.of(page, HISTORY_PAGE_SIZE));
+            for (MessageHistory message : batch) {
+                newestFirst.add(message);
+                // Stored counts cover the answer only (older replies with inline reasoning
+                // overestimate, which just stops loading a page early)
+                estimate += message.getTokens() != null
+                        ? message.getTokens() + MESSAGE_OVERHEAD_TOKENS
+                        : cost(model, message.getRole() == Message.MessageRole.ASSISTANT
+                                ? stripThinking(message.getContent())
+                                : message.getContent());
+            }
+            if (batch.size() < HISTORY_PAGE_SIZE) {
+                break;
+            }
+        }
+        
+        // The first exchange is pinned even when the window does not reach it
+        List<Map<String, String>> history = new ArrayList<>(newestFirst.size() + 2);
+        Set<UUID> loaded = new HashSet<>();
+        newestFirst.forEach(message -> loaded.add(message.getId()));
+        for (MessageHistory message : messageRepository.findTop2HistoryByChatOrderByCreatedAtAsc(chat)) {
+            if (!loaded.contains(message.getId())) {
+                history.add(toOllamaMessage(message));
+            }
+        }
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            history.add(toOllamaMessage(newestFirst.get(i)));
+        }
+        
+        return fit(model, history);
+    }
+
+    @Override
+    public ConversationContext fit(String model, List<Map<String, String>> messages) {
+        String resolvedModel = model != null && !model.isEmpty() ? model : ollamaConfig.getDefaultModel();
+        int n = messages != null ? messages.size() : 0;
+        if (n == 0) {
+            return ConversationContext.builder()
+                    .messages(List.of())
+                    .build();
+        }
+        
+        int lastAssistant = -1;
+        int firstUser = -1;
+        for (int i = 0; i < n; i++) {
+            String role = messages.get(i).get("role");
+            if ("assistant".equals(role)) {
+                lastAssistant = i;
+            } else if ("user".equals(role) && firstUser < 0) {
+                firstUser = i;
+            }
+        }
+        
+        List<Map<String, String>> trimmed = new ArrayList<>(n);
+        int[] costs = new int[n];
+        for (int i = 0; i < n; i++) {
+            Map<String, String> message = messages.get(i);
+            if ("assistant".equals(message.get("role")) && i != lastAssistant) {
+                message = withContent(message, stripThinking(message.get("content")));
+            }
+            trimmed.add(message);
+            costs[i] = cost(resolvedModel, message.get("content"));
+        }
+        
+        int budget = promptBudget(resolvedModel);
+        boolean[] keep = new boolean[n];
+        int used = 0;
+        
+        // System prompts and the message being answered are always sent
+        for (int i = 0; i < n; i++) {
+            if ("system".equals(trimmed.get(i).get("role")) || i == n - 1) {
+                keep[i] = true;
+                used += costs[i];
+            }
+        }
+        
+        // Then the first exchange, if it fits as a whole
+        if (firstUser >= 0) {
+            int firstTurnEnd = firstUser + 1 < n && "assistant".equals(trimmed.get(firstUser + 1).get("role"))
+                    ? firstUser + 1
+                    : firstUser;
+            int firstTurnCost = 0;
+            for (int i = firstUser; i <= firstTurnEnd; i++) {
+                firstTurnCost += keep[i] ? 0 : costs[i];
+            }
+            if (used + firstTurnCost <= budget) {
+                for (int i = firstUser; i <= firstTurnEnd; i++) {
+                    keep[i] = true;
+                }
+                used += firstTurnCost;
+            }
+        }
+        
+        // Then as many recent messages as fit, without gaps
+        for (int i = n - 2; i >= 0; i--) {
+            if (keep[i]) {
+                continue;
+            }
+            if (used + costs[i] > budget) {
+                break;
+            }
+            keep[i] = true;
+            used += costs[i];
+        }
+        
+        List<Map<String, String>> context = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                context.add(trimmed.get(i));
+            }
+        }
+        
+        log.debug("Context for model {}: {} of {} messages, {} of {} prompt tokens",
+                resolvedModel, context.size(), n, used, budget);
+        
+        return ConversationContext.builder()
+                .messages(context)
+                .promptTokens(used)
+                .droppedMessages(n - context.size())
+                .build();
+    }
+
+    private int promptBudget(String model) {
+        return Math.max(0, ollamaConfig.contextTokens(model) - ollamaConfig.getReplyReserveTokens());
+    }
+
+    private int cost(String model, String content) {
+        return tokenCounter.count(model, content) + MESSAGE_OVERHEAD_TOKENS;
+    }
+
+    private static String stripThinking(String content) {
+        if (content == null || !content.contains(THINK_OPEN)) {
+            return content;
+        }
+        String stripped = THINK_BLOCK.matcher(content).replaceAll("");
+        // A reply cut off mid-reasoning has no closing tag
+        int open = stripped.indexOf(THINK_OPEN);
+        return open >= 0 ? stripped.substring(0, open) : stripped;
+    }
+
+    private static Map<String, String> withContent(Map<String, String> message, String content) {
+        return Map.of(
+                "role", message.get("role"),
+                "content", content != null ? content : "");
+    }
+
+    private static Map<String, String> toOllamaMessage(MessageHistory message) {
+        return Map.of(
+                "role", message.getRole().name().toLowerCase(),
+                "content", message.getContent());
+    }
+}
@@ -0,0 +1,109 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.FlightRecorderConfig;
+import com.congdinh.vivuchat.exceptions.ServiceException;
+import com.congdinh.vivuchat.services.interfaces.IFlightRecorderService;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Keeps a continuous JFR recording with the configured profile (see
+ * jfr/vivuchat.jfc) so the minutes before a latency spike can be dumped and
+ * inspected afterwards. JFR keeps the data in its own repository, trimmed by
+ * age and size.
+ */
+@Slf4j
+@Service
+public class FlightRecorderService implements IFlightRecorderService, SmartLifecycle {
+
+    private static final String RECORDING_NAME = "vivuchat";
+
+    private final FlightRecorderConfig recorderConfig;
+    private final ResourceLoader resourceLoader;
+    private volatile Recording recording;
+
+    public FlightRecorderService(FlightRecorderConfig recorderConfig, ResourceLoader resourceLoader) {
+        this.recorderConfig = recorderConfig;
+        this.resourceLoader = resourceLoader;
+    }
+
+    @Override
+    public void start() {
+        if (!recorderConfig.isEnabled()) {
+            return;
+        }
+        try {
+            Recording continuous = new Recording(loadConfiguration(recorderConfig.getProfile()));
+            continuous.setName(RECORDING_NAME);
+            continuous.setToDisk(true);
+            continuous.setMaxAge(Duration.ofMinutes(recorderConfig.getMaxAgeMinutes()));
+            continuous.setMaxSize(recorderConfig.getMaxSizeMb() * 1024 * 1024);
+            continuous.start();
+            recording = continuous;
+            log.info("Continuous JFR recording started with profile {} (max age {} min, max size {} MB)",
+                    recorderConfig.getProfile(), recorderConfig.getMaxAgeMinutes(), recorderConfig.getMaxSizeMb());
+        } catch (IOException | ParseException | RuntimeException e) {
+            // Diagnostics must never keep the application from starting
+            log.warn("Could not start JFR recording with profile {}: {}", recorderConfig.getProfile(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void stop() {
+        Recording continuous = recording;
+        recording = null;
+        if (continuous != null) {
+            continuous.close();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return recording != null;
+    }
+
+    @Override
+    public boolean isRecording() {
+        return recording != null;
+    }
+
+    @Override
+    public Path dump() {
+        Recording continuous = recording;
+        if (continuous == null) {
+            throw new ServiceException("No JFR recording is running");
+        }
+        try {
+            Path file = Files.createTempFile("vivuchat-", ".jfr");
+            continuous.dump(file);
+            log.info("Dumped JFR recording to {} ({} bytes)", file, Files.size(file));
+            return file;
+        } catch (IOException e) {
+            throw new ServiceException("Could not dump JFR recording", e);
+        }
+    }
+
+    private Configuration loadConfiguration(String profile) throws IOException, ParseException {
+        if (!profile.endsWith(".jfc")) {
+            return Configuration.getConfiguration(profile);
+        }
+        Resource resource = resourceLoader.getResource(profile);
+        try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        }
+    }
+}
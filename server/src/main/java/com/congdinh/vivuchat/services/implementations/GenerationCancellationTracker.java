@@ -0,0 +1,92 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionRequest;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts upstream generations abandoned before Ollama finished them. The
+ * upstream flux is only cancelled once its last SSE subscriber is gone, and
+ * cancelling the WebClient body makes Reactor Netty close the connection,
+ * which is what stops Ollama generating. Tokens saved are estimated from the
+ * typical answer length of the model (or num_predict when the request sets it).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GenerationCancellationTracker {
+
+    private static final double AVERAGE_WEIGHT = 0.1;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Double> averageEvalCount = new ConcurrentHashMap<>();
+
+    public Flux<OllamaCompletionResponse> track(OllamaCompletionRequest request, Flux<OllamaCompletionResponse> upstream) {
+        String model = request.getModel();
+        return Flux.defer(() -> {
+            // Ollama streams one token per chunk
+            AtomicInteger generated = new AtomicInteger();
+            return upstream
+                    .doOnNext(chunk -> {
+                        if (chunk.isDone()) {
+                            recordCompleted(model, chunk.getEval_count());
+                        } else {
+                            generated.incrementAndGet();
+                        }
+                    })
+                    .doOnCancel(() -> recordCancelled(model, numPredict(request), generated.get()));
+        });
+    }
+
+    // Drops the running average and counters of a deleted model
+    public void removeModel(String model) {
+        averageEvalCount.remove(model);
+        meterRegistry.getMeters().stream()
+                .filter(meter -> meter.getId().getName().startsWith("vivuchat.generation.")
+                        && model.equals(meter.getId().getTag("model")))
+                .forEach(meterRegistry::remove);
+    }
+
+    private void recordCompleted(String model, int evalCount) {
+        if (evalCount > 0) {
+            averageEvalCount.merge(model, (double) evalCount,
+                    (average, latest) -> average + AVERAGE_WEIGHT * (latest - average));
+        }
+    }
+
+    private void recordCancelled(String model, int numPredict, int generated) {
+        double expected = averageEvalCount.getOrDefault(model, 0.0);
+        if (numPredict > 0) {
+            expected = expected > 0 ? Math.min(expected, numPredict) : numPredict;
+        }
+        long saved = Math.max(0, Math.round(expected) - generated);
+        log.debug("Cancelled generation for model {} after {} tokens, ~{} tokens saved", model, generated, saved);
+        
+        Counter.builder("vivuchat.generation.cancelled")
+                .description("Upstream generations cancelled because every client disconnected")
+                .tag("model", model)
+                .register(meterRegistry)
+                .increment();
+        Counter.builder("vivuchat.generation.tokens.saved")
+                .description("Estimated tokens Ollama did not generate thanks to cancellation")
+                .tag("model", model)
+                .register(meterRegistry)
+                .increment(saved);
+    }
+
+    private static int numPredict(OllamaCompletionRequest request) {
+        if (request.getOptions() != null && request.getOptions().get("num_predict") instanceof Number number) {
+            return number.intValue();
+        }
+        return 0;
+    }
+}
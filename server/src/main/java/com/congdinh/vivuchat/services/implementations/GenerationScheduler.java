@@ -0,0 +1,308 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.exceptions.QueueFullException;
+import com.congdinh.vivuchat.services.interfaces.IGenerationScheduler;
+import com.congdinh.vivuchat.services.interfaces.IOllamaNodeBalancer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of Ollama. Each model gets as many concurrent
+ * generations as the backends have parallel slots; the rest wait in per-user
+ * queues served with deficit round robin, so one user with many tabs cannot
+ * starve everyone else.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GenerationScheduler implements IGenerationScheduler {
+
+    private final OllamaConfig ollamaConfig;
+    private final IOllamaNodeBalancer nodeBalancer;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ModelQueue> queues = new ConcurrentHashMap<>();
+
+    @Override
+    public <T> Flux<T> schedule(String model, String requester, int cost, Supplier<Flux<T>> generation) {
+        return Flux.usingWhen(
+                acquire(model, requester, cost),
+                permit -> generation.get(),
+                Permit::releaseAsync,
+                (permit, error) -> permit.releaseAsync(),
+                Permit::releaseAsync);
+    }
+
+    @Override
+    public <T> Mono<T> scheduleMono(String model, String requester, int cost, Supplier<Mono<T>> generation) {
+        return Mono.usingWhen(
+                acquire(model, requester, cost),
+                permit -> generation.get(),
+                Permit::releaseAsync,
+                (permit, error) -> permit.releaseAsync(),
+                Permit::releaseAsync);
+    }
+
+    @Override
+    public int getQueueDepth(String model) {
+        ModelQueue queue = queues.get(model);
+        return queue != null ? queue.queued : 0;
+    }
+
+    @Override
+    public int getActiveCount(String model) {
+        ModelQueue queue = queues.get(model);
+        return queue != null ? queue.active : 0;
+    }
+
+    @Override
+    public void removeModel(String model) {
+        queues.computeIfPresent(model, (name, queue) -> queue.retire() ? null : queue);
+    }
+
+    // A queue removed between the lookup and the enqueue is retired, the next lookup creates a new one
+    private Mono<Permit> acquire(String model, String requester, int cost) {
+        return Mono.create(sink -> {
+            boolean enqueued;
+            do {
+                enqueued = queueFor(model).enqueue(requester, Math.max(1, cost), sink);
+            } while (!enqueued);
+        });
+    }
+
+    private ModelQueue queueFor(String model) {
+        return queues.computeIfAbsent(model, name -> new ModelQueue(name, concurrencyLimit(name)));
+    }
+
+    private int concurrencyLimit(String model) {
+        Integer configured = ollamaConfig.getModelConcurrency().get(model);
+        if (configured != null && configured > 0) {
+            return configured;
+        }
+        return Math.max(1, ollamaConfig.getParallelSlotsPerNode() * nodeBalancer.getNodes().size());
+    }
+
+    private final class ModelQueue {
+        private final String model;
+        private final int limit;
+        // Users with waiting requests, in round robin order
+        private final ArrayDeque<UserQueue> activeUsers = new ArrayDeque<>();
+        private final Map<String, UserQueue> users = new HashMap<>();
+        private final Timer waitTimer;
+        private final Counter rejected;
+        private final Gauge depthGauge;
+        private final Gauge activeGauge;
+        private volatile int active;
+        private volatile int queued;
+        private boolean retired;
+        private volatile boolean removeWhenIdle;
+
+        private ModelQueue(String model, int limit) {
+            this.model = model;
+            this.limit = limit;
+            this.waitTimer = Timer.builder("vivuchat.scheduler.wait")
+                    .description("Time a generation waited for a free model slot")
+                    .tag("model", model)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("vivuchat.scheduler.rejected")
+                    .description("Generations rejected because the model queue was full")
+                    .tag("model", model)
+                    .register(meterRegistry);
+            this.depthGauge = Gauge.builder("vivuchat.scheduler.queue.depth", this, queue -> queue.queued)
+                    .description("Generations waiting for a model slot")
+                    .tag("model", model)
+                    .register(meterRegistry);
+            this.activeGauge = Gauge.builder("vivuchat.scheduler.active", this, queue -> queue.active)
+                    .description("Generations currently running")
+                    .tag("model", model)
+                    .register(meterRegistry);
+            log.info("Admission control for model {} allows {} concurrent generation(s)", model, limit);
+        }
+
+        // False when the queue was retired, nothing has been registered on the sink then
+        private boolean enqueue(String requester, int cost, MonoSink<Permit> sink) {
+            Waiter waiter = new Waiter(requester, cost, sink, System.nanoTime());
+            List<Waiter> granted;
+            synchronized (this) {
+                if (retired) {
+                    return false;
+                }
+                sink.onCancel(() -> cancel(waiter));
+                if (queued >= ollamaConfig.getMaxQueuedPerModel()) {
+                    rejected.increment();
+                    long retryAfterSeconds = Math.max(1, (long) Math.ceil(waitTimer.mean(TimeUnit.SECONDS)));
+                    sink.error(new QueueFullException("Too many pending requests for model " + model + ", please retry later",
+                            retryAfterSeconds));
+                    return true;
+                }
+                UserQueue userQueue = users.computeIfAbsent(requester, UserQueue::new);
+                if (userQueue.waiters.isEmpty()) {
+                    activeUsers.addLast(userQueue);
+                }
+                userQueue.waiters.addLast(waiter);
+                queued++;
+                granted = dispatch();
+            }
+            grant(granted);
+            return true;
+        }
+
+        // A busy queue is removed when its last generation ends
+        private synchronized boolean retire() {
+            if (active > 0 || queued > 0) {
+                removeWhenIdle = true;
+                return false;
+            }
+            retired = true;
+            meterRegistry.remove(waitTimer);
+            meterRegistry.remove(rejected);
+            meterRegistry.remove(depthGauge);
+            meterRegistry.remove(activeGauge);
+            log.info("Removed admission control for model {}", model);
+            return true;
+        }
+
+        private void cancel(Waiter waiter) {
+            List<Waiter> granted;
+            synchronized (this) {
+                if (waiter.permit != null) {
+                    // The permit raced with the cancellation and was never used
+                    granted = waiter.permit.tryRelease() ? releaseSlot() : List.of();
+                } else {
+                    UserQueue userQueue = users.get(waiter.requester);
+                    if (userQueue == null || !userQueue.waiters.remove(waiter)) {
+                        return;
+                    }
+                    queued--;
+                    if (userQueue.waiters.isEmpty()) {
+                        activeUsers.remove(userQueue);
+                        users.remove(waiter.requester);
+                    }
+                    granted = List.of();
+                }
+            }
+            grant(granted);
+        }
+
+        private void release() {
+            List<Waiter> granted;
+            synchronized (this) {
+                granted = releaseSlot();
+            }
+            grant(granted);
+            if (removeWhenIdle) {
+                removeModel(model);
+            }
+        }
+
+        private List<Waiter> releaseSlot() {
+            active--;
+            return dispatch();
+        }
+
+        // Deficit round robin: each visit tops up the user's deficit by the quantum,
+        // and the head request is admitted once the deficit covers its cost
+        private List<Waiter> dispatch() {
+            List<Waiter> granted = new ArrayList<>();
+            int quantum = Math.max(1, ollamaConfig.getSchedulerQuantum());
+            while (active < limit && !activeUsers.isEmpty()) {
+                UserQueue userQueue = activeUsers.pollFirst();
+                Waiter head = userQueue.waiters.peekFirst();
+                if (userQueue.deficit < head.cost) {
+                    userQueue.deficit += quantum;
+                    activeUsers.addLast(userQueue);
+                    continue;
+                }
+                userQueue.deficit -= head.cost;
+                userQueue.waiters.pollFirst();
+                queued--;
+                active++;
+                head.permit = new Permit(this);
+                granted.add(head);
+                
+                if (userQueue.waiters.isEmpty()) {
+                    users.remove(userQueue.requester);
+                } else {
+                    activeUsers.addLast(userQueue);
+                }
+            }
+            return granted;
+        }
+
+        // Complete the sinks outside the lock, subscribers may start their generation inline
+        private void grant(List<Waiter> granted) {
+            for (Waiter waiter : granted) {
+                long waited = System.nanoTime() - waiter.enqueuedAt;
+                waitTimer.record(waited, TimeUnit.NANOSECONDS);
+                log.debug("Admitted generation for {} on model {} after {} ms",
+                        waiter.requester, model, TimeUnit.NANOSECONDS.toMillis(waited));
+                waiter.sink.success(waiter.permit);
+            }
+        }
+    }
+
+    private static final class UserQueue {
+        private final String requester;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private long deficit;
+
+        private UserQueue(String requester) {
+            this.requester = requester;
+        }
+    }
+
+    private static final class Waiter {
+        private final String requester;
+        private final int cost;
+        private final MonoSink<Permit> sink;
+        private final long enqueuedAt;
+        private Permit permit;
+
+        private Waiter(String requester, int cost, MonoSink<Permit> sink, long enqueuedAt) {
+            this.requester = requester;
+            this.cost = cost;
+            this.sink = sink;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private static final class Permit {
+        private final ModelQueue queue;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ModelQueue queue) {
+            this.queue = queue;
+        }
+
+        private boolean tryRelease() {
+            return released.compareAndSet(false, true);
+        }
+
+        private Mono<Void> releaseAsync() {
+            return Mono.fromRunnable(() -> {
+                if (tryRelease()) {
+                    queue.release();
+                }
+            });
+        }
+    }
+}
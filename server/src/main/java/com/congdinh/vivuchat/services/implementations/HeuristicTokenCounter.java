@@ -0,0 +1,31 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.services.interfaces.ITokenCounter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estimates token counts without a vocabulary: about four ASCII characters
+ * per token, and one token per non-ASCII character so Vietnamese diacritics
+ * and CJK text are over- rather than under-counted.
+ */
+@Component
+public class HeuristicTokenCounter implements ITokenCounter {
+
+    @Override
+    public int count(String model, CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                ascii++;
+            } else if (!Character.isLowSurrogate(c)) {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + other;
+    }
+}
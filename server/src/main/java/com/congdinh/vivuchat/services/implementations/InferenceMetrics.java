@@ -0,0 +1,181 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import com.congdinh.vivuchat.services.interfaces.IOllamaNodeBalancer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency and throughput of Ollama generations per model and node, for capacity
+ * planning: time to first token, gaps between streamed tokens, decode rate from
+ * eval_count/eval_duration, model load time (cold loads counted separately),
+ * upstream errors and open streams. Timers publish histograms so percentiles can
+ * be aggregated across instances in Prometheus. Queue wait before a generation is
+ * admitted is measured by the scheduler (vivuchat.scheduler.wait).
+ */
+@Component
+public class InferenceMetrics {
+
+    private final OllamaConfig ollamaConfig;
+    private final MeterRegistry meterRegistry;
+    private final Map<Tags, Meters> meters = new ConcurrentHashMap<>();
+
+    public InferenceMetrics(OllamaConfig ollamaConfig, MeterRegistry meterRegistry) {
+        this.ollamaConfig = ollamaConfig;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Instruments raw chunks as they arrive from the node, before they are batched for SSE
+    public Flux<OllamaCompletionResponse> stream(String model, Flux<OllamaCompletionResponse> chunks) {
+        return Flux.deferContextual(ctx -> {
+            Meters meters = metersFor(model, ctx.getOrDefault(IOllamaNodeBalancer.NODE_KEY, "unknown"));
+            StreamTiming timing = new StreamTiming();
+            return chunks
+                    .doOnSubscribe(subscription -> {
+                        meters.activeStreams.incrementAndGet();
+                        timing.last = System.nanoTime();
+                    })
+                    .doOnNext(chunk -> {
+                        String content = chunk.getMessage() != null ? chunk.getMessage().getContent() : null;
+                        if (content != null && !content.isEmpty()) {
+                            long now = System.nanoTime();
+                            (timing.firstSeen ? meters.interToken : meters.timeToFirstToken)
+                                    .record(now - timing.last, TimeUnit.NANOSECONDS);
+                            timing.firstSeen = true;
+                            timing.last = now;
+                        }
+                        if (chunk.isDone()) {
+                            recordStats(meters, chunk);
+                        }
+                    })
+                    .doOnError(e -> recordError(meters, e))
+                    .doFinally(signal -> meters.activeStreams.decrementAndGet());
+        });
+    }
+
+    // Non-streaming calls only report the final stats and errors
+    public Mono<OllamaCompletionResponse> call(String model, Mono<OllamaCompletionResponse> response) {
+        return Mono.deferContextual(ctx -> {
+            Meters meters = metersFor(model, ctx.getOrDefault(IOllamaNodeBalancer.NODE_KEY, "unknown"));
+            return response
+                    .doOnNext(result -> recordStats(meters, result))
+                    .doOnError(e -> recordError(meters, e));
+        });
+    }
+
+    // Drops every series of a deleted model, on all nodes
+    public void removeModel(String model) {
+        meters.keySet().removeIf(tags -> tags.stream()
+                .anyMatch(tag -> tag.getKey().equals("model") && tag.getValue().equals(model)));
+        meterRegistry.getMeters().stream()
+                .filter(meter -> meter.getId().getName().startsWith("vivuchat.inference.")
+                        && model.equals(meter.getId().getTag("model")))
+                .forEach(meterRegistry::remove);
+    }
+
+    private void recordStats(Meters meters, OllamaCompletionResponse response) {
+        if (response.getEval_count() > 0 && response.getEval_duration() > 0) {
+            meters.tokensPerSecond.record(response.getEval_count() * 1e9 / response.getEval_duration());
+        }
+        if (response.getTotal_duration() > 0) {
+            meters.totalDuration.record(response.getTotal_duration(), TimeUnit.NANOSECONDS);
+        }
+        meters.loadDuration.record(response.getLoad_duration(), TimeUnit.NANOSECONDS);
+        if (response.getLoad_duration() >= TimeUnit.MILLISECONDS.toNanos(ollamaConfig.getColdLoadThresholdMillis())) {
+            meters.coldLoads.increment();
+        }
+    }
+
+    private void recordError(Meters meters, Throwable e) {
+        String cause = e instanceof WebClientResponseException responseException
+                ? String.valueOf(responseException.getStatusCode().value())
+                : e.getClass().getSimpleName();
+        Counter.builder("vivuchat.inference.errors")
+                .description("Failed Ollama generations by cause (HTTP status or exception)")
+                .tags(meters.tags)
+                .tag("cause", cause)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private Meters metersFor(String model, String node) {
+        Tags tags = Tags.of("model", model != null ? model : "unknown", "node", node);
+        return meters.computeIfAbsent(tags, Meters::new);
+    }
+
+    // Touched only from the stream's own (serialized) signals
+    private static final class StreamTiming {
+        private long last;
+        private boolean firstSeen;
+    }
+
+    private final class Meters {
+        private final Tags tags;
+        private final Timer timeToFirstToken;
+        private final Timer interToken;
+        private final DistributionSummary tokensPerSecond;
+        private final Timer totalDuration;
+        private final Timer loadDuration;
+        private final Counter coldLoads;
+        private final AtomicInteger activeStreams = new AtomicInteger();
+
+        private Meters(Tags tags) {
+            this.tags = tags;
+            this.timeToFirstToken = Timer.builder("vivuchat.inference.ttft")
+                    .description("Time from sending a streamed request to its first content token")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(10))
+                    .maximumExpectedValue(Duration.ofMinutes(2))
+                    .register(meterRegistry);
+            this.interToken = Timer.builder("vivuchat.inference.intertoken")
+                    .description("Gap between consecutive streamed tokens")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(5))
+                    .register(meterRegistry);
+            this.tokensPerSecond = DistributionSummary.builder("vivuchat.inference.tokens.per.second")
+                    .description("Decode rate reported by Ollama (eval_count / eval_duration)")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(1.0)
+                    .maximumExpectedValue(2000.0)
+                    .register(meterRegistry);
+            this.totalDuration = Timer.builder("vivuchat.inference.duration")
+                    .description("Total generation time reported by Ollama")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(10))
+                    .maximumExpectedValue(Duration.ofMinutes(10))
+                    .register(meterRegistry);
+            this.loadDuration = Timer.builder("vivuchat.inference.load.duration")
+                    .description("Model load time reported by Ollama, near zero when the model was already loaded")
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.coldLoads = Counter.builder("vivuchat.inference.cold.loads")
+                    .description("Generations whose load_duration reached the cold-load threshold")
+                    .tags(tags)
+                    .register(meterRegistry);
+            Gauge.builder("vivuchat.inference.streams.active", activeStreams, AtomicInteger::get)
+                    .description("Streams currently open to Ollama")
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+    }
+}
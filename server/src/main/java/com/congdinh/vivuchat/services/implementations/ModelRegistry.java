@@ -0,0 +1,144 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelDetails;
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelResponse;
+import com.congdinh.vivuchat.services.interfaces.IModelRegistry;
+import com.congdinh.vivuchat.services.interfaces.IReactiveOllamaModelService;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Caches the model catalogue (tags, running models and per-model details).
+ * Entries are refreshed ahead of expiry: a read after the refresh interval
+ * still gets the cached value while a reload runs in the background, and a
+ * failed reload keeps the old one. The tag list is also refreshed on a
+ * schedule, so isInstalled can answer from memory without calling Ollama
+ * once the first load has succeeded.
+ */
+@Slf4j
+@Service
+public class ModelRegistry implements IModelRegistry {
+
+    private static final String CATALOGUE = "tags";
+
+    private final IReactiveOllamaModelService modelService;
+    private final AsyncLoadingCache<String, List<OllamaModelResponse>> localModels;
+    private final AsyncLoadingCache<String, List<OllamaModelResponse>> runningModels;
+    private final AsyncLoadingCache<String, OllamaModelDetails> details;
+    private volatile Set<String> installed = Set.of();
+    private volatile boolean loaded;
+
+    public ModelRegistry(IReactiveOllamaModelService modelService, OllamaConfig ollamaConfig) {
+        this.modelService = modelService;
+        Duration refresh = Duration.ofSeconds(ollamaConfig.getModelCatalogRefreshSeconds());
+        Duration expire = Duration.ofMinutes(ollamaConfig.getModelCatalogExpireMinutes());
+        
+        // An empty tag list is a valid catalogue, only a failed call keeps the old one
+        this.localModels = Caffeine.newBuilder()
+                .refreshAfterWrite(refresh)
+                .expireAfterWrite(expire)
+                .buildAsync((key, executor) -> modelService.listLocalModels()
+                        .collectList()
+                        .doOnNext(this::updateInstalled)
+                        .toFuture());
+        this.runningModels = Caffeine.newBuilder()
+                .refreshAfterWrite(Duration.ofSeconds(ollamaConfig.getRunningModelsRefreshSeconds()))
+                .expireAfterWrite(expire)
+                .buildAsync((key, executor) -> modelService.listRunningModels()
+                        .collectList()
+                        .toFuture());
+        // Unknown models resolve to null, which Caffeine does not cache
+        this.details = Caffeine.newBuilder()
+                .refreshAfterWrite(refresh)
+                .expireAfterWrite(expire)
+                .maximumSize(256)
+                .buildAsync((model, executor) -> modelService.getModelDetails(model).toFuture());
+    }
+
+    @Override
+    public Flux<OllamaModelResponse> listLocalModels() {
+        return Mono.fromFuture(() -> localModels.get(CATALOGUE), true)
+                .onErrorResume(e -> {
+                    log.warn("Model catalogue unavailable: {}", e.toString());
+                    return Mono.just(List.of());
+                })
+                .flatMapIterable(models -> models);
+    }
+
+    @Override
+    public Flux<OllamaModelResponse> listRunningModels() {
+        return Mono.fromFuture(() -> runningModels.get(CATALOGUE), true)
+                .flatMapIterable(models -> models);
+    }
+
+    @Override
+    public Mono<OllamaModelDetails> getModelDetails(String model) {
+        return Mono.fromFuture(() -> details.get(model), true);
+    }
+
+    @Override
+    public boolean isInstalled(String model) {
+        return Boolean.TRUE.equals(checkInstalled(model).block());
+    }
+
+    @Override
+    public Mono<Boolean> checkInstalled(String model) {
+        if (model == null) {
+            return Mono.just(false);
+        }
+        if (loaded) {
+            return Mono.just(installed.contains(OllamaNode.normalizeModelName(model)));
+        }
+        // No catalogue yet (startup, or Ollama unreachable at boot), ask Ollama about this model
+        return getModelDetails(model).hasElement();
+    }
+
+    @Override
+    public void invalidate(String model) {
+        if (model != null) {
+            details.synchronous().invalidate(model);
+            details.synchronous().invalidate(OllamaNode.normalizeModelName(model));
+        }
+        runningModels.synchronous().invalidateAll();
+        // Reload rather than drop, so isInstalled keeps answering until the new list is in
+        refreshCatalogue();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        refreshCatalogue();
+    }
+
+    @Scheduled(fixedDelayString = "${app.ollama.modelCatalogRefreshSeconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void refreshCatalogue() {
+        CompletableFuture<List<OllamaModelResponse>> reload = localModels.synchronous().refresh(CATALOGUE);
+        reload.whenComplete((models, error) -> {
+            if (error != null) {
+                log.warn("Failed to refresh the model catalogue: {}", error.toString());
+            }
+        });
+    }
+
+    private void updateInstalled(List<OllamaModelResponse> models) {
+        installed = models.stream()
+                .map(OllamaModelResponse::getName)
+                .map(OllamaNode::normalizeModelName)
+                .collect(Collectors.toUnmodifiableSet());
+        loaded = true;
+    }
+}
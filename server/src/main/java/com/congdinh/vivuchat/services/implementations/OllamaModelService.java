@@ -1,191 +1,60 @@
 package com.congdinh.vivuchat.services.implementations;
 
-import com.congdinh.vivuchat.dtos.ollama.OllamaApiResponse;
 import com.congdinh.vivuchat.dtos.ollama.OllamaModelDetails;
 import com.congdinh.vivuchat.dtos.ollama.OllamaModelResponse;
 import com.congdinh.vivuchat.services.interfaces.IOllamaModelService;
+import com.congdinh.vivuchat.services.interfaces.IReactiveOllamaModelService;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
 
-import java.time.Duration;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
-@Slf4j
+/**
+ * Blocking facade over {@link IReactiveOllamaModelService} for callers that
+ * already run on a worker thread, such as transactional service code. The
+ * reactive service applies the timeouts and error fallbacks.
+ */
 @Service
 @RequiredArgsConstructor
 public class OllamaModelService implements IOllamaModelService {
 
-    private final WebClient ollamaWebClient;
-    private static final int DEFAULT_TIMEOUT_SECONDS = 30;
+    private final IReactiveOllamaModelService reactiveModelService;
 
     @Override
     public List<OllamaModelResponse> listLocalModels() {
-        try {
-            OllamaApiResponse response = ollamaWebClient.get()
-            .uri("/tags")
-            .accept(MediaType.APPLICATION_JSON)
-            .retrieve()
-            .bodyToMono(OllamaApiResponse.class)
-            .block(Duration.ofSeconds(DEFAULT_TIMEOUT_SECONDS));
-            
-            if (response != null && response.getModels() != null) {
-                return response.getModels();
-            }
-        } catch (Exception e) {
-            log.error("Failed to list local models: {}", e != null ? e.toString() : "Unknown error");
-        }
-        return Collections.emptyList();
+        return reactiveModelService.listLocalModels()
+                .collectList()
+                .onErrorReturn(List.of())
+                .block();
     }
 
     @Override
     public List<OllamaModelResponse> listRunningModels() {
-        try {
-            OllamaApiResponse response = ollamaWebClient.get()
-                    .uri("/ps")
-                    .accept(MediaType.APPLICATION_JSON)
-                    .retrieve()
-                    .bodyToMono(OllamaApiResponse.class)
-                    .block(Duration.ofSeconds(DEFAULT_TIMEOUT_SECONDS));
-
-            if (response != null && response.getModels() != null) {
-                return response.getModels();
-            }
-        } catch (Exception e) {
-            log.error("Failed to list running models: {}", e != null ? e.toString() : "Unknown error");
-        }
-        return Collections.emptyList();
+        return reactiveModelService.listRunningModels().collectList().block();
     }
 
     @Override
     public OllamaModelDetails getModelDetails(String model) {
-        try {
-            OllamaApiResponse response = ollamaWebClient.post()
-                    .uri("/show")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(Map.of("model", model))
-                    .retrieve()
-                    .bodyToMono(OllamaApiResponse.class)
-                    .block(Duration.ofSeconds(DEFAULT_TIMEOUT_SECONDS));
-
-            return response != null ? response.getDetails() : null;
-        } catch (WebClientResponseException.NotFound e) {
-            log.warn("Model {} not found", model);
-            return null;
-        } catch (Exception e) {
-            log.error("Failed to get model details for {}: {}", model, e != null ? e.toString() : "Unknown error");
-            return null;
-        }
+        return reactiveModelService.getModelDetails(model).block();
     }
 
     @Override
     public boolean copyModel(String source, String destination) {
-        try {
-            return ollamaWebClient.post()
-                    .uri("/copy")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(Map.of(
-                            "source", source,
-                            "destination", destination))
-                    .retrieve()
-                    .toBodilessEntity()
-                    .map(response -> response.getStatusCode().is2xxSuccessful())
-                    .block(Duration.ofSeconds(DEFAULT_TIMEOUT_SECONDS));
-        } catch (Exception e) {
-            log.error("Failed to copy model from {} to {}: {}", 
-                source, destination, e != null ? e.toString() : "Unknown error");
-            return false;
-        }
+        return Boolean.TRUE.equals(reactiveModelService.copyModel(source, destination).block());
     }
 
     @Override
     public boolean deleteModel(String model) {
-        try {
-            return ollamaWebClient.method(org.springframework.http.HttpMethod.DELETE)
-                    .uri("/delete")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(Map.of("model", model))
-                    .retrieve()
-                    .toBodilessEntity()
-                    .map(response -> response.getStatusCode().is2xxSuccessful())
-                    .block(Duration.ofSeconds(DEFAULT_TIMEOUT_SECONDS));
-        } catch (WebClientResponseException.NotFound e) {
-            log.warn("Model {} not found for deletion", model);
-            return false;
-        } catch (Exception e) {
-            log.error("Failed to delete model {}: {}", model, e != null ? e.toString() : "Unknown error");
-            return false;
-        }
+        return Boolean.TRUE.equals(reactiveModelService.deleteModel(model).block());
     }
 
     @Override
     public String pullModel(String model, boolean insecure, boolean stream) {
-        Map<String, Object> requestBody;
-        if (insecure) {
-            requestBody = Map.of(
-                    "model", model,
-                    "insecure", true,
-                    "stream", stream);
-        } else {
-            requestBody = Map.of(
-                    "model", model,
-                    "stream", stream);
-        }
-
-        try {
-            OllamaApiResponse response = ollamaWebClient.post()
-                    .uri("/pull")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(OllamaApiResponse.class)
-                    .block(Duration.ofSeconds(120)); // Longer timeout for model pulling
-
-            if (response != null && response.getStatus() != null) {
-                return response.getStatus();
-            }
-            return "success";
-        } catch (Exception e) {
-            log.error("Failed to pull model {}: {}", model, e != null ? e.toString() : "Unknown error");
-            return "error: " + (e != null ? e.toString() : "Unknown error");
-        }
+        return reactiveModelService.pullModel(model, insecure, stream).block();
     }
 
     @Override
     public String pushModel(String model, boolean insecure, boolean stream) {
-        Map<String, Object> requestBody;
-        if (insecure) {
-            requestBody = Map.of(
-                    "model", model,
-                    "insecure", true,
-                    "stream", stream);
-        } else {
-            requestBody = Map.of(
-                    "model", model,
-                    "stream", stream);
-        }
-
-        try {
-            OllamaApiResponse response = ollamaWebClient.post()
-                    .uri("/push")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(OllamaApiResponse.class)
-                    .block(Duration.ofSeconds(120)); // Longer timeout for model pushing
-
-            if (response != null && response.getStatus() != null) {
-                return response.getStatus();
-            }
-            return "success";
-        } catch (Exception e) {
-            log.error("Failed to push model {}: {}", model, e != null ? e.toString() : "Unknown error");
-            return "error: " + (e != null ? e.toString() : "Unknown error");
-        }
+        return reactiveModelService.pushModel(model, insecure, stream).block();
     }
 }
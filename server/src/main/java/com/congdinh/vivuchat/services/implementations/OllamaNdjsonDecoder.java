@@ -0,0 +1,163 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes Ollama's NDJSON chat stream straight from the network buffers with
+ * Jackson's non-blocking parser. Only the fields we use are materialized:
+ * message content, the done flag and the final stats; everything else
+ * (created_at, model, context arrays...) is skipped without building strings.
+ */
+@Component
+public class OllamaNdjsonDecoder {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public Flux<OllamaCompletionResponse> decode(Flux<DataBuffer> buffers) {
+        return Flux.defer(() -> {
+            ChunkParser parser = new ChunkParser(newParser());
+            return buffers
+                    .concatMapIterable(parser::feed)
+                    .doFinally(signal -> parser.close())
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    private JsonParser newParser() {
+        try {
+            return jsonFactory.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class ChunkParser {
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+        
+        // Nesting of objects and arrays; chunks are the objects at depth 1
+        private int depth;
+        private String rootField;
+        private String field;
+        private OllamaCompletionResponse.OllamaCompletionResponseBuilder current;
+        private String content;
+
+        private ChunkParser(JsonParser parser) {
+            this.parser = parser;
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        private List<OllamaCompletionResponse> feed(DataBuffer buffer) {
+            List<OllamaCompletionResponse> chunks = null;
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    feeder.feedInput(iterator.next());
+                    chunks = drain(chunks);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Malformed Ollama stream", e);
+            } finally {
+                // Every token of the buffer has been consumed, so it can go back to the pool
+                DataBufferUtils.release(buffer);
+            }
+            return chunks != null ? chunks : List.of();
+        }
+
+        private List<OllamaCompletionResponse> drain(List<OllamaCompletionResponse> chunks) throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case START_OBJECT, START_ARRAY -> {
+                        depth++;
+                        if (depth == 1) {
+                            current = OllamaCompletionResponse.builder();
+                            content = null;
+                            rootField = null;
+                        }
+                    }
+                    case END_OBJECT, END_ARRAY -> {
+                        depth--;
+                        if (depth == 0 && current != null) {
+                            if (chunks == null) {
+                                chunks = new ArrayList<>(2);
+                            }
+                            chunks.add(current
+                                    .message(content != null ? new OllamaCompletionResponse.OllamaMessage("assistant", content) : null)
+                                    .build());
+                            current = null;
+                        }
+                    }
+                    case FIELD_NAME -> {
+                        field = parser.currentName();
+                        if (depth == 1) {
+                            rootField = field;
+                        }
+                    }
+                    case VALUE_STRING -> readString();
+                    case VALUE_NUMBER_INT -> readNumber();
+                    case VALUE_TRUE, VALUE_FALSE -> {
+                        if (depth == 1 && "done".equals(field)) {
+                            current.done(token == JsonToken.VALUE_TRUE);
+                        }
+                    }
+                    default -> {
+                        // Other values are not needed
+                    }
+                }
+            }
+            return chunks;
+        }
+
+        private void readString() throws IOException {
+            if (depth == 2 && "message".equals(rootField) && "content".equals(field)) {
+                content = parser.getText();
+            } else if (depth == 1) {
+                switch (field) {
+                    case "done_reason" -> current.done_reason(parser.getText());
+                    case "error" -> throw new IllegalStateException("Ollama API error: " + parser.getText());
+                    default -> {
+                        // model, created_at and other strings are skipped
+                    }
+                }
+            }
+        }
+
+        private void readNumber() throws IOException {
+            if (depth != 1) {
+                return;
+            }
+            switch (field) {
+                case "total_duration" -> current.total_duration(parser.getLongValue());
+                case "load_duration" -> current.load_duration(parser.getLongValue());
+                case "prompt_eval_count" -> current.prompt_eval_count(parser.getIntValue());
+                case "prompt_eval_duration" -> current.prompt_eval_duration(parser.getLongValue());
+                case "eval_count" -> current.eval_count(parser.getIntValue());
+                case "eval_duration" -> current.eval_duration(parser.getLongValue());
+                default -> {
+                    // Unknown counters are ignored
+                }
+            }
+        }
+
+        private void close() {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+}
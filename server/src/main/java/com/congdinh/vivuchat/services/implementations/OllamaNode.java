@@ -0,0 +1,80 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import lombok.Getter;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * One Ollama backend with its client and the live state the balancer needs:
+ * in-flight requests, consecutive failures and the models currently loaded.
+ */
+@Getter
+public class OllamaNode {
+
+    private final String baseUrl;
+    private final WebClient webClient;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long ejectedUntil;
+    private volatile Set<String> loadedModels = Set.of();
+
+    public OllamaNode(String baseUrl, WebClient webClient) {
+        this.baseUrl = baseUrl;
+        this.webClient = webClient;
+    }
+
+    public boolean isAvailable(long now) {
+        return now >= ejectedUntil;
+    }
+
+    public boolean hasModelLoaded(String model) {
+        return model != null && loadedModels.contains(normalizeModelName(model));
+    }
+
+    public void updateLoadedModels(Set<String> models) {
+        this.loadedModels = models.stream()
+                .map(OllamaNode::normalizeModelName)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    // Ollama loads the model on first use, so remember it without waiting for the next /ps poll
+    public void markModelLoaded(String model) {
+        if (model != null && !hasModelLoaded(model)) {
+            Set<String> models = new HashSet<>(loadedModels);
+            models.add(normalizeModelName(model));
+            this.loadedModels = Set.copyOf(models);
+        }
+    }
+
+    public void markSuccess() {
+        consecutiveFailures.set(0);
+        ejectedUntil = 0;
+    }
+
+    /**
+     * Records a failure and ejects the node once the threshold is reached.
+     *
+     * @return true if this failure ejected the node
+     */
+    public boolean markFailure(int threshold, long ejectionMillis) {
+        if (consecutiveFailures.incrementAndGet() >= threshold && isAvailable(System.currentTimeMillis())) {
+            ejectedUntil = System.currentTimeMillis() + ejectionMillis;
+            return true;
+        }
+        return false;
+    }
+
+    // "llama3" and "llama3:latest" refer to the same model
+    public static String normalizeModelName(String model) {
+        return model.contains(":") ? model : model + ":latest";
+    }
+
+    @Override
+    public String toString() {
+        return baseUrl;
+    }
+}
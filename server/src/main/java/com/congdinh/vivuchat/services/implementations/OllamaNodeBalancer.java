@@ -0,0 +1,192 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.OllamaApiResponse;
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelResponse;
+import com.congdinh.vivuchat.services.interfaces.IOllamaNodeBalancer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads Ollama calls over the configured nodes. Picks the node that already
+ * has the model loaded and the fewest outstanding requests, and passively
+ * ejects nodes that keep failing with connection errors or 5xx responses.
+ */
+@Slf4j
+@Service
+public class OllamaNodeBalancer implements IOllamaNodeBalancer {
+
+    private final OllamaConfig ollamaConfig;
+    private final List<OllamaNode> nodes;
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    public OllamaNodeBalancer(OllamaConfig ollamaConfig, WebClient.Builder ollamaWebClientBuilder) {
+        this.ollamaConfig = ollamaConfig;
+        
+        List<String> urls = ollamaConfig.getNodes().isEmpty()
+                ? List.of(ollamaConfig.getApiUrl())
+                : ollamaConfig.getNodes();
+        this.nodes = urls.stream()
+                .map(url -> new OllamaNode(url, ollamaWebClientBuilder.clone().baseUrl(url).build()))
+                .toList();
+        log.info("Ollama node pool initialized with {} node(s): {}", nodes.size(), urls);
+    }
+
+    @Override
+    public List<OllamaNode> getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public OllamaNode select(String model) {
+        long now = System.currentTimeMillis();
+        List<OllamaNode> available = nodes.stream()
+                .filter(node -> node.isAvailable(now))
+                .toList();
+        
+        // Fail open: with every node ejected, use the one that comes back first
+        if (available.isEmpty()) {
+            OllamaNode fallback = nodes.stream()
+                    .min(Comparator.comparingLong(OllamaNode::getEjectedUntil))
+                    .orElseThrow();
+            log.warn("All Ollama nodes are ejected, falling back to {}", fallback);
+            return fallback;
+        }
+        
+        // Rotate the starting point so ties do not always land on the first node
+        int offset = Math.floorMod(rotation.getAndIncrement(), available.size());
+        OllamaNode best = null;
+        for (int i = 0; i < available.size(); i++) {
+            OllamaNode candidate = available.get((offset + i) % available.size());
+            if (best == null || isBetter(candidate, best, model)) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public <T> Mono<T> execute(String model, Function<WebClient, Mono<T>> call) {
+        return Mono.defer(() -> {
+            OllamaNode node = select(model);
+            return track(node, model, call.apply(node.getWebClient()).contextWrite(onNode(node)))
+                    .doOnSuccess(result -> onSuccess(node, model));
+        });
+    }
+
+    @Override
+    public <T> Flux<T> stream(String model, Function<WebClient, Flux<T>> call) {
+        return Flux.defer(() -> {
+            OllamaNode node = select(model);
+            node.getInFlight().incrementAndGet();
+            log.debug("Streaming {} on node {} ({} in flight)", model, node, node.getInFlight().get());
+            return call.apply(node.getWebClient())
+                    .contextWrite(onNode(node))
+                    .doOnComplete(() -> onSuccess(node, model))
+                    .doOnError(e -> onError(node, e))
+                    .doFinally(signal -> node.getInFlight().decrementAndGet());
+        });
+    }
+
+    @Override
+    public <T> Mono<T> executeOn(OllamaNode node, Function<WebClient, Mono<T>> call) {
+        return Mono.defer(() -> track(node, null, call.apply(node.getWebClient()).contextWrite(onNode(node)))
+                .doOnSuccess(result -> onSuccess(node, null)));
+    }
+
+    @Override
+    public <T> Flux<T> streamOn(OllamaNode node, Function<WebClient, Flux<T>> call) {
+        return Flux.defer(() -> {
+            node.getInFlight().incrementAndGet();
+            return call.apply(node.getWebClient())
+                    .contextWrite(onNode(node))
+                    .doOnComplete(() -> onSuccess(node, null))
+                    .doOnError(e -> onError(node, e))
+                    .doFinally(signal -> node.getInFlight().decrementAndGet());
+        });
+    }
+
+    // Keep the loaded-model view of every node fresh, Ollama unloads idle models on its own
+    @Scheduled(fixedDelayString = "${app.ollama.runningModelsRefreshSeconds:15}", timeUnit = TimeUnit.SECONDS)
+    public void refreshRunningModels() {
+        for (OllamaNode node : nodes) {
+            node.getWebClient().get()
+                    .uri("/ps")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .retrieve()
+                    .bodyToMono(OllamaApiResponse.class)
+                    .timeout(Duration.ofSeconds(5))
+                    .subscribe(
+                            response -> node.updateLoadedModels(response.getModels() == null ? Set.of() :
+                                    response.getModels().stream()
+                                            .map(OllamaModelResponse::getName)
+                                            .filter(Objects::nonNull)
+                                            .collect(Collectors.toSet())),
+                            e -> log.debug("Failed to refresh running models on {}: {}", node, e.toString()));
+        }
+    }
+
+    private <T> Mono<T> track(OllamaNode node, String model, Mono<T> call) {
+        node.getInFlight().incrementAndGet();
+        log.debug("Calling node {} for model {} ({} in flight)", node, model, node.getInFlight().get());
+        return call
+                .doOnError(e -> onError(node, e))
+                .doFinally(signal -> node.getInFlight().decrementAndGet());
+    }
+
+    private static Context onNode(OllamaNode node) {
+        return Context.of(NODE_KEY, node.toString());
+    }
+
+    private boolean isBetter(OllamaNode candidate, OllamaNode best, String model) {
+        boolean candidateLoaded = candidate.hasModelLoaded(model);
+        boolean bestLoaded = best.hasModelLoaded(model);
+        if (candidateLoaded != bestLoaded) {
+            return candidateLoaded;
+        }
+        return candidate.getInFlight().get() < best.getInFlight().get();
+    }
+
+    private void onSuccess(OllamaNode node, String model) {
+        node.markSuccess();
+        node.markModelLoaded(model);
+    }
+
+    private void onError(OllamaNode node, Throwable e) {
+        if (!isNodeFailure(e)) {
+            return;
+        }
+        long ejectionMillis = TimeUnit.SECONDS.toMillis(ollamaConfig.getNodeEjectionSeconds());
+        if (node.markFailure(ollamaConfig.getNodeFailureThreshold(), ejectionMillis)) {
+            log.warn("Ejected Ollama node {} for {}s after {} consecutive failures: {}",
+                    node, ollamaConfig.getNodeEjectionSeconds(), node.getConsecutiveFailures().get(), e.toString());
+        }
+    }
+
+    // Client errors such as an unknown model say nothing about the node's health
+    private boolean isNodeFailure(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
+}
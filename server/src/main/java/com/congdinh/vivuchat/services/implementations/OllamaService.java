@@ -3,24 +3,45 @@ package com.congdinh.vivuchat.services.implementations;
 import com.congdinh.vivuchat.config.OllamaConfig;
 import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionRequest;
 import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import com.congdinh.vivuchat.exceptions.QueueFullException;
+import com.congdinh.vivuchat.exceptions.RateLimitExceededException;
+import com.congdinh.vivuchat.exceptions.ResourceNotFoundException;
+import com.congdinh.vivuchat.jfr.OllamaExchangeTracer;
+import com.congdinh.vivuchat.services.interfaces.ICompletionCache;
+import com.congdinh.vivuchat.services.interfaces.ICompletionCoalescer;
+import com.congdinh.vivuchat.services.interfaces.IGenerationScheduler;
+import com.congdinh.vivuchat.services.interfaces.IModelRegistry;
+import com.congdinh.vivuchat.services.interfaces.IOllamaNodeBalancer;
 import com.congdinh.vivuchat.services.interfaces.IOllamaService;
+import com.congdinh.vivuchat.services.interfaces.IUsageLimiter;
+import com.congdinh.vivuchat.services.interfaces.IUsageLimiter.Admission;
+import com.congdinh.vivuchat.services.interfaces.IUsageMeter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import org.springframework.http.HttpStatusCode;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -28,97 +49,81 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class OllamaService implements IOllamaService {
 
-    private final WebClient ollamaWebClient;
+    private final IOllamaNodeBalancer nodeBalancer;
+    private final IGenerationScheduler generationScheduler;
+    private final ICompletionCoalescer completionCoalescer;
+    private final ICompletionCache completionCache;
     private final OllamaConfig ollamaConfig;
+    private final OllamaNdjsonDecoder ndjsonDecoder;
+    private final TokenBatcher tokenBatcher;
+    private final GenerationCancellationTracker cancellationTracker;
+    private final ResumableStreamRegistry resumableStreams;
+    private final IUsageLimiter usageLimiter;
+    private final IUsageMeter usageMeter;
+    private final InferenceMetrics inferenceMetrics;
+    private final IModelRegistry modelRegistry;
     
     @Override
-    public OllamaCompletionResponse generateCompletion(String model, List<Map<String, String>> messages, Map<String, Object> options) {
+    public Mono<OllamaCompletionResponse> generateCompletion(String model, List<Map<String, String>> messages, Map<String, Object> options) {
+        final String finalModel = resolveModel(model);
+        
+        // Limits, load shedding and unknown models are reported to the caller rather than answered with the fallback
+        return requestCompletion(finalModel, messages, options)
+                .onErrorResume(e -> !(e instanceof RateLimitExceededException || e instanceof QueueFullException
+                        || e instanceof ResourceNotFoundException), e -> {
+                    // Create fallback response
+                    OllamaCompletionResponse.OllamaMessage errorMessage = new OllamaCompletionResponse.OllamaMessage(
+                        "assistant", 
+                        "I'm sorry, I encountered an error while processing your request. Please try again later."
+                    );
+                    
+                    OllamaCompletionResponse fallback = OllamaCompletionResponse.builder()
+                            .model(finalModel)
+                            .message(errorMessage)
+                            .done(true)
+                            .build();
+                    
+                    return Mono.just(fallback);
+                });
+    }
+    
+    @Override
+    public Mono<OllamaCompletionResponse> requestCompletion(String model, List<Map<String, String>> messages, Map<String, Object> options) {
         log.info("Generating completion for model: {}", model);
         
-        // Use default model if not provided
-        final String finalModel = model == null || model.isEmpty() ? ollamaConfig.getDefaultModel() : model;
-        if (!finalModel.equals(model)) {
-            log.info("Using default model: {}", finalModel);
-        }
+        final String finalModel = resolveModel(model);
         
-        // Convert messages to the format expected by Ollama
-        List<OllamaCompletionRequest.OllamaMessage> ollamaMessages = messages.stream()
-                .map(msg -> OllamaCompletionRequest.OllamaMessage.builder()
-                        .role(msg.get("role"))
-                        .content(msg.get("content"))
-                        .build())
-                .collect(Collectors.toList());
+        // Build request, non-streaming response
+        OllamaCompletionRequest request = buildRequest(finalModel, messages, false, options);
         
-        // Prepare options with defaults if not provided
-        Map<String, Object> requestOptions = new HashMap<>();
-        if (options == null) {
-            requestOptions.put("temperature", ollamaConfig.getDefaultTemperature());
-            requestOptions.put("repeat_penalty", ollamaConfig.getDefaultRepeatPenalty());
-            requestOptions.put("numa", ollamaConfig.isDefaultNuma());
-        } else {
-            requestOptions = options;
-        }
-                
-        // Build request
-        OllamaCompletionRequest request = OllamaCompletionRequest.builder()
-                .model(finalModel)
-                .messages(ollamaMessages)
-                .stream(false) // Set to false for non-streaming response
-                .options(requestOptions)
-                .build();
-                
-        try {
-            // Log the request body for debugging
-            log.debug("Sending request to Ollama API: {}", request);
-            
-            // Make API call to Ollama with improved error handling and timeout
-            return ollamaWebClient.post()
-                    .uri("/chat")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(request)
-                    .retrieve()
-                    .onStatus(HttpStatusCode::isError, 
-                            response -> response.bodyToMono(String.class)
-                                    .flatMap(error -> {
-                                        log.error("Ollama API error: Status {}, Body {}", response.statusCode(), error);
-                                        return Mono.error(new RuntimeException("Ollama API error: " + error));
-                                    }))
-                    .bodyToMono(OllamaCompletionResponse.class)
-                    .timeout(Duration.ofSeconds(ollamaConfig.getTimeoutSeconds()))
-                    .doOnError(WebClientResponseException.class, e -> 
-                            log.error("Ollama API error: Status {}, Body {}", e.getStatusCode(), e.getResponseBodyAsString()))
-                    .doOnError(e -> log.error("Error calling Ollama API", e))
-                    .onErrorResume(e -> {
-                        // Create fallback response
-                        OllamaCompletionResponse.OllamaMessage errorMessage = new OllamaCompletionResponse.OllamaMessage(
-                            "assistant", 
-                            "I'm sorry, I encountered an error while processing your request. Please try again later."
-                        );
-                        
-                        OllamaCompletionResponse fallback = OllamaCompletionResponse.builder()
-                                .model(finalModel)
-                                .message(errorMessage)
-                                .done(true)
-                                .build();
-                        
-                        return Mono.just(fallback);
-                    })
-                    .block();
-        } catch (Exception e) {
-            log.error("Unexpected error calling Ollama API: ", e);
-            
-            // Create a fallback response in case of error
-            OllamaCompletionResponse.OllamaMessage errorMessage = new OllamaCompletionResponse.OllamaMessage(
-                "assistant", 
-                "I'm sorry, I encountered an error while processing your request. Please try again later."
-            );
-            
-            return OllamaCompletionResponse.builder()
-                    .model(finalModel)
-                    .message(errorMessage)
-                    .done(true)
-                    .build();
-        }
+        // Deterministic requests may already have a cached answer, looked up once the request is admitted
+        boolean cacheable = completionCache.isCacheable(request);
+        String cacheKey = cacheable ? completionCache.keyOf(request) : null;
+        Mono<OllamaCompletionResponse> cached = Mono.defer(() -> cacheable
+                        ? Mono.justOrEmpty(completionCache.get(cacheKey))
+                        : Mono.<OllamaCompletionResponse>empty())
+                .doOnNext(hit -> log.debug("Serving cached completion for model: {}", finalModel));
+        
+        // Log the request body for debugging
+        log.debug("Sending request to Ollama API: {}", request);
+        
+        // Nothing blocks here, the caller subscribes from a servlet async request
+        return sharedCall("completion", request, messages, cached, client -> client.post()
+                .uri("/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(OllamaCompletionResponse.class)
+                .timeout(Duration.ofSeconds(ollamaConfig.getTimeoutSeconds()))
+                .transform(response -> inferenceMetrics.call(finalModel, OllamaExchangeTracer.call(finalModel, response)))
+                .doOnNext(response -> {
+                    if (cacheable) {
+                        completionCache.put(cacheKey, response);
+                    }
+                }))
+                .doOnError(WebClientResponseException.class, e -> 
+                        log.error("Ollama API error: Status {}, Body {}", e.getStatusCode(), e.getResponseBodyAsString()))
+                .doOnError(e -> log.error("Error calling Ollama API", e));
     }
     
     @Override
@@ -130,58 +135,15 @@ public class OllamaService implements IOllamaService {
     ) {
         log.info("Streaming completion for model: {}", model);
         
-        // Use default model if not provided
-        final String finalModel = model == null || model.isEmpty() ? ollamaConfig.getDefaultModel() : model;
-        if (finalModel != model) {
-            log.info("Using default model: {}", finalModel);
-        }
-        
-        // Convert messages to the format expected by Ollama
-        List<OllamaCompletionRequest.OllamaMessage> ollamaMessages = messages.stream()
-                .map(msg -> OllamaCompletionRequest.OllamaMessage.builder()
-                        .role(msg.get("role"))
-                        .content(msg.get("content"))
-                        .build())
-                .collect(Collectors.toList());
+        final String finalModel = resolveModel(model);
         
-        // Prepare options with defaults if not provided
-        Map<String, Object> requestOptions = new HashMap<>();
-        if (options == null) {
-            requestOptions.put("temperature", ollamaConfig.getDefaultTemperature());
-            requestOptions.put("repeat_penalty", ollamaConfig.getDefaultRepeatPenalty());
-            requestOptions.put("numa", ollamaConfig.isDefaultNuma());
-        } else {
-            requestOptions = options;
-        }
-                
         // Build request with streaming enabled
-        OllamaCompletionRequest request = OllamaCompletionRequest.builder()
-                .model(finalModel)
-                .messages(ollamaMessages)
-                .stream(streaming)
-                .options(requestOptions)
-                .build();
+        OllamaCompletionRequest request = buildRequest(finalModel, messages, streaming, options);
         
         log.debug("Sending streaming request to Ollama API: {}", request);
         
-        // Generate a unique event ID for this streaming session
-        final String eventId = UUID.randomUUID().toString();
-        
-        return ollamaWebClient.post()
-                .uri("/chat")
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(request)
-                .retrieve()
-                .bodyToFlux(String.class) // Change to String to handle raw JSON
-                .doOnNext(chunk -> log.debug("Raw response chunk: {}", chunk))
-                .map(rawJson -> {
-                    // Pass the raw JSON directly to the client
-                    return ServerSentEvent.<Object>builder()
-                            .id(eventId)
-                            .event("message")
-                            .data(rawJson)
-                            .build();
-                })
+        // Event ids are assigned by the registry, numbered so a dropped client can resume
+        Flux<ServerSentEvent<Object>> events = OllamaStreamEvents.toEvents(chunks(request, messages), finalModel)
                 .onErrorResume(e -> {
                     log.error("Error in streaming response: {}", e.getMessage());
                     
@@ -199,11 +161,225 @@ public class OllamaService implements IOllamaService {
                     errorMap.put("message", errorMessage);
                     
                     return Flux.just(ServerSentEvent.<Object>builder()
-                            .id(eventId)
                             .event("error")
                             .data(errorMap)
                             .build());
                 })
-                .doOnComplete(() -> log.debug("Streaming completed for event ID: {}", eventId));
+                .doOnComplete(() -> log.debug("Streaming completed for model: {}", finalModel));
+        
+        return OllamaStreamEvents.withHeartbeat(resumableStreams.start(events, currentRequester()),
+                Duration.ofSeconds(ollamaConfig.getSseHeartbeatSeconds()));
+    }
+    
+    @Override
+    public Flux<ServerSentEvent<Object>> resumeCompletion(String lastEventId) {
+        return OllamaStreamEvents.withHeartbeat(resumableStreams.resume(lastEventId, currentRequester()),
+                Duration.ofSeconds(ollamaConfig.getSseHeartbeatSeconds()));
+    }
+    
+    @Override
+    public Flux<OllamaCompletionResponse> streamChat(
+            String model,
+            List<Map<String, String>> messages,
+            Map<String, Object> options
+    ) {
+        final String finalModel = resolveModel(model);
+        log.info("Streaming chat chunks for model: {}", finalModel);
+        
+        OllamaCompletionRequest request = buildRequest(finalModel, messages, true, options);
+        log.debug("Sending streaming request to Ollama API: {}", request);
+        
+        return chunks(request, messages)
+                .doOnError(e -> log.error("Error in streaming chat for model {}: {}", finalModel, e.getMessage()))
+                .doOnComplete(() -> log.debug("Streaming chat completed for model: {}", finalModel));
+    }
+    
+    // Decoded chunks for a chat request, batched per stream before they become SSE frames
+    private Flux<OllamaCompletionResponse> chunks(OllamaCompletionRequest request, List<Map<String, String>> messages) {
+        return tokenBatcher.batch(sourceChunks(request, messages));
+    }
+    
+    // Replayed from the cache when possible, otherwise a shared upstream call
+    private Flux<OllamaCompletionResponse> sourceChunks(OllamaCompletionRequest request, List<Map<String, String>> messages) {
+        boolean cacheable = completionCache.isCacheable(request);
+        String cacheKey = cacheable ? completionCache.keyOf(request) : null;
+        Flux<OllamaCompletionResponse> cached = Flux.defer(() -> {
+            Optional<OllamaCompletionResponse> hit = cacheable ? completionCache.get(cacheKey) : Optional.empty();
+            if (hit.isEmpty()) {
+                return Flux.empty();
+            }
+            log.debug("Replaying cached completion for model: {}", request.getModel());
+            return Boolean.TRUE.equals(request.getStream())
+                    ? completionCache.replay(hit.get())
+                    : Flux.just(hit.get());
+        });
+        
+        // Ollama answers with NDJSON, parsed incrementally from the network buffers
+        return sharedStream("chunks", request, messages, cached, client -> {
+            Flux<DataBuffer> body = client.post()
+                    .uri("/chat")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(request)
+                    .retrieve()
+                    .bodyToFlux(DataBuffer.class);
+            Flux<OllamaCompletionResponse> upstream = cancellationTracker.track(request, inferenceMetrics.stream(
+                    request.getModel(), OllamaExchangeTracer.stream(request.getModel(), body, ndjsonDecoder::decode)));
+            return cacheable ? completionCache.record(cacheKey, upstream) : upstream;
+        });
+    }
+    
+    // Identical in-flight requests share one upstream call, which goes through
+    // admission control (fair per requester) and then the node balancer. The model
+    // and usage limits are checked first, also for answers served from the cache,
+    // and tokens are charged to whoever started the call.
+    private <T> Flux<T> sharedStream(
+            String kind,
+            OllamaCompletionRequest request,
+            List<Map<String, String>> messages,
+            Flux<T> cached,
+            Function<WebClient, Flux<T>> call
+    ) {
+        String model = request.getModel();
+        String requester = currentRequester();
+        Collection<String> roles = currentRoles();
+        int cost = estimateCost(messages);
+        String key = completionCoalescer.keyOf(kind, request);
+        return Flux.deferContextual(ctx -> {
+            String effectiveRequester = ctx.getOrDefault(IGenerationScheduler.REQUESTER_KEY, requester);
+            Admission admission = ctx.getOrDefault(IUsageLimiter.ADMISSION_KEY, Admission.REQUEST);
+            return requireInstalled(model)
+                    .then(admit(admission, effectiveRequester, effectiveRequester.equals(requester) ? roles : null))
+                    .thenMany(cached.switchIfEmpty(completionCoalescer.coalesce(key, () -> generationScheduler.schedule(
+                            model, effectiveRequester, cost, () -> nodeBalancer.stream(model, call))
+                            .doOnNext(item -> recordUsage(admission, effectiveRequester, model, item)))));
+        });
+    }
+    
+    private <T> Mono<T> sharedCall(
+            String kind,
+            OllamaCompletionRequest request,
+            List<Map<String, String>> messages,
+            Mono<T> cached,
+            Function<WebClient, Mono<T>> call
+    ) {
+        String model = request.getModel();
+        String requester = currentRequester();
+        Collection<String> roles = currentRoles();
+        int cost = estimateCost(messages);
+        String key = completionCoalescer.keyOf(kind, request);
+        return Mono.deferContextual(ctx -> {
+            String effectiveRequester = ctx.getOrDefault(IGenerationScheduler.REQUESTER_KEY, requester);
+            Admission admission = ctx.getOrDefault(IUsageLimiter.ADMISSION_KEY, Admission.REQUEST);
+            return requireInstalled(model)
+                    .then(admit(admission, effectiveRequester, effectiveRequester.equals(requester) ? roles : null))
+                    .then(cached.switchIfEmpty(completionCoalescer.coalesceMono(key, () -> generationScheduler.scheduleMono(
+                            model, effectiveRequester, cost, () -> nodeBalancer.execute(model, call))
+                            .doOnNext(item -> recordUsage(admission, effectiveRequester, model, item)))));
+        });
+    }
+    
+    // Resolved on the request thread, anonymous callers are told apart by address
+    private String currentRequester() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return authentication.getName();
+        }
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            return "ip:" + attributes.getRequest().getRemoteAddr();
+        }
+        return "anonymous";
+    }
+    
+    // Roles of the authenticated caller, anonymous callers have none
+    private Collection<String> currentRoles() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return authentication.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .toList();
+        }
+        return List.of();
+    }
+    
+    // Unknown models never get a queue, meters or a coalescing key
+    private Mono<Void> requireInstalled(String model) {
+        return modelRegistry.checkInstalled(model)
+                .flatMap(installed -> installed
+                        ? Mono.<Void>empty()
+                        : Mono.error(new ResourceNotFoundException("Model not found: " + model)));
+    }
+    
+    // Internal work (titles) is not limited, batch lines were admitted with their batch
+    private Mono<Void> admit(Admission admission, String requester, Collection<String> roles) {
+        return switch (admission) {
+            case REQUEST -> usageLimiter.admit(requester, roles);
+            case ADMITTED -> usageLimiter.checkQuota(requester, roles);
+            case SYSTEM -> Mono.empty();
+        };
+    }
+    
+    // The final chunk (or whole non-streaming response) carries the token counts and timings.
+    // Internal work is metered but not charged to the user's quota.
+    private void recordUsage(Admission admission, String requester, String model, Object item) {
+        if (item instanceof OllamaCompletionResponse response && response.isDone()) {
+            if (admission != Admission.SYSTEM) {
+                usageLimiter.recordTokens(requester, response.getEval_count());
+            }
+            usageMeter.record(requester, model, response);
+        }
+    }
+    
+    // One cost unit per 4 KB of prompt, capped so a huge prompt waits a bounded number of rounds
+    private int estimateCost(List<Map<String, String>> messages) {
+        long chars = messages.stream()
+                .map(msg -> msg.get("content"))
+                .filter(Objects::nonNull)
+                .mapToLong(String::length)
+                .sum();
+        return (int) Math.min(16, 1 + chars / 4096);
+    }
+    
+    // Use default model if not provided
+    private String resolveModel(String model) {
+        if (model == null || model.isEmpty()) {
+            log.info("Using default model: {}", ollamaConfig.getDefaultModel());
+            return ollamaConfig.getDefaultModel();
+        }
+        return model;
+    }
+    
+    private OllamaCompletionRequest buildRequest(
+            String model,
+            List<Map<String, String>> messages,
+            boolean streaming,
+            Map<String, Object> options
+    ) {
+        // Convert messages to the format expected by Ollama
+        List<OllamaCompletionRequest.OllamaMessage> ollamaMessages = messages.stream()
+                .map(msg -> OllamaCompletionRequest.OllamaMessage.builder()
+                        .role(msg.get("role"))
+                        .content(msg.get("content"))
+                        .build())
+                .collect(Collectors.toList());
+        
+        // Prepare options, defaults apply to whatever the caller did not set
+        Map<String, Object> requestOptions = new HashMap<>();
+        requestOptions.put("temperature", ollamaConfig.getDefaultTemperature());
+        requestOptions.put("repeat_penalty", ollamaConfig.getDefaultRepeatPenalty());
+        requestOptions.put("numa", ollamaConfig.isDefaultNuma());
+        if (options != null) {
+            requestOptions.putAll(options);
+        }
+        // One num_ctx per model whoever the caller is: Ollama reloads the runner when it changes
+        requestOptions.put("num_ctx", ollamaConfig.contextTokens(model));
+        
+        return OllamaCompletionRequest.builder()
+                .model(model)
+                .messages(ollamaMessages)
+                .stream(streaming)
+                .options(requestOptions)
+                .build();
     }
 }
@@ -0,0 +1,83 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import com.congdinh.vivuchat.dtos.ollama.OllamaStreamDelta;
+import com.congdinh.vivuchat.dtos.ollama.OllamaStreamStats;
+import org.springframework.http.codec.ServerSentEvent;
+
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps decoded chunks to the SSE frames sent to the browser: a compact
+ * "message" frame per answer delta, a "reasoning" frame per delta of the
+ * think block, and one "done" frame with the final stats.
+ */
+public final class OllamaStreamEvents {
+
+    public static final String MESSAGE = "message";
+    public static final String REASONING = "reasoning";
+    public static final String DONE = "done";
+    // Whole text generated so far, first frame for a client joining a running generation
+    public static final String SNAPSHOT = "snapshot";
+
+    private OllamaStreamEvents() {
+    }
+
+    // Reasoning is split from the answer as the chunks arrive, one splitter per stream
+    public static Flux<ServerSentEvent<Object>> toEvents(Flux<OllamaCompletionResponse> chunks, String model) {
+        return Flux.defer(() -> {
+            ReasoningSplitter splitter = new ReasoningSplitter();
+            return chunks.concatMapIterable(chunk -> toEvents(chunk, model, splitter));
+        });
+    }
+
+    private static List<ServerSentEvent<Object>> toEvents(OllamaCompletionResponse chunk, String model, ReasoningSplitter splitter) {
+        String content = chunk.getMessage() != null ? chunk.getMessage().getContent() : null;
+        List<ReasoningSplitter.Segment> segments = splitter.feed(content);
+        if (!chunk.isDone()) {
+            return segments.isEmpty() ? List.of() : deltas(segments, segments.size());
+        }
+        
+        segments = new ArrayList<>(segments);
+        segments.addAll(splitter.finish());
+        List<ServerSentEvent<Object>> events = deltas(segments, segments.size() + 1);
+        OllamaStreamStats stats = OllamaStreamStats.from(chunk);
+        stats.setModel(model);
+        events.add(event(DONE, stats));
+        return events;
+    }
+
+    private static List<ServerSentEvent<Object>> deltas(List<ReasoningSplitter.Segment> segments, int capacity) {
+        List<ServerSentEvent<Object>> events = new ArrayList<>(capacity);
+        for (ReasoningSplitter.Segment segment : segments) {
+            events.add(segment.reasoning()
+                    ? event(REASONING, OllamaStreamDelta.reasoning(segment.text()))
+                    : event(MESSAGE, OllamaStreamDelta.answer(segment.text())));
+        }
+        return events;
+    }
+
+    // Comment frames sent while the model is silent (loading, long prompts) so a
+    // closed tab fails a write and cancels the stream instead of going unnoticed
+    public static Flux<ServerSentEvent<Object>> withHeartbeat(Flux<ServerSentEvent<Object>> events, Duration interval) {
+        if (interval.isZero() || interval.isNegative()) {
+            return events;
+        }
+        return events.publish(shared -> Flux.merge(
+                shared,
+                Flux.interval(interval)
+                        .map(tick -> ServerSentEvent.<Object>builder().comment("keep-alive").build())
+                        .takeUntilOther(shared.then())));
+    }
+
+    private static ServerSentEvent<Object> event(String type, Object data) {
+        return ServerSentEvent.<Object>builder()
+                .event(type)
+                .data(data)
+                .build();
+    }
+}
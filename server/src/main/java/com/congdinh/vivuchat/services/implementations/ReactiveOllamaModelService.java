@@ -0,0 +1,253 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.dtos.ollama.OllamaApiResponse;
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelDetails;
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelResponse;
+import com.congdinh.vivuchat.dtos.ollama.OllamaTransferProgress;
+import com.congdinh.vivuchat.events.ModelCatalogChangedEvent;
+import com.congdinh.vivuchat.events.ModelCatalogChangedEvent.ChangeType;
+import com.congdinh.vivuchat.services.interfaces.IOllamaNodeBalancer;
+import com.congdinh.vivuchat.services.interfaces.IReactiveOllamaModelService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReactiveOllamaModelService implements IReactiveOllamaModelService {
+
+    private final IOllamaNodeBalancer nodeBalancer;
+    private final ApplicationEventPublisher eventPublisher;
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+    // Longer timeout for pushing models, and the longest silence allowed while a transfer streams progress
+    private static final Duration TRANSFER_TIMEOUT = Duration.ofSeconds(120);
+    // A pull nobody follows any more is cancelled after this, unless a caller comes back
+    private static final Duration ABANDONED_PULL_GRACE = Duration.ofSeconds(30);
+    
+    // One upstream pull per model and registry mode, shared by every caller pulling it at the same time
+    private final Map<PullKey, Flux<OllamaTransferProgress>> pullsInFlight = new ConcurrentHashMap<>();
+    
+    private record PullKey(String model, boolean insecure) {
+    }
+
+    @Override
+    public Flux<OllamaModelResponse> listLocalModels() {
+        return nodeBalancer.execute(null, client -> client.get()
+                        .uri("/tags")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .retrieve()
+                        .bodyToMono(OllamaApiResponse.class))
+                .timeout(DEFAULT_TIMEOUT)
+                .flatMapIterable(response -> response.getModels() != null
+                        ? response.getModels()
+                        : Collections.<OllamaModelResponse>emptyList())
+                // Errors are passed on, so the registry can tell them from an empty catalogue
+                .doOnError(e -> log.error("Failed to list local models: {}", e.toString()));
+    }
+
+    @Override
+    public Flux<OllamaModelResponse> listRunningModels() {
+        // Each node runs its own set of models, merge them by name
+        return Flux.fromIterable(nodeBalancer.getNodes())
+                .flatMap(node -> nodeBalancer.executeOn(node, client -> client.get()
+                                .uri("/ps")
+                                .accept(MediaType.APPLICATION_JSON)
+                                .retrieve()
+                                .bodyToMono(OllamaApiResponse.class))
+                        .onErrorResume(e -> {
+                            log.warn("Failed to list running models on {}: {}", node, e.toString());
+                            return Mono.empty();
+                        }))
+                .filter(response -> response.getModels() != null)
+                .flatMapIterable(OllamaApiResponse::getModels)
+                .collectMap(OllamaModelResponse::getName, Function.identity(), LinkedHashMap::new)
+                .timeout(DEFAULT_TIMEOUT)
+                .flatMapIterable(Map::values)
+                .onErrorResume(e -> {
+                    log.error("Failed to list running models: {}", e.toString());
+                    return Flux.empty();
+                });
+    }
+
+    @Override
+    public Mono<OllamaModelDetails> getModelDetails(String model) {
+        // Metadata runs on a chosen node, only generations mark a model as loaded on theirs
+        return Mono.defer(() -> nodeBalancer.executeOn(nodeBalancer.select(model), client -> client.post()
+                        .uri("/show")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of("model", model))
+                        .retrieve()
+                        .bodyToMono(OllamaApiResponse.class)))
+                .timeout(DEFAULT_TIMEOUT)
+                .mapNotNull(OllamaApiResponse::getDetails)
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> {
+                    log.warn("Model {} not found", model);
+                    return Mono.empty();
+                })
+                .onErrorResume(e -> {
+                    log.error("Failed to get model details for {}: {}", model, e.toString());
+                    return Mono.empty();
+                });
+    }
+
+    @Override
+    public Mono<Boolean> copyModel(String source, String destination) {
+        return onAllNodes(client -> client.post()
+                        .uri("/copy")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of(
+                                "source", source,
+                                "destination", destination))
+                        .retrieve()
+                        .toBodilessEntity()
+                        .map(response -> response.getStatusCode().is2xxSuccessful()))
+                .timeout(DEFAULT_TIMEOUT)
+                .doOnNext(copied -> catalogueChanged(copied, destination, ChangeType.COPIED))
+                .onErrorResume(e -> {
+                    log.error("Failed to copy model from {} to {}: {}", source, destination, e.toString());
+                    return Mono.just(false);
+                });
+    }
+
+    @Override
+    public Mono<Boolean> deleteModel(String model) {
+        return onAllNodes(client -> client.method(HttpMethod.DELETE)
+                        .uri("/delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of("model", model))
+                        .retrieve()
+                        .toBodilessEntity()
+                        .map(response -> response.getStatusCode().is2xxSuccessful()))
+                .timeout(DEFAULT_TIMEOUT)
+                .doOnNext(deleted -> catalogueChanged(deleted, model, ChangeType.DELETED))
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> {
+                    log.warn("Model {} not found for deletion", model);
+                    return Mono.just(false);
+                })
+                .onErrorResume(e -> {
+                    log.error("Failed to delete model {}: {}", model, e.toString());
+                    return Mono.just(false);
+                });
+    }
+
+    @Override
+    public Mono<String> pullModel(String model, boolean insecure, boolean stream) {
+        // Joins a pull already in flight for the model, only the final outcome is reported
+        return pullModelProgress(model, insecure)
+                .filter(OllamaTransferProgress::isFailed)
+                .next()
+                .map(progress -> "error: " + progress.getError())
+                .defaultIfEmpty("success");
+    }
+
+    @Override
+    public Flux<OllamaTransferProgress> pullModelProgress(String model, boolean insecure) {
+        return pullsInFlight.computeIfAbsent(new PullKey(model, insecure), key -> {
+            log.info("Starting pull of model {} on {} node(s)", model, nodeBalancer.getNodes().size());
+            AtomicBoolean failed = new AtomicBoolean();
+            // Every node needs its own copy of the model
+            return Flux.fromIterable(nodeBalancer.getNodes())
+                    .flatMap(node -> transferProgress(node, "/pull", model, insecure))
+                    .doOnNext(progress -> {
+                        if (progress.isFailed()) {
+                            failed.set(true);
+                        }
+                    })
+                    .doOnComplete(() -> catalogueChanged(!failed.get(), model, ChangeType.PULLED))
+                    .doFinally(signal -> pullsInFlight.remove(key))
+                    // Late callers start from the latest line; once the last caller leaves the
+                    // pull is cancelled after a grace period (Ollama keeps the layers it finished)
+                    .replay(1)
+                    .refCount(1, ABANDONED_PULL_GRACE);
+        });
+    }
+
+    @Override
+    public Mono<String> pushModel(String model, boolean insecure, boolean stream) {
+        Map<String, Object> requestBody = transferBody(model, insecure, stream);
+        
+        // Pushing from a single node is enough, the library keeps one copy
+        return Mono.defer(() -> nodeBalancer.executeOn(nodeBalancer.select(model), client -> client.post()
+                        .uri("/push")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToMono(OllamaApiResponse.class)))
+                .mapNotNull(OllamaApiResponse::getStatus)
+                .defaultIfEmpty("success")
+                .timeout(TRANSFER_TIMEOUT)
+                .onErrorResume(e -> {
+                    log.error("Failed to push model {}: {}", model, e.toString());
+                    return Mono.just("error: " + e);
+                });
+    }
+
+    @Override
+    public Flux<OllamaTransferProgress> pushModelProgress(String model, boolean insecure) {
+        // Pushing from a single node is enough, the library keeps one copy
+        return transferProgress(nodeBalancer.select(model), "/push", model, insecure);
+    }
+
+    // Ollama's progress NDJSON for a transfer on one node, failures become an error line
+    private Flux<OllamaTransferProgress> transferProgress(OllamaNode node, String uri, String model, boolean insecure) {
+        return nodeBalancer.streamOn(node, client -> client.post()
+                        .uri(uri)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .bodyValue(transferBody(model, insecure, true))
+                        .retrieve()
+                        .bodyToFlux(OllamaTransferProgress.class))
+                // Idle timeout: layers report progress continuously while they transfer
+                .timeout(TRANSFER_TIMEOUT)
+                .map(progress -> progress.toBuilder().node(node.toString()).build())
+                .onErrorResume(e -> {
+                    log.error("Failed {} of model {} on {}: {}", uri, model, node, e.toString());
+                    return Mono.just(OllamaTransferProgress.builder()
+                            .status("error")
+                            .error(e.getMessage() != null ? e.getMessage() : e.toString())
+                            .node(node.toString())
+                            .build());
+                });
+    }
+
+    private void catalogueChanged(boolean changed, String model, ChangeType changeType) {
+        if (changed) {
+            eventPublisher.publishEvent(new ModelCatalogChangedEvent(this, model, changeType));
+        }
+    }
+
+    private static Map<String, Object> transferBody(String model, boolean insecure, boolean stream) {
+        if (insecure) {
+            return Map.of(
+                    "model", model,
+                    "insecure", true,
+                    "stream", stream);
+        }
+        return Map.of(
+                "model", model,
+                "stream", stream);
+    }
+
+    // Apply a model change on every node, succeeds only if all nodes succeed
+    private Mono<Boolean> onAllNodes(Function<WebClient, Mono<Boolean>> call) {
+        return Flux.fromIterable(nodeBalancer.getNodes())
+                .flatMap(node -> nodeBalancer.executeOn(node, call))
+                .all(Boolean.TRUE::equals);
+    }
+}
@@ -0,0 +1,109 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a reply into reasoning (between think tags) and answer text as it
+ * streams. Tags may arrive split across chunks, so a trailing fragment that
+ * could still become a tag is held back until the next chunk decides it.
+ * Only a think block before any answer text counts; once the answer has
+ * started, the rest is passed through without scanning.
+ */
+public final class ReasoningSplitter {
+
+    private static final String OPEN = "<think>";
+    private static final String CLOSE = "</think>";
+
+    private final StringBuilder pending = new StringBuilder();
+    private boolean reasoning;
+    private boolean answerStarted;
+
+    public record Segment(boolean reasoning, String text) {
+    }
+
+    // A stored reply split in one go
+    public record Split(String reasoning, String answer) {
+    }
+
+    public static Split split(String text) {
+        ReasoningSplitter splitter = new ReasoningSplitter();
+        StringBuilder reasoning = new StringBuilder();
+        StringBuilder answer = new StringBuilder();
+        List<Segment> segments = new ArrayList<>(splitter.feed(text));
+        segments.addAll(splitter.finish());
+        for (Segment segment : segments) {
+            (segment.reasoning() ? reasoning : answer).append(segment.text());
+        }
+        String reasoningText = reasoning.toString().strip();
+        return new Split(reasoningText.isEmpty() ? null : reasoningText, answer.toString().strip());
+    }
+
+    public List<Segment> feed(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        if (answerStarted) {
+            return List.of(new Segment(false, text));
+        }
+
+        String input = pending.isEmpty() ? text : pending.append(text).toString();
+        pending.setLength(0);
+        List<Segment> segments = new ArrayList<>(2);
+        int from = 0;
+        while (from < input.length()) {
+            String tag = reasoning ? CLOSE : OPEN;
+            int at = input.indexOf(tag, from);
+            int end = at >= 0 ? at : input.length() - partialTagLength(input, from, tag);
+            if (!reasoning && !input.substring(from, end).isBlank()) {
+                // Answer text first: no (further) think block, the rest is all answer
+                emit(segments, input.substring(from));
+                break;
+            }
+            emit(segments, input.substring(from, end));
+            if (at < 0) {
+                pending.append(input, end, input.length());
+                break;
+            }
+            reasoning = !reasoning;
+            from = at + tag.length();
+        }
+        return segments;
+    }
+
+    // Whatever was held back, once the stream has ended
+    public List<Segment> finish() {
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        Segment rest = new Segment(reasoning, pending.toString());
+        pending.setLength(0);
+        return List.of(rest);
+    }
+
+    private void emit(List<Segment> segments, String text) {
+        if (reasoning) {
+            if (!text.isEmpty()) {
+                segments.add(new Segment(true, text));
+            }
+            return;
+        }
+        // Whitespace before or right after the think block belongs to neither part
+        String answer = answerStarted ? text : text.stripLeading();
+        if (!answer.isEmpty()) {
+            answerStarted = true;
+            segments.add(new Segment(false, answer));
+        }
+    }
+
+    // Length of the longest suffix of input[from..] that is a proper prefix of the tag
+    private static int partialTagLength(String input, int from, String tag) {
+        int max = Math.min(tag.length() - 1, input.length() - from);
+        for (int length = max; length > 0; length--) {
+            if (input.startsWith(tag.substring(0, length), input.length() - length)) {
+                return length;
+            }
+        }
+        return 0;
+    }
+}
@@ -8,6 +8,7 @@ import com.congdinh.vivuchat.repositories.IRefreshTokenRepository;
 import com.congdinh.vivuchat.services.interfaces.IRefreshTokenService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -150,6 +151,7 @@ public class RefreshTokenService implements IRefreshTokenService {
     
     @Override
     @Transactional
+    @Scheduled(cron = "0 0 1 * * ?") // Run at 1:00 AM every day
     public void purgeExpiredTokens() {
         Instant now = Instant.now();
         int deleted = refreshTokenRepository.deleteAllExpiredTokens(now);
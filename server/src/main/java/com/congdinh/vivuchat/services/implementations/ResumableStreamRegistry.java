@@ -0,0 +1,307 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.OllamaStreamDelta;
+import com.congdinh.vivuchat.exceptions.ChatException;
+import com.congdinh.vivuchat.exceptions.ResourceNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Makes SSE generations resumable. Each generation runs detached from the
+ * request that started it and its events are numbered "{generation}:{seq}".
+ * The last events are kept in a bounded replay buffer, so a client that lost
+ * its connection reconnects with Last-Event-ID and continues after that event
+ * instead of starting a new generation.
+ *
+ * A generation may also be registered under a key (a chat id) while it runs.
+ * Other clients of that chat attach to it: they get the text generated so far
+ * as one "snapshot" event, then the live events, all from the same upstream call.
+ * Only one generation runs per key: the key is reserved before anything is
+ * saved for the generation, and a second reservation is rejected until the
+ * first ends or is released.
+ * Every generation records the requester that started it and only that
+ * requester may resume it.
+ *
+ * A generation without subscribers is cancelled after a short grace period
+ * (which still stops Ollama early for closed tabs). One registered under a key
+ * keeps running instead, so its reply is still saved and can be attached to
+ * again. A finished generation stays resumable for a while before its buffer
+ * is dropped.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ResumableStreamRegistry {
+
+    private final OllamaConfig ollamaConfig;
+    private final Map<String, Generation> generations = new ConcurrentHashMap<>();
+    private final Map<String, Generation> inFlightByKey = new ConcurrentHashMap<>();
+
+    // Runs the source as a resumable generation owned by the requester, started by the first subscription
+    public Flux<ServerSentEvent<Object>> start(Flux<ServerSentEvent<Object>> source, String owner) {
+        return Flux.deferContextual(ctx -> launch(new Generation(UUID.randomUUID().toString(), owner, null),
+                source.contextWrite(ctx)));
+    }
+
+    // Claims the key for a generation the owner starts later, other clients can attach by key until it ends
+    public Reservation reserve(String key, String owner) {
+        Generation generation = new Generation(UUID.randomUUID().toString(), owner, key);
+        if (inFlightByKey.putIfAbsent(key, generation) != null) {
+            throw alreadyRunning();
+        }
+        // A reservation that is never started gives its key back like an abandoned generation
+        generation.awaitFollower();
+        return new Reservation(generation);
+    }
+
+    // Whether a generation is in flight for the key, checked before starting another
+    public boolean isRunning(String key) {
+        return inFlightByKey.containsKey(key);
+    }
+
+    private Flux<ServerSentEvent<Object>> launch(Generation generation, Flux<ServerSentEvent<Object>> source) {
+        if (generation.isFinished()) {
+            return Flux.error(new ChatException("The reply was cancelled before it started"));
+        }
+        generations.put(generation.id, generation);
+        return generation.lead(source);
+    }
+
+    public static ChatException alreadyRunning() {
+        return new ChatException("A reply is already being generated for this chat, follow it or wait for it to finish");
+    }
+
+    // The in-flight generation for the key, from its current text onwards
+    public Optional<Flux<ServerSentEvent<Object>>> attach(String key) {
+        return Optional.ofNullable(inFlightByKey.get(key)).map(Generation::join);
+    }
+
+    // Events after the given Last-Event-ID, live until the generation ends
+    public Flux<ServerSentEvent<Object>> resume(String lastEventId, String requester) {
+        int separator = lastEventId == null ? -1 : lastEventId.lastIndexOf(':');
+        Generation generation = separator > 0 ? generations.get(lastEventId.substring(0, separator)) : null;
+        // Someone else's stream is reported like an expired one, without confirming it exists
+        if (generation == null || !Objects.equals(generation.owner, requester)) {
+            throw new ResourceNotFoundException("Stream is no longer available: " + lastEventId);
+        }
+
+        long after;
+        try {
+            after = Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new ResourceNotFoundException("Invalid event id: " + lastEventId);
+        }
+        // Older events have been evicted from the buffer, the client has to start over
+        if (after + 1 < generation.oldestBuffered()) {
+            throw new ResourceNotFoundException("Stream position is no longer buffered: " + lastEventId);
+        }
+
+        log.debug("Resuming stream {} after event {}", generation.id, after);
+        return generation.follow(after);
+    }
+
+    /**
+     * A key claimed for a generation that has not started yet. Start it with
+     * the source, or release it when the generation will not run after all.
+     */
+    public final class Reservation {
+
+        private final Generation generation;
+
+        private Reservation(Generation generation) {
+            this.generation = generation;
+        }
+
+        // Runs the source as the reserved generation, started by the first subscription
+        public Flux<ServerSentEvent<Object>> start(Flux<ServerSentEvent<Object>> source) {
+            return Flux.deferContextual(ctx -> launch(generation, source.contextWrite(ctx)));
+        }
+
+        // Gives the key back, ignored once the generation has started
+        public void release() {
+            generation.cancelUnstarted();
+        }
+    }
+
+    private record Numbered(long seq, ServerSentEvent<Object> event) {
+    }
+
+    private final class Generation {
+
+        private final String id;
+        private final String owner;
+        private final String key;
+        // Text of the delta events so far, sent to clients attaching mid-generation
+        private final StringBuilder content = new StringBuilder();
+        private final StringBuilder reasoning = new StringBuilder();
+        private final int capacity = ollamaConfig.getStreamResumeBufferEvents();
+        private final Sinks.Many<Numbered> sink = Sinks.many().replay().limit(capacity);
+        private final AtomicInteger followers = new AtomicInteger();
+        private long lastSeq;
+        private boolean finished;
+        private Disposable upstream;
+        private Disposable pendingCancel;
+
+        private Generation(String id, String owner, String key) {
+            this.id = id;
+            this.owner = owner;
+            this.key = key;
+        }
+
+        // Subscribes to the source once, unless the generation was cancelled before it started
+        private synchronized void connect(Flux<ServerSentEvent<Object>> source) {
+            if (!finished && upstream == null) {
+                upstream = source.subscribe(this::publish, this::fail, this::finish);
+            }
+        }
+
+        private synchronized boolean isFinished() {
+            return finished;
+        }
+
+        private synchronized long oldestBuffered() {
+            return Math.max(1, lastSeq - capacity + 1);
+        }
+
+        // The starting client is subscribed to the sink before the source is connected, so a source
+        // that emits synchronously (a cached reply) reaches it whole even past the replay buffer
+        private Flux<ServerSentEvent<Object>> lead(Flux<ServerSentEvent<Object>> source) {
+            return follow(Flux.from(subscriber -> {
+                sink.asFlux().subscribe(subscriber);
+                connect(source);
+            }), 0);
+        }
+
+        private Flux<ServerSentEvent<Object>> follow(long after) {
+            return follow(sink.asFlux(), after);
+        }
+
+        private Flux<ServerSentEvent<Object>> follow(Flux<Numbered> events, long after) {
+            return events
+                    .filter(numbered -> numbered.seq() > after)
+                    .map(Numbered::event)
+                    .doOnSubscribe(subscription -> attached())
+                    .doFinally(signal -> detached());
+        }
+
+        private synchronized Flux<ServerSentEvent<Object>> join() {
+            ServerSentEvent<Object> snapshot = ServerSentEvent.<Object>builder()
+                    .id(id + ":" + lastSeq)
+                    .event(OllamaStreamEvents.SNAPSHOT)
+                    .data(new OllamaStreamDelta(content.toString(), reasoning.length() > 0 ? reasoning.toString() : null))
+                    .build();
+            log.debug("Client attached to stream {} at event {}", id, lastSeq);
+            return Flux.concat(Flux.just(snapshot), follow(lastSeq));
+        }
+
+        private synchronized void publish(ServerSentEvent<Object> event) {
+            long seq = ++lastSeq;
+            if (key != null && event.data() instanceof OllamaStreamDelta delta) {
+                if (delta.getContent() != null) {
+                    content.append(delta.getContent());
+                }
+                if (delta.getReasoning() != null) {
+                    reasoning.append(delta.getReasoning());
+                }
+            }
+            sink.tryEmitNext(new Numbered(seq, ServerSentEvent.<Object>builder()
+                    .id(id + ":" + seq)
+                    .event(event.event())
+                    .data(event.data())
+                    .comment(event.comment())
+                    .retry(event.retry())
+                    .build()));
+        }
+
+        private void fail(Throwable error) {
+            log.error("Stream {} failed: {}", id, error.getMessage());
+            finish();
+        }
+
+        private synchronized void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            sink.tryEmitComplete();
+            release();
+            log.debug("Stream {} finished after {} events", id, lastSeq);
+            Schedulers.parallel().schedule(() -> generations.remove(id),
+                    ollamaConfig.getStreamResumeRetentionSeconds(), TimeUnit.SECONDS);
+        }
+
+        private synchronized void attached() {
+            followers.incrementAndGet();
+            if (pendingCancel != null) {
+                pendingCancel.dispose();
+                pendingCancel = null;
+            }
+        }
+
+        private synchronized void detached() {
+            if (followers.decrementAndGet() > 0 || finished) {
+                return;
+            }
+            // Wait for a reconnect before giving up on the generation
+            awaitFollower();
+        }
+
+        private synchronized void awaitFollower() {
+            pendingCancel = Schedulers.parallel().schedule(this::abandon,
+                    ollamaConfig.getStreamResumeGraceSeconds(), TimeUnit.SECONDS);
+        }
+
+        private synchronized void cancelUnstarted() {
+            if (upstream == null && !finished) {
+                close();
+            }
+        }
+
+        private synchronized void abandon() {
+            if (followers.get() > 0 || finished) {
+                return;
+            }
+            // Cancelling would also drop the save that follows a chat reply, so keyed generations finish
+            if (key != null && upstream != null) {
+                log.debug("No client reconnected to stream {}, letting it finish", id);
+                return;
+            }
+            log.debug("No client reconnected to stream {}, cancelling it", id);
+            if (upstream != null) {
+                upstream.dispose();
+            }
+            close();
+        }
+
+        private synchronized void close() {
+            if (pendingCancel != null) {
+                pendingCancel.dispose();
+            }
+            finished = true;
+            sink.tryEmitComplete();
+            release();
+            generations.remove(id);
+        }
+
+        private void release() {
+            if (key != null) {
+                inFlightByKey.remove(key, this);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the one-token chunks Ollama streams into fewer, larger ones so each
+ * SSE frame (and its flush through nginx) carries more text. A batch is
+ * flushed after streamFlushMillis or once it reaches streamFlushBytes; the
+ * first token of a stream and the final chunk are never delayed.
+ */
+@Component
+public class TokenBatcher {
+
+    private final OllamaConfig ollamaConfig;
+    private final Counter chunksIn;
+    private final Counter chunksOut;
+
+    public TokenBatcher(OllamaConfig ollamaConfig, MeterRegistry meterRegistry) {
+        this.ollamaConfig = ollamaConfig;
+        this.chunksIn = Counter.builder("vivuchat.stream.chunks.in")
+                .description("Chunks received from Ollama before coalescing")
+                .register(meterRegistry);
+        this.chunksOut = Counter.builder("vivuchat.stream.chunks.out")
+                .description("Chunks sent to clients after coalescing")
+                .register(meterRegistry);
+    }
+
+    public Flux<OllamaCompletionResponse> batch(Flux<OllamaCompletionResponse> chunks) {
+        if (ollamaConfig.getStreamFlushMillis() <= 0) {
+            return chunks;
+        }
+        return Flux.create(sink -> {
+            Batch batch = new Batch(sink);
+            // A bare subscribe starts with an empty context: carry the subscriber's (requester,
+            // admission, node) over to the upstream so admission and routing still see it
+            Disposable upstream = chunks.contextWrite(sink.contextView())
+                    .subscribe(batch::onNext, batch::onError, batch::onComplete);
+            sink.onDispose(() -> {
+                upstream.dispose();
+                batch.cancelTimer();
+            });
+        });
+    }
+
+    private final class Batch {
+        private final FluxSink<OllamaCompletionResponse> sink;
+        private final StringBuilder pending = new StringBuilder();
+        private int pendingBytes;
+        private boolean firstSent;
+        private Disposable timer;
+
+        private Batch(FluxSink<OllamaCompletionResponse> sink) {
+            this.sink = sink;
+        }
+
+        private synchronized void onNext(OllamaCompletionResponse chunk) {
+            chunksIn.increment();
+            String content = chunk.getMessage() != null ? chunk.getMessage().getContent() : null;
+            
+            if (chunk.isDone()) {
+                // The final chunk carries whatever is still pending along with the stats
+                cancelTimer();
+                if (content != null) {
+                    pending.append(content);
+                }
+                emit(pending.isEmpty() ? chunk : withContent(chunk, pending.toString()));
+                clear();
+                return;
+            }
+            if (content == null || content.isEmpty()) {
+                return;
+            }
+            if (!firstSent) {
+                // Time to first token is what users notice, never hold it back
+                firstSent = true;
+                emit(chunk);
+                return;
+            }
+            
+            pending.append(content);
+            pendingBytes += utf8Length(content);
+            if (pendingBytes >= ollamaConfig.getStreamFlushBytes()) {
+                flush();
+            } else if (timer == null) {
+                timer = Schedulers.parallel().schedule(this::flushOnTimer,
+                        ollamaConfig.getStreamFlushMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void onError(Throwable error) {
+            flush();
+            sink.error(error);
+        }
+
+        private synchronized void onComplete() {
+            flush();
+            sink.complete();
+        }
+
+        private synchronized void flushOnTimer() {
+            timer = null;
+            flush();
+        }
+
+        private void flush() {
+            cancelTimer();
+            if (pending.isEmpty()) {
+                return;
+            }
+            emit(OllamaCompletionResponse.builder()
+                    .message(new OllamaCompletionResponse.OllamaMessage("assistant", pending.toString()))
+                    .build());
+            clear();
+        }
+
+        private synchronized void cancelTimer() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+
+        private void emit(OllamaCompletionResponse chunk) {
+            chunksOut.increment();
+            sink.next(chunk);
+        }
+
+        private void clear() {
+            pending.setLength(0);
+            pendingBytes = 0;
+        }
+
+        private OllamaCompletionResponse withContent(OllamaCompletionResponse chunk, String content) {
+            return chunk.toBuilder()
+                    .message(new OllamaCompletionResponse.OllamaMessage("assistant", content))
+                    .build();
+        }
+    }
+
+    private static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,231 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads tokenizer vocabularies from a GGUF model file (only the metadata
+ * header, the tensors are never touched) or from a Hugging Face
+ * tokenizer.json export.
+ */
+public final class TokenizerVocabLoader {
+
+    private static final int GGUF_MAGIC = 0x46554747; // "GGUF" little-endian
+    private static final int TYPE_UINT8 = 0, TYPE_INT8 = 1, TYPE_UINT16 = 2, TYPE_INT16 = 3,
+            TYPE_UINT32 = 4, TYPE_INT32 = 5, TYPE_FLOAT32 = 6, TYPE_BOOL = 7, TYPE_STRING = 8,
+            TYPE_ARRAY = 9, TYPE_UINT64 = 10, TYPE_INT64 = 11, TYPE_FLOAT64 = 12;
+
+    private TokenizerVocabLoader() {
+    }
+
+    public static BpeTokenizer load(Path path, ObjectMapper objectMapper) throws IOException {
+        return path.getFileName().toString().endsWith(".json")
+                ? fromHuggingFace(path, objectMapper)
+                : fromGguf(path);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static BpeTokenizer fromGguf(Path path) throws IOException {
+        Map<String, Object> metadata = readGgufMetadata(path);
+        String model = (String) metadata.get("tokenizer.ggml.model");
+        List<String> tokens = (List<String>) metadata.get("tokenizer.ggml.tokens");
+        if (model == null || tokens == null) {
+            throw new IOException("No tokenizer metadata in " + path);
+        }
+        
+        if ("gpt2".equals(model)) {
+            Map<String, Integer> vocab = new HashMap<>(tokens.size() * 2);
+            for (int id = 0; id < tokens.size(); id++) {
+                vocab.putIfAbsent(tokens.get(id), id);
+            }
+            List<String[]> merges = new ArrayList<>();
+            for (String merge : (List<String>) metadata.getOrDefault("tokenizer.ggml.merges", List.of())) {
+                int space = merge.indexOf(' ');
+                if (space > 0) {
+                    merges.add(new String[]{merge.substring(0, space), merge.substring(space + 1)});
+                }
+            }
+            return BpeTokenizer.byteLevel(vocab, merges,
+                    BpeTokenizer.preTokenizerFor((String) metadata.get("tokenizer.ggml.pre")));
+        }
+        if ("llama".equals(model)) {
+            float[] scores = toFloatArray((List<Number>) metadata.get("tokenizer.ggml.scores"), tokens.size());
+            int[] types = toIntArray((List<Number>) metadata.get("tokenizer.ggml.token_type"));
+            Number unknown = (Number) metadata.get("tokenizer.ggml.unknown_token_id");
+            return BpeTokenizer.sentencePiece(tokens, scores, types, unknown != null ? unknown.intValue() : 0);
+        }
+        throw new IOException("Unsupported tokenizer model '" + model + "' in " + path);
+    }
+
+    public static BpeTokenizer fromHuggingFace(Path path, ObjectMapper objectMapper) throws IOException {
+        JsonNode root = objectMapper.readTree(path.toFile());
+        JsonNode model = root.path("model");
+        if (!"BPE".equals(model.path("type").asText())) {
+            throw new IOException("Only BPE tokenizer.json files are supported: " + path);
+        }
+        
+        Map<String, Integer> vocab = new HashMap<>(model.path("vocab").size() * 2);
+        model.path("vocab").fields().forEachRemaining(entry -> vocab.put(entry.getKey(), entry.getValue().asInt()));
+        
+        // Older exports write merges as "left right", newer ones as ["left", "right"]
+        List<String[]> merges = new ArrayList<>(model.path("merges").size());
+        for (JsonNode merge : model.path("merges")) {
+            if (merge.isArray() && merge.size() == 2) {
+                merges.add(new String[]{merge.get(0).asText(), merge.get(1).asText()});
+            } else if (merge.isTextual()) {
+                String text = merge.asText();
+                int space = text.indexOf(' ');
+                if (space > 0) {
+                    merges.add(new String[]{text.substring(0, space), text.substring(space + 1)});
+                }
+            }
+        }
+        
+        JsonNode regex = root.path("pre_tokenizer").findValue("Regex");
+        return BpeTokenizer.byteLevel(vocab, merges, regex != null && regex.isTextual()
+                ? java.util.regex.Pattern.compile(regex.asText())
+                : BpeTokenizer.preTokenizerFor(null));
+    }
+
+    // Key/value header of a GGUF v2/v3 file, tokenizer arrays included
+    static Map<String, Object> readGgufMetadata(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 1 << 20)) {
+            LittleEndianReader reader = new LittleEndianReader(in);
+            if (reader.readInt() != GGUF_MAGIC) {
+                throw new IOException("Not a GGUF file: " + path);
+            }
+            int version = reader.readInt();
+            if (version < 2) {
+                throw new IOException("GGUF version " + version + " is not supported: " + path);
+            }
+            reader.readLong(); // tensor count
+            long keyCount = reader.readLong();
+            
+            Map<String, Object> metadata = new HashMap<>();
+            for (long i = 0; i < keyCount; i++) {
+                String key = reader.readString();
+                int type = reader.readInt();
+                if (key.startsWith("tokenizer.")) {
+                    metadata.put(key, reader.readValue(type));
+                } else {
+                    reader.skipValue(type);
+                }
+            }
+            return metadata;
+        }
+    }
+
+    private static float[] toFloatArray(List<Number> values, int size) {
+        float[] result = new float[size];
+        if (values != null) {
+            for (int i = 0; i < Math.min(size, values.size()); i++) {
+                result[i] = values.get(i).floatValue();
+            }
+        }
+        return result;
+    }
+
+    private static int[] toIntArray(List<Number> values) {
+        if (values == null) {
+            return null;
+        }
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i).intValue();
+        }
+        return result;
+    }
+
+    private static final class LittleEndianReader {
+        private final InputStream in;
+        private final ByteBuffer scratch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+        private LittleEndianReader(InputStream in) {
+            this.in = in;
+        }
+
+        private Object readValue(int type) throws IOException {
+            return switch (type) {
+                case TYPE_UINT8, TYPE_INT8 -> (int) read(1).get();
+                case TYPE_BOOL -> read(1).get() != 0;
+                case TYPE_UINT16, TYPE_INT16 -> (int) read(2).getShort();
+                case TYPE_UINT32, TYPE_INT32 -> readInt();
+                case TYPE_FLOAT32 -> read(4).getFloat();
+                case TYPE_UINT64, TYPE_INT64 -> readLong();
+                case TYPE_FLOAT64 -> read(8).getDouble();
+                case TYPE_STRING -> readString();
+                case TYPE_ARRAY -> {
+                    int elementType = readInt();
+                    long count = readLong();
+                    List<Object> values = new ArrayList<>((int) Math.min(count, Integer.MAX_VALUE));
+                    for (long i = 0; i < count; i++) {
+                        values.add(readValue(elementType));
+                    }
+                    yield values;
+                }
+                default -> throw new IOException("Unknown GGUF value type " + type);
+            };
+        }
+
+        private void skipValue(int type) throws IOException {
+            switch (type) {
+                case TYPE_UINT8, TYPE_INT8, TYPE_BOOL -> skip(1);
+                case TYPE_UINT16, TYPE_INT16 -> skip(2);
+                case TYPE_UINT32, TYPE_INT32, TYPE_FLOAT32 -> skip(4);
+                case TYPE_UINT64, TYPE_INT64, TYPE_FLOAT64 -> skip(8);
+                case TYPE_STRING -> skip(readLong());
+                case TYPE_ARRAY -> {
+                    int elementType = readInt();
+                    long count = readLong();
+                    for (long i = 0; i < count; i++) {
+                        skipValue(elementType);
+                    }
+                }
+                default -> throw new IOException("Unknown GGUF value type " + type);
+            }
+        }
+
+        private int readInt() throws IOException {
+            return read(4).getInt();
+        }
+
+        private long readLong() throws IOException {
+            return read(8).getLong();
+        }
+
+        private String readString() throws IOException {
+            long length = readLong();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("GGUF string too long: " + length);
+            }
+            return new String(in.readNBytes((int) length), StandardCharsets.UTF_8);
+        }
+
+        private ByteBuffer read(int bytes) throws IOException {
+            scratch.clear();
+            if (in.readNBytes(scratch.array(), 0, bytes) != bytes) {
+                throw new EOFException("Truncated GGUF header");
+            }
+            scratch.limit(bytes);
+            return scratch;
+        }
+
+        private void skip(long bytes) throws IOException {
+            in.skipNBytes(bytes);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.UsageLimitConfig;
+import com.congdinh.vivuchat.entities.Role;
+import com.congdinh.vivuchat.entities.User;
+import com.congdinh.vivuchat.entities.UserTokenUsage;
+import com.congdinh.vivuchat.exceptions.RateLimitExceededException;
+import com.congdinh.vivuchat.repositories.IUserRepository;
+import com.congdinh.vivuchat.repositories.IUserTokenUsageRepository;
+import com.congdinh.vivuchat.services.interfaces.IUsageLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Per-requester request rate and daily token limits, checked before a generation
+ * is queued. The hot path only touches atomics: the request rate is a token bucket
+ * kept as a single theoretical arrival time updated by CAS, and generated tokens go
+ * to a LongAdder. A scheduled reconcile adds the unsaved tokens to Postgres, reads
+ * back the day's totals and re-resolves every requester's limits from their current
+ * roles and overrides, so limits survive restarts, are shared by every instance and
+ * follow role changes within one reconcile interval.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UsageLimiter implements IUsageLimiter {
+
+    // Buckets untouched for this long are dropped, their tokens are already in Postgres
+    private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final UsageLimitConfig limitConfig;
+    private final IUserRepository userRepository;
+    private final IUserTokenUsageRepository usageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Scheduler blockingScheduler;
+    private final Map<String, Allowance> allowances = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<Void> admit(String requester, Collection<String> roles) {
+        return check(requester, roles, true);
+    }
+
+    @Override
+    public Mono<Void> checkQuota(String requester, Collection<String> roles) {
+        return check(requester, roles, false);
+    }
+
+    @Override
+    public void recordTokens(String requester, long tokens) {
+        if (!limitConfig.isEnabled() || tokens <= 0) {
+            return;
+        }
+        // An unknown requester gets default limits until the next reconcile resolves them
+        allowances.computeIfAbsent(requester, key -> new Allowance(defaultLimits(), today(), 0L, false))
+                .unsavedTokens.add(tokens);
+    }
+
+    @Scheduled(fixedDelayString = "${app.limits.reconcileSeconds:30}", timeUnit = TimeUnit.SECONDS)
+    public void reconcile() {
+        if (allowances.isEmpty()) {
+            return;
+        }
+        
+        // Counted as persisted right away so readers never see the tokens missing
+        List<Flush> flushes = new ArrayList<>();
+        allowances.forEach((requester, allowance) -> {
+            long tokens = allowance.unsavedTokens.sumThenReset();
+            if (tokens > 0) {
+                allowance.persistedTokens.addAndGet(tokens);
+                flushes.add(new Flush(requester, allowance, allowance.day, tokens));
+            }
+        });
+        
+        LocalDate today = today();
+        try {
+            // One transaction for every requester that generated since the last run
+            if (!flushes.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> flushes.forEach(flush ->
+                        usageRepository.addTokens(UUID.randomUUID(), flush.requester(), flush.day(), flush.tokens())));
+            }
+            
+            // Totals include what other instances wrote
+            Map<String, Long> totals = usageRepository.findByUsageDayAndUsernameIn(today, allowances.keySet()).stream()
+                    .collect(Collectors.toMap(UserTokenUsage::getUsername, UserTokenUsage::getTokens));
+            Map<String, Collection<String>> roles = currentRoles(allowances.keySet());
+            long now = System.nanoTime();
+            allowances.forEach((requester, allowance) -> {
+                // After midnight the previous day's tokens are flushed above, counting restarts
+                Long total = totals.get(requester);
+                if (!today.equals(allowance.day)) {
+                    allowance.day = today;
+                    allowance.persistedTokens.set(total != null ? total : 0L);
+                } else if (total != null) {
+                    allowance.persistedTokens.set(total);
+                }
+                // Role and override changes apply to requesters that stay active
+                allowance.limits = resolve(requester, roles.getOrDefault(requester, List.of()));
+                allowance.resolved = true;
+                if (allowance.isIdle(now)) {
+                    allowances.remove(requester, allowance);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not reconcile token usage, retrying next run: {}", e.getMessage());
+            flushes.forEach(flush -> {
+                flush.allowance().persistedTokens.addAndGet(-flush.tokens());
+                flush.allowance().unsavedTokens.add(flush.tokens());
+            });
+        }
+    }
+
+    private Mono<Void> check(String requester, Collection<String> roles, boolean countRequest) {
+        if (!limitConfig.isEnabled()) {
+            return Mono.empty();
+        }
+        Allowance allowance = allowances.get(requester);
+        if (allowance != null && allowance.resolved) {
+            return Mono.fromRunnable(() -> check(allowance, countRequest));
+        }
+        // First sight of a requester reads Postgres, which must not happen on the caller's thread
+        return Mono.fromCallable(() -> load(requester, roles))
+                .subscribeOn(blockingScheduler)
+                .doOnNext(loaded -> check(loaded, countRequest))
+                .then();
+    }
+
+    private void check(Allowance allowance, boolean countRequest) {
+        Limits limits = allowance.limits;
+        
+        // Checked first so a request rejected for tokens does not use up the rate
+        if (limits.tokensPerDay() > 0 && allowance.tokensUsed() >= limits.tokensPerDay()) {
+            reject("tokens", "Daily token quota of " + limits.tokensPerDay() + " reached",
+                    Duration.between(ZonedDateTime.now(ZoneOffset.UTC), today().plusDays(1).atStartOfDay(ZoneOffset.UTC)));
+        }
+        if (!countRequest) {
+            return;
+        }
+        long waitNanos = allowance.tryTakeRequest(limits, System.nanoTime());
+        if (waitNanos > 0) {
+            reject("requests", "Rate limit of " + limits.requestsPerMinute() + " requests per minute exceeded",
+                    Duration.ofNanos(waitNanos));
+        }
+    }
+
+    // Blocking: today's total and, unless the caller knows them, the requester's roles
+    private Allowance load(String requester, Collection<String> roles) {
+        LocalDate today = today();
+        long persisted = usageRepository.findByUsernameAndUsageDay(requester, today)
+                .map(UserTokenUsage::getTokens)
+                .orElse(0L);
+        Limits limits = resolve(requester, roles != null ? roles : lookupRoles(requester));
+        Allowance created = new Allowance(limits, today, persisted, true);
+        Allowance existing = allowances.putIfAbsent(requester, created);
+        if (existing == null) {
+            return created;
+        }
+        if (!existing.resolved) {
+            // Created by recordTokens with default limits
+            existing.limits = limits;
+            existing.persistedTokens.accumulateAndGet(persisted, Math::max);
+            existing.resolved = true;
+        }
+        return existing;
+    }
+
+    private Collection<String> lookupRoles(String requester) {
+        if (requester.startsWith("ip:")) {
+            return List.of();
+        }
+        return userRepository.findByUsername(requester)
+                .map(UsageLimiter::roleNames)
+                .orElse(List.of());
+    }
+
+    private Map<String, Collection<String>> currentRoles(Collection<String> requesters) {
+        List<String> usernames = requesters.stream()
+                .filter(requester -> !requester.startsWith("ip:"))
+                .toList();
+        if (usernames.isEmpty()) {
+            return Map.of();
+        }
+        return userRepository.findByUsernameIn(usernames).stream()
+                .collect(Collectors.toMap(User::getUsername, UsageLimiter::roleNames));
+    }
+
+    private static Collection<String> roleNames(User user) {
+        return user.getRoles().stream().map(Role::getName).toList();
+    }
+
+    private Limits defaultLimits() {
+        return Limits.of(limitConfig.getRequestsPerMinute(), limitConfig.getTokensPerDay());
+    }
+
+    // A user override wins, otherwise the most generous of the roles, with 0 as unlimited
+    private Limits resolve(String requester, Collection<String> roles) {
+        UsageLimitConfig.Limit user = limitConfig.getUsers().get(requester);
+        Integer requestsPerMinute = user != null ? user.getRequestsPerMinute() : null;
+        Long tokensPerDay = user != null ? user.getTokensPerDay() : null;
+        
+        Integer roleRequests = null;
+        Long roleTokens = null;
+        for (String role : roles) {
+            UsageLimitConfig.Limit limit = limitConfig.getRoles().get(role);
+            if (limit == null) {
+                continue;
+            }
+            if (limit.getRequestsPerMinute() != null) {
+                roleRequests = roleRequests == null ? limit.getRequestsPerMinute() : moreGenerous(roleRequests, limit.getRequestsPerMinute());
+            }
+            if (limit.getTokensPerDay() != null) {
+                roleTokens = roleTokens == null ? limit.getTokensPerDay() : moreGenerous(roleTokens, limit.getTokensPerDay());
+            }
+        }
+        
+        if (requestsPerMinute == null) {
+            requestsPerMinute = roleRequests != null ? roleRequests : limitConfig.getRequestsPerMinute();
+        }
+        if (tokensPerDay == null) {
+            tokensPerDay = roleTokens != null ? roleTokens : limitConfig.getTokensPerDay();
+        }
+        return Limits.of(requestsPerMinute, tokensPerDay);
+    }
+
+    private static int moreGenerous(int a, int b) {
+        return a <= 0 || b <= 0 ? 0 : Math.max(a, b);
+    }
+
+    private static long moreGenerous(long a, long b) {
+        return a <= 0 || b <= 0 ? 0 : Math.max(a, b);
+    }
+
+    private void reject(String reason, String message, Duration retryAfter) {
+        meterRegistry.counter("vivuchat.limits.rejected", "reason", reason).increment();
+        long retryAfterSeconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+        throw new RateLimitExceededException(message, retryAfterSeconds);
+    }
+
+    private static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+
+    private record Flush(String requester, Allowance allowance, LocalDate day, long tokens) {
+    }
+
+    // Time between requests at the sustained rate, and how far ahead a burst may run
+    record Limits(int requestsPerMinute, long tokensPerDay, long intervalNanos, long burstNanos) {
+        static Limits of(int requestsPerMinute, long tokensPerDay) {
+            long interval = requestsPerMinute > 0 ? TimeUnit.MINUTES.toNanos(1) / requestsPerMinute : 0;
+            return new Limits(requestsPerMinute, tokensPerDay, interval, interval * Math.max(0, requestsPerMinute - 1));
+        }
+    }
+
+    static final class Allowance {
+        private volatile Limits limits;
+        // False while only default limits are known, see recordTokens
+        private volatile boolean resolved;
+        // When the bucket would next be empty (GCRA form of a token bucket)
+        private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+        private final AtomicLong persistedTokens;
+        private final LongAdder unsavedTokens = new LongAdder();
+        private volatile LocalDate day;
+
+        Allowance(Limits limits, LocalDate day, long persistedTokens, boolean resolved) {
+            this.limits = limits;
+            this.day = day;
+            this.persistedTokens = new AtomicLong(persistedTokens);
+            this.resolved = resolved;
+        }
+
+        // 0 when the request is allowed, otherwise how long until it would be
+        long tryTakeRequest(Limits limits, long now) {
+            if (limits.intervalNanos() == 0) {
+                return 0;
+            }
+            while (true) {
+                long arrival = theoreticalArrival.get();
+                long start = arrival - now > 0 ? arrival : now;
+                long ahead = start - now;
+                if (ahead > limits.burstNanos()) {
+                    return ahead - limits.burstNanos();
+                }
+                if (theoreticalArrival.compareAndSet(arrival, start + limits.intervalNanos())) {
+                    return 0;
+                }
+            }
+        }
+
+        private long tokensUsed() {
+            return persistedTokens.get() + unsavedTokens.sum();
+        }
+
+        private boolean isIdle(long now) {
+            return unsavedTokens.sum() == 0 && now - theoreticalArrival.get() > IDLE_NANOS;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.UsageMeteringConfig;
+import com.congdinh.vivuchat.dtos.admin.UsageReportResponse;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import com.congdinh.vivuchat.repositories.IUsageRollupRepository;
+import com.congdinh.vivuchat.services.interfaces.IUsageMeter;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-minute usage rollups by requester and model. Completions only add to LongAdders
+ * in a concurrent map, a scheduled flush drains them and upserts the rows in batched
+ * INSERTs that add to what is already stored, so a minute can be flushed several times
+ * and by several instances. Reports aggregate the rollups, never per-request rows.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UsageMeter implements IUsageMeter {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO usage_rollups (id, bucket_start, username, model, requests, prompt_tokens, eval_tokens,
+                                       total_duration_ns, load_duration_ns, eval_duration_ns)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (bucket_start, username, model) DO UPDATE SET
+                requests = usage_rollups.requests + EXCLUDED.requests,
+                prompt_tokens = usage_rollups.prompt_tokens + EXCLUDED.prompt_tokens,
+                eval_tokens = usage_rollups.eval_tokens + EXCLUDED.eval_tokens,
+                total_duration_ns = usage_rollups.total_duration_ns + EXCLUDED.total_duration_ns,
+                load_duration_ns = usage_rollups.load_duration_ns + EXCLUDED.load_duration_ns,
+                eval_duration_ns = usage_rollups.eval_duration_ns + EXCLUDED.eval_duration_ns
+            """;
+
+    private static final Set<String> GRANULARITIES = Set.of("total", "minute", "hour", "day");
+
+    private final UsageMeteringConfig meteringConfig;
+    private final IUsageRollupRepository rollupRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<BucketKey, Rollup> rollups = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(String requester, String model, OllamaCompletionResponse response) {
+        if (!meteringConfig.isEnabled()) {
+            return;
+        }
+        BucketKey key = new BucketKey(currentMinute(), requester, model != null ? model : response.getModel());
+        Rollup rollup = rollups.get(key);
+        if (rollup == null) {
+            rollup = rollups.computeIfAbsent(key, k -> new Rollup());
+        }
+        rollup.add(response);
+    }
+
+    @Scheduled(fixedDelayString = "${app.metering.flushSeconds:15}", timeUnit = TimeUnit.SECONDS)
+    public void flush() {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        
+        // Minutes older than the previous one get no more writes and are dropped once drained
+        long current = currentMinute();
+        List<Pending> pending = new ArrayList<>();
+        rollups.forEach((key, rollup) -> {
+            long[] counts = rollup.drain();
+            if (Arrays.stream(counts).anyMatch(count -> count != 0)) {
+                pending.add(new Pending(key, rollup, counts));
+            } else if (key.minute() < current - 1) {
+                rollups.remove(key, rollup);
+            }
+        });
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                    UPSERT_SQL, pending, meteringConfig.getBatchSize(), (ps, row) -> {
+                        long[] counts = row.counts();
+                        ps.setObject(1, UUID.randomUUID());
+                        ps.setObject(2, OffsetDateTime.ofInstant(
+                                Instant.ofEpochSecond(TimeUnit.MINUTES.toSeconds(row.key().minute())), ZoneOffset.UTC));
+                        ps.setString(3, row.key().username());
+                        ps.setString(4, row.key().model());
+                        for (int i = 0; i < counts.length; i++) {
+                            ps.setLong(5 + i, counts[i]);
+                        }
+                    }));
+            log.debug("Flushed {} usage rollups", pending.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not flush usage rollups, retrying next run: {}", e.getMessage());
+            pending.forEach(row -> row.rollup().restore(row.counts()));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    @Override
+    public UsageReportResponse report(Instant from, Instant to, String username, String model, String granularity) {
+        String unit = granularity != null ? granularity.toLowerCase() : "total";
+        if (!GRANULARITIES.contains(unit)) {
+            throw new IllegalArgumentException("Granularity must be one of total, minute, hour or day");
+        }
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(1));
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        if (Duration.between(start, end).compareTo(Duration.ofDays(meteringConfig.getMaxQueryDays())) > 0) {
+            throw new IllegalArgumentException("Time range is limited to " + meteringConfig.getMaxQueryDays() + " days");
+        }
+        String user = blankToNull(username);
+        String modelName = blankToNull(model);
+        
+        List<UsageReportResponse.UsageRow> rows = "total".equals(unit)
+                ? rollupRepository.summarize(start, end, user, modelName).stream()
+                        .map(totals -> toRow(null, totals))
+                        .toList()
+                : rollupRepository.timeline(unit, start, end, user, modelName).stream()
+                        .map(totals -> toRow(Instant.ofEpochSecond(totals.getBucketEpochSecond()), totals))
+                        .toList();
+        
+        return UsageReportResponse.builder()
+                .from(start)
+                .to(end)
+                .granularity(unit)
+                .username(user)
+                .model(modelName)
+                .rows(rows)
+                .build();
+    }
+
+    private static UsageReportResponse.UsageRow toRow(Instant bucketStart, IUsageRollupRepository.UsageTotals totals) {
+        long evalTokens = valueOf(totals.getEvalTokens());
+        long evalDurationNs = valueOf(totals.getEvalDurationNs());
+        return UsageReportResponse.UsageRow.builder()
+                .bucketStart(bucketStart)
+                .username(totals.getUsername())
+                .model(totals.getModel())
+                .requests(valueOf(totals.getRequests()))
+                .promptTokens(valueOf(totals.getPromptTokens()))
+                .evalTokens(evalTokens)
+                .totalDurationMs(TimeUnit.NANOSECONDS.toMillis(valueOf(totals.getTotalDurationNs())))
+                .loadDurationMs(TimeUnit.NANOSECONDS.toMillis(valueOf(totals.getLoadDurationNs())))
+                .evalDurationMs(TimeUnit.NANOSECONDS.toMillis(evalDurationNs))
+                .evalTokensPerSecond(evalDurationNs > 0 ? evalTokens * 1e9 / evalDurationNs : 0)
+                .build();
+    }
+
+    private static long valueOf(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private static long currentMinute() {
+        return TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    }
+
+    private record BucketKey(long minute, String username, String model) {
+    }
+
+    private record Pending(BucketKey key, Rollup rollup, long[] counts) {
+    }
+
+    // Counters in upsert column order: requests, prompt tokens, eval tokens, then durations
+    private static final class Rollup {
+        private final LongAdder[] counters = {
+                new LongAdder(), new LongAdder(), new LongAdder(),
+                new LongAdder(), new LongAdder(), new LongAdder()
+        };
+
+        private void add(OllamaCompletionResponse response) {
+            counters[0].increment();
+            counters[1].add(response.getPrompt_eval_count());
+            counters[2].add(response.getEval_count());
+            counters[3].add(response.getTotal_duration());
+            counters[4].add(response.getLoad_duration());
+            counters[5].add(response.getEval_duration());
+        }
+
+        private long[] drain() {
+            long[] counts = new long[counters.length];
+            for (int i = 0; i < counters.length; i++) {
+                counts[i] = counters[i].sumThenReset();
+            }
+            return counts;
+        }
+
+        private void restore(long[] counts) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i].add(counts[i]);
+            }
+        }
+    }
+}
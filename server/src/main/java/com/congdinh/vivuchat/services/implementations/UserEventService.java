@@ -0,0 +1,50 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.services.interfaces.IUserEventService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+
+/**
+ * Background updates for signed-in users (e.g. a generated chat title), pushed
+ * over one SSE stream per open client. Events are in-memory: they reach the
+ * clients connected to this instance and are not replayed to later ones.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserEventService implements IUserEventService {
+
+    private final OllamaConfig ollamaConfig;
+    // A slow client misses events rather than holding up the others
+    private final Sinks.Many<UserEvent> events = Sinks.many().multicast().directBestEffort();
+
+    // Serialized, the sink does not accept concurrent emissions
+    @Override
+    public synchronized void publish(String username, String type, Object data) {
+        Sinks.EmitResult result = events.tryEmitNext(new UserEvent(username, ServerSentEvent.builder()
+                .event(type)
+                .data(data)
+                .build()));
+        if (result.isFailure() && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            log.debug("Dropped {} event for {}: {}", type, username, result);
+        }
+    }
+
+    @Override
+    public Flux<ServerSentEvent<Object>> subscribe(String username) {
+        Flux<ServerSentEvent<Object>> userEvents = events.asFlux()
+                .filter(event -> event.username().equals(username))
+                .map(UserEvent::event);
+        return OllamaStreamEvents.withHeartbeat(userEvents, Duration.ofSeconds(ollamaConfig.getSseHeartbeatSeconds()));
+    }
+
+    private record UserEvent(String username, ServerSentEvent<Object> event) {
+    }
+}
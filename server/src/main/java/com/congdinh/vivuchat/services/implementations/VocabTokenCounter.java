@@ -0,0 +1,84 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.TokenizerConfig;
+import com.congdinh.vivuchat.services.interfaces.ITokenCounter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts tokens with the model's own vocabulary when one is configured under
+ * app.tokenizer.vocabs. Vocabularies are loaded once, in the background from
+ * startup, and counts are estimated until theirs is ready. Tokenizers are keyed
+ * by the configured file, so other model names leave nothing behind. Models
+ * without a vocabulary, or whose file fails to load, use the heuristic estimate.
+ */
+@Slf4j
+@Primary
+@Component
+@RequiredArgsConstructor
+public class VocabTokenCounter implements ITokenCounter {
+
+    private final TokenizerConfig tokenizerConfig;
+    private final HeuristicTokenCounter heuristicTokenCounter;
+    private final ObjectMapper objectMapper;
+    private final Scheduler blockingScheduler;
+    private final Map<String, CompletableFuture<Optional<BpeTokenizer>>> tokenizers = new ConcurrentHashMap<>();
+
+    @Override
+    public int count(String model, CharSequence text) {
+        BpeTokenizer tokenizer = tokenizerFor(model);
+        return tokenizer != null ? tokenizer.count(text) : heuristicTokenCounter.count(model, text);
+    }
+
+    // Start reading every configured vocabulary rather than waiting for the first request
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        tokenizerConfig.getVocabs().values().forEach(vocab -> tokenizers.computeIfAbsent(vocab, this::loadAsync));
+    }
+
+    private BpeTokenizer tokenizerFor(String model) {
+        if (model == null) {
+            return null;
+        }
+        String vocab = tokenizerConfig.getVocabs().get(model);
+        if (vocab == null) {
+            vocab = tokenizerConfig.getVocabs().get(OllamaNode.normalizeModelName(model));
+        }
+        if (vocab == null) {
+            return null;
+        }
+        return tokenizers.computeIfAbsent(vocab, this::loadAsync).getNow(Optional.empty()).orElse(null);
+    }
+
+    // Only schedules the read, computeIfAbsent must not block on file I/O
+    private CompletableFuture<Optional<BpeTokenizer>> loadAsync(String vocab) {
+        return Mono.fromCallable(() -> load(vocab))
+                .subscribeOn(blockingScheduler)
+                .toFuture();
+    }
+
+    private Optional<BpeTokenizer> load(String vocab) {
+        long started = System.nanoTime();
+        try {
+            BpeTokenizer tokenizer = TokenizerVocabLoader.load(Path.of(vocab), objectMapper);
+            log.info("Loaded tokenizer from {} in {} ms", vocab, (System.nanoTime() - started) / 1_000_000);
+            return Optional.of(tokenizer);
+        } catch (Exception e) {
+            log.warn("Failed to load tokenizer from {}, using estimates: {}", vocab, e.toString());
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import com.congdinh.vivuchat.dtos.ollama.BatchCompletionResult;
+import reactor.core.publisher.Flux;
+
+import java.io.InputStream;
+
+public interface IBatchCompletionService {
+    // Read a JSON array or NDJSON stream of requests, results are emitted in completion order
+    Flux<BatchCompletionResult> run(InputStream requests, int parallelism);
+}
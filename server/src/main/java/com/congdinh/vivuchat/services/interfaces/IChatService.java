@@ -6,6 +6,8 @@ import com.congdinh.vivuchat.dtos.responses.ChatResponse;
 import com.congdinh.vivuchat.dtos.responses.ChatMessageResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.UUID;
@@ -17,4 +19,7 @@ public interface IChatService {
     void deleteChat(String username, UUID chatId);
     ChatMessageResponse sendMessage(String username, UUID chatId, MessageRequest request);
     List<ChatMessageResponse> getChatMessages(String username, UUID chatId);
+    Flux<ServerSentEvent<Object>> streamReply(String username, UUID chatId, MessageRequest request);
+    // Follow the reply currently being streamed for the chat, e.g. from a second tab
+    Flux<ServerSentEvent<Object>> attachReply(String username, UUID chatId);
 }
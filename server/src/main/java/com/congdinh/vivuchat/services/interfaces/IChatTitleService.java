@@ -0,0 +1,8 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import java.util.UUID;
+
+public interface IChatTitleService {
+    // Name the chat from its first exchange in the background, returns at once
+    void generateTitle(UUID chatId, String username);
+}
@@ -0,0 +1,22 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionRequest;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import reactor.core.publisher.Flux;
+
+import java.util.Optional;
+
+public interface ICompletionCache {
+    // Only reproducible requests are cached: temperature 0 and a fixed seed
+    boolean isCacheable(OllamaCompletionRequest request);
+    String keyOf(OllamaCompletionRequest request);
+
+    Optional<OllamaCompletionResponse> get(String key);
+    void put(String key, OllamaCompletionResponse response);
+
+    // Record a chunk stream and cache the assembled answer once it completes
+    Flux<OllamaCompletionResponse> record(String key, Flux<OllamaCompletionResponse> chunks);
+
+    // Replay a cached answer as synthetic streaming chunks
+    Flux<OllamaCompletionResponse> replay(OllamaCompletionResponse cached);
+}
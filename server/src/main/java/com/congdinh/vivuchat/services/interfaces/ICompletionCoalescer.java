@@ -0,0 +1,16 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+public interface ICompletionCoalescer {
+    // Stable key over model, messages and options; kind separates differently shaped results
+    String keyOf(String kind, OllamaCompletionRequest request);
+
+    // Identical in-flight calls share one upstream, cancelled once every subscriber has left
+    <T> Flux<T> coalesce(String key, Supplier<Flux<T>> upstream);
+    <T> Mono<T> coalesceMono(String key, Supplier<Mono<T>> upstream);
+}
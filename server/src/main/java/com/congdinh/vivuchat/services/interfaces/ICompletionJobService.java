@@ -0,0 +1,16 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import com.congdinh.vivuchat.dtos.requests.MessageRequest;
+import com.congdinh.vivuchat.dtos.responses.CompletionJobResponse;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+public interface ICompletionJobService {
+    // Save the user message and queue a job to answer it
+    CompletionJobResponse submit(String username, UUID chatId, MessageRequest request);
+    CompletionJobResponse getJob(String username, UUID jobId);
+    // Status events until the job finishes, the last one carries the reply
+    Flux<ServerSentEvent<Object>> subscribe(String username, UUID jobId);
+}
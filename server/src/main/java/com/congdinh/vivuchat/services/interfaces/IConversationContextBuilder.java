@@ -0,0 +1,15 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import com.congdinh.vivuchat.dtos.ollama.ConversationContext;
+import com.congdinh.vivuchat.entities.Chat;
+
+import java.util.List;
+import java.util.Map;
+
+public interface IConversationContextBuilder {
+    // Load the chat's history from the database, only as far back as the budget reaches
+    ConversationContext forChat(Chat chat);
+    
+    // Fit a client-supplied history into the model's budget
+    ConversationContext fit(String model, List<Map<String, String>> messages);
+}
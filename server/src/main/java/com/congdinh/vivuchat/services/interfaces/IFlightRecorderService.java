@@ -0,0 +1,11 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import java.nio.file.Path;
+
+public interface IFlightRecorderService {
+    // Whether the continuous recording is running
+    boolean isRecording();
+
+    // Write the recording's current contents to a temporary .jfr file, owned by the caller
+    Path dump();
+}
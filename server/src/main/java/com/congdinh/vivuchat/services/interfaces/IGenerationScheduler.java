@@ -0,0 +1,21 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+public interface IGenerationScheduler {
+    // Reactor context key that overrides the requester resolved from the current request
+    String REQUESTER_KEY = "vivuchat.requester";
+
+    // Run a generation once a slot for the model is free, queued fairly per requester
+    <T> Flux<T> schedule(String model, String requester, int cost, Supplier<Flux<T>> generation);
+    <T> Mono<T> scheduleMono(String model, String requester, int cost, Supplier<Mono<T>> generation);
+
+    int getQueueDepth(String model);
+    int getActiveCount(String model);
+    
+    // Drop the queue and meters of a deleted model once nothing runs or waits on it
+    void removeModel(String model);
+}
@@ -0,0 +1,20 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelDetails;
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface IModelRegistry {
+    // Cached catalogue, refreshed ahead of expiry in the background
+    Flux<OllamaModelResponse> listLocalModels();
+    Flux<OllamaModelResponse> listRunningModels();
+    Mono<OllamaModelDetails> getModelDetails(String model);
+    
+    // Answered from the last loaded catalogue, asks Ollama for the model until one has loaded
+    boolean isInstalled(String model);
+    Mono<Boolean> checkInstalled(String model);
+    
+    // Drop cached entries after the catalogue changed
+    void invalidate(String model);
+}
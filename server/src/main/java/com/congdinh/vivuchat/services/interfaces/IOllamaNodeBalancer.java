@@ -0,0 +1,29 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import com.congdinh.vivuchat.services.implementations.OllamaNode;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+
+public interface IOllamaNodeBalancer {
+    // Reactor context key holding the base URL of the node a call runs on, visible inside the call
+    String NODE_KEY = "vivuchat.ollama.node";
+
+    // All configured nodes, including ejected ones
+    List<OllamaNode> getNodes();
+
+    // Node with the requested model loaded and the fewest in-flight requests
+    OllamaNode select(String model);
+
+    // Run a generation on the selected node, tracking in-flight count and node health. Success marks
+    // the model as loaded there, so metadata and admin calls use executeOn(select(model), ...) instead
+    <T> Mono<T> execute(String model, Function<WebClient, Mono<T>> call);
+    <T> Flux<T> stream(String model, Function<WebClient, Flux<T>> call);
+
+    // Run a call on a specific node, used for operations that must reach every node
+    <T> Mono<T> executeOn(OllamaNode node, Function<WebClient, Mono<T>> call);
+    <T> Flux<T> streamOn(OllamaNode node, Function<WebClient, Flux<T>> call);
+}
@@ -3,18 +3,22 @@ package com.congdinh.vivuchat.services.interfaces;
 import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
 import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Map;
 
 public interface IOllamaService {
     // Legacy method without options for backward compatibility
-    default OllamaCompletionResponse generateCompletion(String model, List<Map<String, String>> messages) {
+    default Mono<OllamaCompletionResponse> generateCompletion(String model, List<Map<String, String>> messages) {
         return generateCompletion(model, messages, null);
     }
     
-    // Non-streaming response with options
-    OllamaCompletionResponse generateCompletion(String model, List<Map<String, String>> messages, Map<String, Object> options);
+    // Non-streaming response with options, completes without blocking the caller
+    Mono<OllamaCompletionResponse> generateCompletion(String model, List<Map<String, String>> messages, Map<String, Object> options);
+    
+    // Same as generateCompletion, but errors are signalled instead of replaced by an apology message
+    Mono<OllamaCompletionResponse> requestCompletion(String model, List<Map<String, String>> messages, Map<String, Object> options);
     
     // Streaming response for EventSource/SSE
     Flux<ServerSentEvent<Object>> streamCompletion(
@@ -23,4 +27,15 @@ public interface IOllamaService {
             boolean streaming,
             Map<String, Object> options
     );
+    
+    // Continues a streamCompletion generation after the given Last-Event-ID,
+    // throws ResourceNotFoundException once it is no longer buffered
+    Flux<ServerSentEvent<Object>> resumeCompletion(String lastEventId);
+    
+    // Streaming response as typed chunks, for callers that post-process the reply
+    Flux<OllamaCompletionResponse> streamChat(
+            String model,
+            List<Map<String, String>> messages,
+            Map<String, Object> options
+    );
 }
@@ -0,0 +1,26 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelDetails;
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelResponse;
+import com.congdinh.vivuchat.dtos.ollama.OllamaTransferProgress;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface IReactiveOllamaModelService {
+    // Non-blocking variants of IOllamaModelService, failures resolve to empty/false/"error: ..."
+    // except listLocalModels, which signals the error so it is not mistaken for no models
+    Flux<OllamaModelResponse> listLocalModels();
+    Flux<OllamaModelResponse> listRunningModels();
+    Mono<OllamaModelDetails> getModelDetails(String model);
+    Mono<Boolean> copyModel(String source, String destination);
+    Mono<Boolean> deleteModel(String model);
+    
+    Mono<String> pullModel(String model, boolean insecure, boolean stream);
+    Mono<String> pushModel(String model, boolean insecure, boolean stream);
+    
+    // Progress lines as Ollama reports them, a failure ends the stream with an error line.
+    // Concurrent pulls of the same model share one upstream pull, cancelled shortly after
+    // its last caller leaves.
+    Flux<OllamaTransferProgress> pullModelProgress(String model, boolean insecure);
+    Flux<OllamaTransferProgress> pushModelProgress(String model, boolean insecure);
+}
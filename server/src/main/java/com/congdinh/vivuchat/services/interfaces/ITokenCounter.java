@@ -0,0 +1,6 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+public interface ITokenCounter {
+    // Number of tokens the model's tokenizer produces for the text
+    int count(String model, CharSequence text);
+}
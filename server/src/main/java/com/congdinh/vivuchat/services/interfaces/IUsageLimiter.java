@@ -0,0 +1,29 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface IUsageLimiter {
+    // Reactor context key telling OllamaService how a generation is admitted, REQUEST when absent
+    String ADMISSION_KEY = "vivuchat.admission";
+
+    enum Admission {
+        // Counted as one request against the rate, and checked against the token quota
+        REQUEST,
+        // Part of work already admitted as a whole (batch lines): only the token quota is checked
+        ADMITTED,
+        // Internal work such as chat titles: neither limited nor charged to the user
+        SYSTEM
+    }
+
+    // Count one request against the requester's limits, or fail with RateLimitExceededException.
+    // Roles may be null when unknown, they are then looked up once for the requester.
+    Mono<Void> admit(String requester, Collection<String> roles);
+
+    // Fail with RateLimitExceededException if the daily token quota is used up, without counting a request
+    Mono<Void> checkQuota(String requester, Collection<String> roles);
+
+    // Add generated tokens (eval_count) to the requester's daily total
+    void recordTokens(String requester, long tokens);
+}
@@ -0,0 +1,15 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import com.congdinh.vivuchat.dtos.admin.UsageReportResponse;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+
+import java.time.Instant;
+
+public interface IUsageMeter {
+    // Add a finished completion's counts and timings to the current minute's rollup
+    void record(String requester, String model, OllamaCompletionResponse response);
+
+    // Usage over [from, to) from the stored rollups, granularity is total, minute, hour or day.
+    // Username and model filters may be null.
+    UsageReportResponse report(Instant from, Instant to, String username, String model, String granularity);
+}
@@ -0,0 +1,12 @@
+package com.congdinh.vivuchat.services.interfaces;
+
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+public interface IUserEventService {
+    // Push an event to every open event stream of the user (dropped if none is open)
+    void publish(String username, String type, Object data);
+    
+    // The user's events as SSE, for as long as the client stays connected
+    Flux<ServerSentEvent<Object>> subscribe(String username);
+}
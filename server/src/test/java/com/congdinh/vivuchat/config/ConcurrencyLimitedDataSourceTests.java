@@ -0,0 +1,61 @@
+package com.congdinh.vivuchat.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConcurrencyLimitedDataSourceTests {
+
+    private final DataSource target = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+    private final ConcurrencyLimitedDataSource dataSource = new ConcurrencyLimitedDataSource(target, 1, 50);
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(target.getConnection()).thenReturn(connection);
+    }
+
+    @Test
+    void callersBeyondThePermitsTimeOut() throws SQLException {
+        Connection first = dataSource.getConnection();
+
+        assertThatThrownBy(dataSource::getConnection)
+                .isInstanceOf(SQLTransientConnectionException.class);
+
+        // Closing gives the permit back
+        first.close();
+        verify(connection).close();
+        assertThat(dataSource.getConnection()).isNotNull();
+    }
+
+    @Test
+    void closingTwiceReleasesOnePermit() throws SQLException {
+        Connection first = dataSource.getConnection();
+        first.close();
+        first.close();
+
+        dataSource.getConnection();
+        assertThatThrownBy(dataSource::getConnection)
+                .isInstanceOf(SQLTransientConnectionException.class);
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    void failedConnectionGivesThePermitBack() throws SQLException {
+        when(target.getConnection()).thenThrow(new SQLException("pool exhausted")).thenReturn(connection);
+
+        assertThatThrownBy(dataSource::getConnection).hasMessage("pool exhausted");
+        assertThat(dataSource.getConnection()).isNotNull();
+    }
+}
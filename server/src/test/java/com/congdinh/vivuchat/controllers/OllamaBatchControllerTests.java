@@ -0,0 +1,85 @@
+package com.congdinh.vivuchat.controllers;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.BatchCompletionResult;
+import com.congdinh.vivuchat.exceptions.GlobalExceptionHandler;
+import com.congdinh.vivuchat.exceptions.RateLimitExceededException;
+import com.congdinh.vivuchat.services.interfaces.IBatchCompletionService;
+import com.congdinh.vivuchat.services.interfaces.IUsageLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class OllamaBatchControllerTests {
+
+    private static final String BODY = """
+            [{"model": "test:latest", "messages": [{"role": "user", "content": "Xin chao"}]}]
+            """;
+
+    private final IBatchCompletionService batchCompletionService = mock(IBatchCompletionService.class);
+    private final IUsageLimiter usageLimiter = mock(IUsageLimiter.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new OllamaBatchController(batchCompletionService, new OllamaConfig(), usageLimiter))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void requestThreadIsReleasedWhileAdmissionIsPending() throws Exception {
+        Sinks.Empty<Void> admission = Sinks.empty();
+        when(usageLimiter.admit(anyString(), any())).thenReturn(admission.asMono());
+        when(batchCompletionService.run(any(), anyInt()))
+                .thenReturn(Flux.just(BatchCompletionResult.builder().index(0).error("boom").build()));
+
+        // perform() returns while the limiter is still deciding: the handler did not block on it
+        MvcResult result = mockMvc.perform(post("/api/ollama/batch").contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        verify(batchCompletionService, never()).run(any(), anyInt());
+
+        admission.tryEmitEmpty();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        assertThat(result.getResponse().getContentAsString()).contains("\"index\":0");
+    }
+
+    @Test
+    void overLimitCallerIsAnswered429BeforeTheBatchRuns() throws Exception {
+        when(usageLimiter.admit(anyString(), any()))
+                .thenReturn(Mono.error(new RateLimitExceededException("Rate limit exceeded", 30)));
+
+        MvcResult result = mockMvc.perform(post("/api/ollama/batch").contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "30"));
+        verify(batchCompletionService, never()).run(any(), anyInt());
+    }
+}
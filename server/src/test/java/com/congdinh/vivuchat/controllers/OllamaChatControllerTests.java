@@ -0,0 +1,130 @@
+package com.congdinh.vivuchat.controllers;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.ConversationContext;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import com.congdinh.vivuchat.exceptions.GlobalExceptionHandler;
+import com.congdinh.vivuchat.exceptions.QueueFullException;
+import com.congdinh.vivuchat.exceptions.RateLimitExceededException;
+import com.congdinh.vivuchat.services.interfaces.IConversationContextBuilder;
+import com.congdinh.vivuchat.services.interfaces.IModelRegistry;
+import com.congdinh.vivuchat.services.interfaces.IOllamaService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class OllamaChatControllerTests {
+
+    private static final String BODY = """
+            {"model": "test:latest", "messages": [{"role": "user", "content": "Xin chao"}]}
+            """;
+
+    private final IOllamaService ollamaService = mock(IOllamaService.class);
+    private final IConversationContextBuilder contextBuilder = mock(IConversationContextBuilder.class);
+    private final IModelRegistry modelRegistry = mock(IModelRegistry.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        when(contextBuilder.fit(any(), any())).thenAnswer(invocation -> ConversationContext.builder()
+                .messages(invocation.getArgument(1))
+                .build());
+        when(modelRegistry.isInstalled("test:latest")).thenReturn(true);
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new OllamaChatController(ollamaService, new OllamaConfig(), contextBuilder, modelRegistry))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void requestThreadIsReleasedWhileTheCompletionRuns() throws Exception {
+        Sinks.One<OllamaCompletionResponse> completion = Sinks.one();
+        when(ollamaService.generateCompletion(anyString(), anyList(), any())).thenReturn(completion.asMono());
+
+        // perform() returns while the completion is still pending: the handler did not block
+        MvcResult result = mockMvc.perform(post("/api/ollama/chat").contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(result.getResponse().isCommitted()).isFalse();
+
+        completion.tryEmitValue(OllamaCompletionResponse.builder()
+                .model("test:latest")
+                .message(new OllamaCompletionResponse.OllamaMessage("assistant", "Chao ban"))
+                .done(true)
+                .build());
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message.content").value("Chao ban"));
+    }
+
+    @Test
+    void fullModelQueueIsAnswered503WithRetryAfter() throws Exception {
+        when(ollamaService.generateCompletion(anyString(), anyList(), any()))
+                .thenReturn(Mono.error(new QueueFullException("Too many pending requests", 7)));
+
+        MvcResult result = mockMvc.perform(post("/api/ollama/chat").contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "7"));
+    }
+
+    @Test
+    void rateLimitIsAnswered429WithRetryAfter() throws Exception {
+        when(ollamaService.generateCompletion(anyString(), anyList(), any()))
+                .thenReturn(Mono.error(new RateLimitExceededException("Rate limit exceeded", 30)));
+
+        MvcResult result = mockMvc.perform(post("/api/ollama/chat").contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "30"));
+    }
+
+    @Test
+    void otherFailuresFallBackToTheErrorReply() throws Exception {
+        when(ollamaService.generateCompletion(anyString(), anyList(), any()))
+                .thenReturn(Mono.error(new IllegalStateException("node down")));
+
+        MvcResult result = mockMvc.perform(post("/api/ollama/chat").contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.done").value(true));
+    }
+
+    @Test
+    void unknownModelIsAnswered404BeforeAnythingRuns() throws Exception {
+        mockMvc.perform(post("/api/ollama/chat").contentType(MediaType.APPLICATION_JSON)
+                        .content(BODY.replace("test:latest", "made-up")))
+                .andExpect(status().isNotFound());
+
+        verifyNoInteractions(contextBuilder, ollamaService);
+    }
+}
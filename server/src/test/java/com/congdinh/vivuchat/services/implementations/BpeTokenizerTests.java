@@ -0,0 +1,115 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+class BpeTokenizerTests {
+
+    // GPT-2 style vocabulary: 'Ġ' is the byte-level spelling of a space
+    private static final List<String> BYTE_LEVEL_TOKENS = List.of(
+            "h", "e", "l", "o", "Ġ", "w", "r", "d", "he", "ll", "hell", "hello", "Ġw");
+    private static final List<String[]> BYTE_LEVEL_MERGES = List.of(
+            new String[]{"h", "e"},
+            new String[]{"l", "l"},
+            new String[]{"he", "ll"},
+            new String[]{"hell", "o"},
+            new String[]{"Ġ", "w"});
+
+    @Test
+    void byteLevelAppliesRankedMergesWithinPreTokenizedWords() {
+        BpeTokenizer tokenizer = byteLevel();
+
+        assertThat(tokenizer.count("hello")).isEqualTo(1);
+        // "hello" + "Ġw" "o" "r" "l" "d"
+        assertThat(tokenizer.count("hello world")).isEqualTo(6);
+        // One pre-tokenized piece, merged down to its two "hello"s
+        assertThat(tokenizer.count("hellohello")).isEqualTo(2);
+    }
+
+    @Test
+    void equalRanksMergeLeftmostFirst() {
+        BpeTokenizer tokenizer = byteLevel();
+
+        // "ll" "ll" "l", never "l" "ll" "ll"
+        assertThat(tokenizer.count("lllll")).isEqualTo(3);
+        // "hell" is only reachable once "he" and "ll" are both merged
+        assertThat(tokenizer.count("hellhell")).isEqualTo(2);
+    }
+
+    @Test
+    void longPasteWithoutSpacesCountsInLinearTime() {
+        BpeTokenizer tokenizer = byteLevel();
+        String paste = "he".repeat(100_000);
+
+        int count = assertTimeout(Duration.ofSeconds(2), () -> tokenizer.count(paste));
+
+        // One "he" per pair, plus at most one token for each 1024-symbol cut
+        assertThat(count).isBetween(100_000, 100_000 + paste.length() / 1000);
+    }
+
+    @Test
+    void byteLevelCountsUnknownCharactersPerUtf8Byte() {
+        BpeTokenizer tokenizer = byteLevel();
+
+        // "h" plus the two UTF-8 bytes of "é"
+        assertThat(tokenizer.count("hé")).isEqualTo(3);
+    }
+
+    @Test
+    void emptyTextHasNoTokens() {
+        assertThat(byteLevel().count("")).isZero();
+        assertThat(byteLevel().count(null)).isZero();
+    }
+
+    @Test
+    void sentencePieceMergesWordsWithTheDummySpacePrefix() {
+        BpeTokenizer tokenizer = sentencePiece();
+
+        assertThat(tokenizer.count("hi")).isEqualTo(1);
+        assertThat(tokenizer.count("hi hi")).isEqualTo(2);
+    }
+
+    @Test
+    void sentencePieceFallsBackToByteTokensThenUnknown() {
+        BpeTokenizer tokenizer = sentencePiece();
+
+        // "▁hi" plus the <0x41> byte token for "A"
+        assertThat(tokenizer.count("hiA")).isEqualTo(2);
+        // "▁" plus <unk>: there is no byte token for "x"
+        assertThat(tokenizer.count("x")).isEqualTo(2);
+    }
+
+    @Test
+    void sentencePieceLongWordIsCutInsteadOfMergedWhole() {
+        BpeTokenizer tokenizer = sentencePiece();
+        String paste = "hi".repeat(50_000);
+
+        int count = assertTimeout(Duration.ofSeconds(2), () -> tokenizer.count(paste));
+
+        // "▁hi" then "h" "i" for every other pair: only the prefix merges
+        assertThat(count).isEqualTo(1 + 2 * 49_999);
+    }
+
+    private static BpeTokenizer byteLevel() {
+        Map<String, Integer> vocab = new HashMap<>();
+        for (int id = 0; id < BYTE_LEVEL_TOKENS.size(); id++) {
+            vocab.put(BYTE_LEVEL_TOKENS.get(id), id);
+        }
+        return BpeTokenizer.byteLevel(vocab, BYTE_LEVEL_MERGES, BpeTokenizer.preTokenizerFor(null));
+    }
+
+    private static BpeTokenizer sentencePiece() {
+        List<String> tokens = List.of("<unk>", "▁", "h", "i", "▁h", "▁hi", "<0x41>");
+        float[] scores = {0, 0, 0, 0, -1, -0.5f, 0};
+        // <unk> is type 2 (unknown) and <0x41> type 6 (byte), neither takes part in merges
+        int[] types = {2, 1, 1, 1, 1, 1, 6};
+        return BpeTokenizer.sentencePiece(tokens, scores, types, 0);
+    }
+}
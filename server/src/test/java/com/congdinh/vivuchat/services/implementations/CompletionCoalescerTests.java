@@ -0,0 +1,116 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompletionCoalescerTests {
+
+    private final CompletionCoalescer coalescer = new CompletionCoalescer(new SimpleMeterRegistry());
+
+    @Test
+    void identicalCallsShareOneUpstreamAndLateJoinersGetReplay() {
+        AtomicInteger calls = new AtomicInteger();
+        Sinks.Many<String> source = Sinks.many().unicast().onBackpressureBuffer();
+        Supplier<Flux<String>> upstream = () -> {
+            calls.incrementAndGet();
+            return source.asFlux();
+        };
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+
+        coalescer.coalesce("key", upstream).subscribe(first::add);
+        source.tryEmitNext("Xin ");
+        coalescer.coalesce("key", upstream).subscribe(second::add);
+        source.tryEmitNext("chào");
+        source.tryEmitComplete();
+
+        assertThat(calls).hasValue(1);
+        assertThat(first).containsExactly("Xin ", "chào");
+        assertThat(second).containsExactly("Xin ", "chào");
+    }
+
+    @Test
+    void finishedCallIsNotJoined() {
+        coalescer.coalesce("key", () -> Flux.just("old")).blockLast();
+
+        assertThat(coalescer.coalesce("key", () -> Flux.just("new")).collectList().block())
+                .containsExactly("new");
+    }
+
+    @Test
+    void upstreamKeepsRunningUntilTheLastSubscriberCancels() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Sinks.Many<String> source = Sinks.many().multicast().onBackpressureBuffer();
+        Supplier<Flux<String>> upstream = () -> source.asFlux().doOnCancel(() -> cancelled.set(true));
+
+        Disposable first = coalescer.coalesce("key", upstream).subscribe();
+        Disposable second = coalescer.coalesce("key", upstream).subscribe();
+
+        first.dispose();
+        assertThat(cancelled).isFalse();
+
+        second.dispose();
+        assertThat(cancelled).isTrue();
+        // The cancelled call is gone, the next one starts afresh
+        assertThat(coalescer.coalesce("key", () -> Flux.just("again")).collectList().block())
+                .containsExactly("again");
+    }
+
+    @Test
+    void coalesceMonoSharesTheResult() {
+        AtomicInteger calls = new AtomicInteger();
+        Sinks.One<String> source = Sinks.one();
+        Supplier<Mono<String>> upstream = () -> {
+            calls.incrementAndGet();
+            return source.asMono();
+        };
+        List<String> results = new ArrayList<>();
+
+        coalescer.coalesceMono("key", upstream).subscribe(results::add);
+        coalescer.coalesceMono("key", upstream).subscribe(results::add);
+        source.tryEmitValue("done");
+
+        assertThat(calls).hasValue(1);
+        assertThat(results).containsExactly("done", "done");
+    }
+
+    @Test
+    void keyIgnoresOptionOrderButNotKindOrContent() {
+        Map<String, Object> options = new LinkedHashMap<>();
+        options.put("temperature", 0.1);
+        options.put("seed", 42);
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("seed", 42);
+        reordered.put("temperature", 0.1);
+
+        String key = coalescer.keyOf("stream", request("hello", options));
+
+        assertThat(coalescer.keyOf("stream", request("hello", reordered))).isEqualTo(key);
+        assertThat(coalescer.keyOf("call", request("hello", options))).isNotEqualTo(key);
+        assertThat(coalescer.keyOf("stream", request("hello!", options))).isNotEqualTo(key);
+    }
+
+    private static OllamaCompletionRequest request(String content, Map<String, Object> options) {
+        return OllamaCompletionRequest.builder()
+                .model("test:latest")
+                .messages(List.of(new OllamaCompletionRequest.OllamaMessage("user", content)))
+                .stream(true)
+                .options(options)
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.ConversationContext;
+import com.congdinh.vivuchat.repositories.IMessageRepository;
+import com.congdinh.vivuchat.services.interfaces.ITokenCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ConversationContextBuilderTests {
+
+    private static final String MODEL = "test:latest";
+
+    // One token per character, plus the builder's 4 tokens of overhead per message
+    private final ITokenCounter tokenCounter = (model, text) -> text != null ? text.length() : 0;
+    private final OllamaConfig ollamaConfig = new OllamaConfig();
+    private ConversationContextBuilder builder;
+
+    @BeforeEach
+    void setUp() {
+        ollamaConfig.setReplyReserveTokens(40);
+        builder = new ConversationContextBuilder(mock(IMessageRepository.class), tokenCounter, ollamaConfig);
+    }
+
+    @Test
+    void pinsSystemPromptFirstExchangeAndLatestMessage() {
+        // 60 tokens of prompt budget, every message below costs 10
+        ollamaConfig.setContextTokens(100);
+
+        ConversationContext context = builder.fit(MODEL, List.of(
+                message("system", "system"),
+                message("user", "user-1"),
+                message("assistant", "reply1"),
+                message("user", "user-2"),
+                message("assistant", "reply2"),
+                message("user", "user-3"),
+                message("assistant", "reply3"),
+                message("user", "user-4")));
+
+        assertThat(contents(context)).containsExactly("system", "user-1", "reply1", "user-3", "reply3", "user-4");
+        assertThat(context.getPromptTokens()).isEqualTo(60);
+        assertThat(context.getDroppedMessages()).isEqualTo(2);
+    }
+
+    @Test
+    void firstExchangeIsSkippedWhenItDoesNotFitAsAWhole() {
+        // 30 tokens: system prompt and latest message use 20, the first exchange would need 20 more
+        ollamaConfig.setContextTokens(70);
+
+        ConversationContext context = builder.fit(MODEL, List.of(
+                message("system", "system"),
+                message("user", "user-1"),
+                message("assistant", "reply1"),
+                message("user", "user-2"),
+                message("assistant", "reply2"),
+                message("user", "user-3")));
+
+        assertThat(contents(context)).containsExactly("system", "reply2", "user-3");
+        assertThat(context.getPromptTokens()).isEqualTo(30);
+    }
+
+    @Test
+    void latestMessageIsSentEvenOverBudget() {
+        ollamaConfig.setContextTokens(41);
+
+        ConversationContext context = builder.fit(MODEL, List.of(
+                message("user", "user-1"),
+                message("assistant", "reply1"),
+                message("user", "a question far longer than the budget")));
+
+        assertThat(contents(context)).containsExactly("a question far longer than the budget");
+    }
+
+    @Test
+    void perModelContextSizeOverridesTheDefault() {
+        ollamaConfig.setContextTokens(41);
+        ollamaConfig.getModelContextTokens().put(MODEL, 100);
+
+        ConversationContext context = builder.fit(MODEL, List.of(
+                message("user", "user-1"),
+                message("assistant", "reply1"),
+                message("user", "user-2")));
+
+        assertThat(context.getDroppedMessages()).isZero();
+    }
+
+    @Test
+    void reasoningIsDroppedFromAllButTheLatestAssistantTurn() {
+        ollamaConfig.setContextTokens(1000);
+
+        ConversationContext context = builder.fit(MODEL, List.of(
+                message("user", "q1"),
+                message("assistant", "<think>old reasoning</think>\n\na1"),
+                message("user", "q2"),
+                message("assistant", "<think>cut off mid-reasoning"),
+                message("user", "q3"),
+                message("assistant", "<think>latest</think>a3"),
+                message("user", "q4")));
+
+        assertThat(contents(context)).containsExactly(
+                "q1", "a1", "q2", "", "q3", "<think>latest</think>a3", "q4");
+    }
+
+    @Test
+    void emptyHistoryGivesEmptyContext() {
+        assertThat(builder.fit(MODEL, null).getMessages()).isEmpty();
+        assertThat(builder.fit(MODEL, List.of()).getMessages()).isEmpty();
+    }
+
+    private static Map<String, String> message(String role, String content) {
+        return Map.of("role", role, "content", content);
+    }
+
+    private static List<String> contents(ConversationContext context) {
+        return context.getMessages().stream().map(message -> message.get("content")).toList();
+    }
+}
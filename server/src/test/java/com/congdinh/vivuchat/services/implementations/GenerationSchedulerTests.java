@@ -0,0 +1,153 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.exceptions.QueueFullException;
+import com.congdinh.vivuchat.services.interfaces.IOllamaNodeBalancer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class GenerationSchedulerTests {
+
+    private static final String MODEL = "test:latest";
+
+    private final OllamaConfig ollamaConfig = new OllamaConfig();
+    private final List<String> started = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GenerationScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        // One slot, so every generation after the first has to queue
+        ollamaConfig.getModelConcurrency().put(MODEL, 1);
+        scheduler = new GenerationScheduler(ollamaConfig, mock(IOllamaNodeBalancer.class), meterRegistry);
+    }
+
+    @Test
+    void waitingUsersAreServedRoundRobin() {
+        Sinks.One<String> holder = occupySlot();
+        generate("alice");
+        generate("alice");
+        generate("alice");
+        generate("bob");
+        assertThat(scheduler.getActiveCount(MODEL)).isEqualTo(1);
+        assertThat(scheduler.getQueueDepth(MODEL)).isEqualTo(4);
+
+        holder.tryEmitValue("done");
+
+        // Bob is not stuck behind all of Alice's requests
+        assertThat(started).containsExactly("alice", "bob", "alice", "alice");
+        assertThat(scheduler.getQueueDepth(MODEL)).isZero();
+        assertThat(scheduler.getActiveCount(MODEL)).isZero();
+    }
+
+    @Test
+    void expensiveRequestsWaitForTheirDeficit() {
+        Sinks.One<String> holder = occupySlot();
+        scheduler.scheduleMono(MODEL, "alice", 5, () -> record("alice")).subscribe();
+        generate("bob");
+        generate("bob");
+        generate("bob");
+
+        holder.tryEmitValue("done");
+
+        // Alice queued first, but her request costs five quanta: Bob's cheap ones run while
+        // her deficit builds up
+        assertThat(started).containsExactly("bob", "bob", "alice", "bob");
+    }
+
+    @Test
+    void fullQueueIsRejectedWithRetryAfter() {
+        ollamaConfig.setMaxQueuedPerModel(1);
+        occupySlot();
+        generate("alice");
+
+        StepVerifier.create(scheduler.scheduleMono(MODEL, "bob", 1, () -> record("bob")))
+                .expectErrorSatisfies(error -> {
+                    assertThat(error).isInstanceOf(QueueFullException.class);
+                    assertThat(((QueueFullException) error).getRetryAfterSeconds()).isPositive();
+                })
+                .verify();
+        assertThat(started).isEmpty();
+    }
+
+    @Test
+    void cancelledWaiterLeavesTheQueueAndNeverRuns() {
+        Sinks.One<String> holder = occupySlot();
+        Disposable waiting = scheduler.scheduleMono(MODEL, "alice", 1, () -> record("alice")).subscribe();
+        generate("bob");
+
+        waiting.dispose();
+        assertThat(scheduler.getQueueDepth(MODEL)).isEqualTo(1);
+
+        holder.tryEmitValue("done");
+        assertThat(started).containsExactly("bob");
+    }
+
+    @Test
+    void failedGenerationReleasesItsSlot() {
+        scheduler.scheduleMono(MODEL, "alice", 1, () -> Mono.error(new IllegalStateException("boom")))
+                .onErrorResume(e -> Mono.empty())
+                .subscribe();
+        generate("bob");
+
+        assertThat(started).containsExactly("bob");
+        assertThat(scheduler.getActiveCount(MODEL)).isZero();
+    }
+
+    @Test
+    void removedModelDropsItsQueueAndMeters() {
+        generate("alice");
+        assertThat(meterRegistry.find("vivuchat.scheduler.active").tag("model", MODEL).gauge()).isNotNull();
+
+        scheduler.removeModel(MODEL);
+
+        assertThat(meterRegistry.find("vivuchat.scheduler.active").tag("model", MODEL).gauge()).isNull();
+        assertThat(meterRegistry.find("vivuchat.scheduler.wait").tag("model", MODEL).timer()).isNull();
+    }
+
+    @Test
+    void busyModelIsRemovedOnceItsLastGenerationEnds() {
+        Sinks.One<String> holder = occupySlot();
+        generate("alice");
+
+        scheduler.removeModel(MODEL);
+        assertThat(scheduler.getQueueDepth(MODEL)).isEqualTo(1);
+
+        holder.tryEmitValue("done");
+        assertThat(started).containsExactly("alice");
+        assertThat(meterRegistry.find("vivuchat.scheduler.active").tag("model", MODEL).gauge()).isNull();
+
+        // A later generation gets a fresh queue
+        generate("bob");
+        assertThat(started).containsExactly("alice", "bob");
+    }
+
+    // A generation that holds the only slot until the returned sink completes
+    private Sinks.One<String> occupySlot() {
+        Sinks.One<String> holder = Sinks.one();
+        scheduler.scheduleMono(MODEL, "holder", 1, holder::asMono).subscribe();
+        return holder;
+    }
+
+    private void generate(String requester) {
+        scheduler.scheduleMono(MODEL, requester, 1, () -> record(requester)).subscribe();
+    }
+
+    private Mono<String> record(String requester) {
+        return Mono.fromCallable(() -> {
+            started.add(requester);
+            return requester;
+        });
+    }
+}
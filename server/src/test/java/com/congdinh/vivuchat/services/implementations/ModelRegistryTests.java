@@ -0,0 +1,73 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelDetails;
+import com.congdinh.vivuchat.dtos.ollama.OllamaModelResponse;
+import com.congdinh.vivuchat.services.interfaces.IReactiveOllamaModelService;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ModelRegistryTests {
+
+    private final IReactiveOllamaModelService modelService = mock(IReactiveOllamaModelService.class);
+    private final ModelRegistry registry = new ModelRegistry(modelService, new OllamaConfig());
+
+    @Test
+    void emptyTagListReplacesTheCatalogue() {
+        when(modelService.listLocalModels()).thenReturn(Flux.just(model("llama3:latest")));
+        assertThat(registry.listLocalModels().collectList().block()).hasSize(1);
+        assertThat(registry.isInstalled("llama3")).isTrue();
+
+        // Every model was deleted, the catalogue is now empty rather than stale
+        when(modelService.listLocalModels()).thenReturn(Flux.empty());
+        registry.refreshCatalogue();
+
+        assertThat(registry.listLocalModels().collectList().block()).isEmpty();
+        assertThat(registry.isInstalled("llama3")).isFalse();
+    }
+
+    @Test
+    void failedRefreshKeepsTheCatalogue() {
+        when(modelService.listLocalModels()).thenReturn(Flux.just(model("llama3:latest")));
+        assertThat(registry.listLocalModels().collectList().block()).hasSize(1);
+
+        when(modelService.listLocalModels()).thenReturn(Flux.error(new IOException("Connection refused")));
+        registry.refreshCatalogue();
+
+        assertThat(registry.listLocalModels().collectList().block())
+                .extracting(OllamaModelResponse::getName)
+                .containsExactly("llama3:latest");
+        assertThat(registry.isInstalled("llama3")).isTrue();
+    }
+
+    @Test
+    void failedFirstLoadListsNothing() {
+        when(modelService.listLocalModels()).thenReturn(Flux.error(new IOException("Connection refused")));
+        when(modelService.getModelDetails("llama3")).thenReturn(Mono.empty());
+
+        assertThat(registry.listLocalModels().collectList().block()).isEmpty();
+        assertThat(registry.isInstalled("llama3")).isFalse();
+    }
+
+    @Test
+    void beforeTheFirstLoadModelsAreCheckedWithOllama() {
+        when(modelService.listLocalModels()).thenReturn(Flux.error(new IOException("Connection refused")));
+        when(modelService.getModelDetails("llama3")).thenReturn(Mono.just(new OllamaModelDetails()));
+        when(modelService.getModelDetails("missing")).thenReturn(Mono.empty());
+        registry.refreshCatalogue();
+
+        assertThat(registry.isInstalled("llama3")).isTrue();
+        assertThat(registry.isInstalled("missing")).isFalse();
+    }
+
+    private static OllamaModelResponse model(String name) {
+        return OllamaModelResponse.builder().name(name).model(name).build();
+    }
+}
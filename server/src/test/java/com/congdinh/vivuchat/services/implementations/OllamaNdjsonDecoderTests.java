@@ -0,0 +1,90 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OllamaNdjsonDecoderTests {
+
+    private static final String STREAM = """
+            {"model":"m","created_at":"t","message":{"role":"assistant","content":"Xin "},"done":false}
+            {"model":"m","created_at":"t","message":{"role":"assistant","content":"chào"},"done":false}
+            {"model":"m","created_at":"t","message":{"role":"assistant","content":""},"done":true,"done_reason":"stop","context":[1,2,3],"total_duration":900,"load_duration":100,"prompt_eval_count":12,"prompt_eval_duration":200,"eval_count":2,"eval_duration":600}
+            """;
+
+    private final OllamaNdjsonDecoder decoder = new OllamaNdjsonDecoder();
+
+    @Test
+    void decodesLinesSplitAcrossBuffersOfAnySize() {
+        byte[] bytes = STREAM.getBytes(StandardCharsets.UTF_8);
+        // Cuts land inside field names, numbers and the two bytes of "à"
+        for (int size = 1; size <= bytes.length; size++) {
+            List<OllamaCompletionResponse> chunks = decoder.decode(buffers(bytes, size)).collectList().block();
+
+            assertThat(chunks).as("buffers of %d bytes", size).hasSize(3);
+            assertThat(chunks.get(0).getMessage().getContent()).isEqualTo("Xin ");
+            assertThat(chunks.get(1).getMessage().getContent()).isEqualTo("chào");
+            assertThat(chunks.get(1).isDone()).isFalse();
+        }
+    }
+
+    @Test
+    void readsTheFinalStatsAndSkipsNestedArrays() {
+        StepVerifier.create(decoder.decode(buffers(STREAM.getBytes(StandardCharsets.UTF_8), 7)))
+                .expectNextCount(2)
+                .assertNext(last -> {
+                    assertThat(last.isDone()).isTrue();
+                    assertThat(last.getDone_reason()).isEqualTo("stop");
+                    assertThat(last.getTotal_duration()).isEqualTo(900);
+                    assertThat(last.getLoad_duration()).isEqualTo(100);
+                    assertThat(last.getPrompt_eval_count()).isEqualTo(12);
+                    assertThat(last.getPrompt_eval_duration()).isEqualTo(200);
+                    assertThat(last.getEval_count()).isEqualTo(2);
+                    assertThat(last.getEval_duration()).isEqualTo(600);
+                    assertThat(last.getContext()).isNull();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void errorFieldFailsTheStream() {
+        String stream = """
+                {"message":{"role":"assistant","content":"partial"},"done":false}
+                {"error":"model runner has unexpectedly stopped"}
+                """;
+
+        StepVerifier.create(decoder.decode(buffers(stream.getBytes(StandardCharsets.UTF_8), 16)))
+                .assertNext(chunk -> assertThat(chunk.getMessage().getContent()).isEqualTo("partial"))
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOf(IllegalStateException.class)
+                        .hasMessageContaining("model runner has unexpectedly stopped"))
+                .verify();
+    }
+
+    @Test
+    void malformedJsonFailsTheStream() {
+        StepVerifier.create(decoder.decode(buffers("{\"done\":tru}\n".getBytes(StandardCharsets.UTF_8), 64)))
+                .expectError()
+                .verify();
+    }
+
+    // The bytes cut into buffers of the given size, as the network would deliver them
+    private static Flux<DataBuffer> buffers(byte[] bytes, int size) {
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int from = 0; from < bytes.length; from += size) {
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(
+                    Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + size))));
+        }
+        return Flux.fromIterable(buffers);
+    }
+}
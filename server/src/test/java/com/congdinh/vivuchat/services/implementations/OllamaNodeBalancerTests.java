@@ -0,0 +1,229 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the balancer against stub Ollama nodes served by the JDK's HTTP server.
+ */
+class OllamaNodeBalancerTests {
+
+    private static final String MODEL = "llama3";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final OllamaConfig ollamaConfig = new OllamaConfig();
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ollamaConfig.setNodeFailureThreshold(2);
+        ollamaConfig.setNodeEjectionSeconds(60);
+    }
+
+    @AfterEach
+    void stopStubs() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void prefersTheNodeWithTheModelLoaded() throws Exception {
+        ollamaConfig.setNodes(List.of(
+                stub("{\"models\": []}", 200),
+                stub("{\"models\": [{\"name\": \"llama3:latest\"}]}", 200)));
+        OllamaNodeBalancer balancer = balancer();
+        OllamaNode loaded = balancer.getNodes().get(1);
+
+        balancer.refreshRunningModels();
+        awaitLoaded(loaded);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(balancer.select(MODEL)).isSameAs(loaded);
+        }
+        // Without the model anywhere, the least busy node wins
+        loaded.getInFlight().incrementAndGet();
+        assertThat(balancer.select("other")).isSameAs(balancer.getNodes().get(0));
+    }
+
+    @Test
+    void picksTheNodeWithFewestRequestsInFlight() throws Exception {
+        ollamaConfig.setNodes(List.of(stub("{}", 200), stub("{}", 200), stub("{}", 200)));
+        OllamaNodeBalancer balancer = balancer();
+        balancer.getNodes().get(0).getInFlight().set(3);
+        balancer.getNodes().get(1).getInFlight().set(1);
+        balancer.getNodes().get(2).getInFlight().set(2);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(balancer.select(MODEL)).isSameAs(balancer.getNodes().get(1));
+        }
+    }
+
+    @Test
+    void nodeFailingWith5xxIsEjectedAfterTheThreshold() throws Exception {
+        ollamaConfig.setNodes(List.of(stub("{}", 500), stub("{}", 200)));
+        OllamaNodeBalancer balancer = balancer();
+        OllamaNode failing = balancer.getNodes().get(0);
+
+        chat(balancer, failing);
+        assertThat(failing.isAvailable(System.currentTimeMillis())).isTrue();
+        chat(balancer, failing);
+        assertThat(failing.isAvailable(System.currentTimeMillis())).isFalse();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(balancer.select(MODEL)).isSameAs(balancer.getNodes().get(1));
+        }
+        awaitIdle(failing);
+    }
+
+    @Test
+    void unreachableNodeIsEjected() throws Exception {
+        // A port that was free a moment ago, nothing listens on it any more
+        String unreachable;
+        try (ServerSocket closed = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+            unreachable = "http://127.0.0.1:" + closed.getLocalPort() + "/api";
+        }
+        ollamaConfig.setNodes(List.of(unreachable, stub("{}", 200)));
+        OllamaNodeBalancer balancer = balancer();
+
+        chat(balancer, balancer.getNodes().get(0));
+        chat(balancer, balancer.getNodes().get(0));
+
+        assertThat(balancer.getNodes().get(0).isAvailable(System.currentTimeMillis())).isFalse();
+    }
+
+    @Test
+    void onlyGenerationsMarkTheModelLoaded() throws Exception {
+        ollamaConfig.setNodes(List.of(stub("{}", 200)));
+        OllamaNodeBalancer balancer = balancer();
+        OllamaNode node = balancer.getNodes().get(0);
+        ReactiveOllamaModelService modelService = new ReactiveOllamaModelService(balancer, event -> { });
+
+        assertThat(modelService.getModelDetails(MODEL).block(TIMEOUT)).isNotNull();
+        modelService.pushModel(MODEL, false, false).block(TIMEOUT);
+        assertThat(node.hasModelLoaded(MODEL)).isFalse();
+
+        balancer.execute(MODEL, client -> client.post()
+                        .uri("/chat")
+                        .retrieve()
+                        .toBodilessEntity())
+                .block(TIMEOUT);
+        assertThat(node.hasModelLoaded(MODEL)).isTrue();
+    }
+
+    @Test
+    void clientErrorsDoNotCountAgainstTheNode() throws Exception {
+        ollamaConfig.setNodes(List.of(stub("{}", 404)));
+        OllamaNodeBalancer balancer = balancer();
+        OllamaNode node = balancer.getNodes().get(0);
+
+        for (int i = 0; i < 5; i++) {
+            chat(balancer, node);
+        }
+
+        assertThat(node.getConsecutiveFailures()).hasValue(0);
+        assertThat(node.isAvailable(System.currentTimeMillis())).isTrue();
+    }
+
+    @Test
+    void successResetsTheFailureCount() throws Exception {
+        AtomicInteger status = new AtomicInteger(500);
+        ollamaConfig.setNodes(List.of(stub("{}", status)));
+        OllamaNodeBalancer balancer = balancer();
+        OllamaNode node = balancer.getNodes().get(0);
+
+        chat(balancer, node);
+        status.set(200);
+        chat(balancer, node);
+        status.set(500);
+        chat(balancer, node);
+
+        assertThat(node.getConsecutiveFailures()).hasValue(1);
+        assertThat(node.isAvailable(System.currentTimeMillis())).isTrue();
+    }
+
+    @Test
+    void everyNodeEjectedFailsOpen() throws Exception {
+        ollamaConfig.setNodes(List.of(stub("{}", 500), stub("{}", 500)));
+        OllamaNodeBalancer balancer = balancer();
+        for (OllamaNode node : balancer.getNodes()) {
+            chat(balancer, node);
+            chat(balancer, node);
+        }
+
+        assertThat(balancer.select(MODEL)).isIn(balancer.getNodes());
+    }
+
+    private OllamaNodeBalancer balancer() {
+        return new OllamaNodeBalancer(ollamaConfig, WebClient.builder());
+    }
+
+    private static void chat(OllamaNodeBalancer balancer, OllamaNode node) {
+        balancer.executeOn(node, client -> client.post()
+                        .uri("/chat")
+                        .retrieve()
+                        .toBodilessEntity())
+                .onErrorResume(e -> Mono.empty())
+                .block(TIMEOUT);
+    }
+
+    private static void awaitLoaded(OllamaNode node) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!node.hasModelLoaded(MODEL) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(node.hasModelLoaded(MODEL)).isTrue();
+    }
+
+    // The in-flight count drops in doFinally, just after the caller has seen the result
+    private static void awaitIdle(OllamaNode node) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (node.getInFlight().get() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(node.getInFlight()).hasValue(0);
+    }
+
+    private String stub(String psBody, int chatStatus) throws IOException {
+        return stub(psBody, new AtomicInteger(chatStatus));
+    }
+
+    // A node answering /api/ps with the given body, /api/chat with the given status and /api/show and /api/push
+    private String stub(String psBody, AtomicInteger chatStatus) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/ps", exchange -> respond(exchange, 200, psBody));
+        server.createContext("/api/chat", exchange -> respond(exchange, chatStatus.get(), "{}"));
+        server.createContext("/api/show", exchange -> respond(exchange, 200, "{\"details\": {\"family\": \"llama\"}}"));
+        server.createContext("/api/push", exchange -> respond(exchange, 200, "{\"status\": \"success\"}"));
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getRequestBody().readAllBytes();
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
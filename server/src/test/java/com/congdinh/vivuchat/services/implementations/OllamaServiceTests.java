@@ -0,0 +1,83 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import com.congdinh.vivuchat.exceptions.RateLimitExceededException;
+import com.congdinh.vivuchat.services.interfaces.ICompletionCache;
+import com.congdinh.vivuchat.services.interfaces.IGenerationScheduler;
+import com.congdinh.vivuchat.services.interfaces.IModelRegistry;
+import com.congdinh.vivuchat.services.interfaces.IOllamaNodeBalancer;
+import com.congdinh.vivuchat.services.interfaces.IUsageLimiter;
+import com.congdinh.vivuchat.services.interfaces.IUsageMeter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class OllamaServiceTests {
+
+    private static final List<Map<String, String>> MESSAGES = List.of(Map.of("role", "user", "content", "Xin chao"));
+
+    private final ICompletionCache completionCache = mock(ICompletionCache.class);
+    private final IGenerationScheduler generationScheduler = mock(IGenerationScheduler.class);
+    private final IUsageLimiter usageLimiter = mock(IUsageLimiter.class);
+    private final IModelRegistry modelRegistry = mock(IModelRegistry.class);
+    private final OllamaCompletionResponse cachedResponse = OllamaCompletionResponse.builder()
+            .model("test:latest")
+            .message(new OllamaCompletionResponse.OllamaMessage("assistant", "Chao ban"))
+            .done(true)
+            .build();
+    private OllamaService ollamaService;
+
+    @BeforeEach
+    void setUp() {
+        OllamaConfig ollamaConfig = new OllamaConfig();
+        ollamaService = new OllamaService(mock(IOllamaNodeBalancer.class), generationScheduler,
+                new CompletionCoalescer(new SimpleMeterRegistry()), completionCache, ollamaConfig,
+                mock(OllamaNdjsonDecoder.class),
+                new TokenBatcher(ollamaConfig, new SimpleMeterRegistry()), mock(GenerationCancellationTracker.class),
+                new ResumableStreamRegistry(ollamaConfig), usageLimiter, mock(IUsageMeter.class),
+                mock(InferenceMetrics.class), modelRegistry);
+        when(modelRegistry.checkInstalled(anyString())).thenReturn(Mono.just(true));
+        when(completionCache.isCacheable(any())).thenReturn(true);
+        when(completionCache.keyOf(any())).thenReturn("key");
+        when(completionCache.get("key")).thenReturn(Optional.of(cachedResponse));
+    }
+
+    @Test
+    void cachedAnswerCountsAgainstTheRequestRate() {
+        when(usageLimiter.admit(anyString(), any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(ollamaService.requestCompletion("test:latest", MESSAGES, null))
+                .expectNext(cachedResponse)
+                .verifyComplete();
+        verify(usageLimiter).admit(anyString(), any());
+        verifyNoInteractions(generationScheduler);
+    }
+
+    @Test
+    void overLimitCallerIsNotServedFromTheCache() {
+        when(usageLimiter.admit(anyString(), any()))
+                .thenReturn(Mono.error(new RateLimitExceededException("Rate limit exceeded", 30)));
+
+        StepVerifier.create(ollamaService.requestCompletion("test:latest", MESSAGES, null))
+                .expectError(RateLimitExceededException.class)
+                .verify();
+        StepVerifier.create(ollamaService.streamChat("test:latest", MESSAGES, null))
+                .expectError(RateLimitExceededException.class)
+                .verify();
+        verifyNoInteractions(generationScheduler);
+    }
+}
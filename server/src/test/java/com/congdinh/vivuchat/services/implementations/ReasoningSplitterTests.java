@@ -0,0 +1,66 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.services.implementations.ReasoningSplitter.Segment;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReasoningSplitterTests {
+
+    @Test
+    void tagsSplitAcrossChunksAreRecognised() {
+        List<Segment> segments = feedAll("<th", "ink>pla", "n</thi", "nk>\n\nAns", "wer");
+
+        assertThat(segments).containsExactly(
+                new Segment(true, "pla"),
+                new Segment(true, "n"),
+                new Segment(false, "Ans"),
+                new Segment(false, "wer"));
+    }
+
+    @Test
+    void thinkTagsAfterTheAnswerStartedArePassedThrough() {
+        List<Segment> segments = feedAll("Answer ", "<think>x</think>");
+
+        assertThat(segments).containsExactly(
+                new Segment(false, "Answer "),
+                new Segment(false, "<think>x</think>"));
+    }
+
+    @Test
+    void partialTagHeldBackUntilTheStreamEnds() {
+        ReasoningSplitter splitter = new ReasoningSplitter();
+
+        assertThat(splitter.feed("<thi")).isEmpty();
+        assertThat(splitter.finish()).containsExactly(new Segment(false, "<thi"));
+    }
+
+    @Test
+    void replyCutOffMidReasoningKeepsItAsReasoning() {
+        ReasoningSplitter splitter = new ReasoningSplitter();
+
+        assertThat(splitter.feed("<think>cut off")).containsExactly(new Segment(true, "cut off"));
+        assertThat(splitter.finish()).isEmpty();
+    }
+
+    @Test
+    void splitSeparatesStoredReply() {
+        assertThat(ReasoningSplitter.split("<think>why</think> Because."))
+                .isEqualTo(new ReasoningSplitter.Split("why", "Because."));
+        assertThat(ReasoningSplitter.split("Just an answer"))
+                .isEqualTo(new ReasoningSplitter.Split(null, "Just an answer"));
+    }
+
+    private static List<Segment> feedAll(String... chunks) {
+        ReasoningSplitter splitter = new ReasoningSplitter();
+        List<Segment> segments = new ArrayList<>();
+        for (String chunk : chunks) {
+            segments.addAll(splitter.feed(chunk));
+        }
+        segments.addAll(splitter.finish());
+        return segments;
+    }
+}
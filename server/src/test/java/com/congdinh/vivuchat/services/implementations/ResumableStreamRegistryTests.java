@@ -0,0 +1,170 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.exceptions.ChatException;
+import com.congdinh.vivuchat.exceptions.ResourceNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResumableStreamRegistryTests {
+
+    private final ResumableStreamRegistry registry = new ResumableStreamRegistry(new OllamaConfig());
+
+    @Test
+    void ownerResumesAfterTheLastEventItSaw() {
+        Sinks.Many<ServerSentEvent<Object>> source = Sinks.many().unicast().onBackpressureBuffer();
+        List<ServerSentEvent<Object>> received = new ArrayList<>();
+        Disposable client = registry.start(source.asFlux(), "alice").subscribe(received::add);
+        source.tryEmitNext(event("a"));
+        source.tryEmitNext(event("b"));
+        client.dispose();
+        source.tryEmitNext(event("c"));
+        source.tryEmitComplete();
+
+        StepVerifier.create(registry.resume(received.get(0).id(), "alice").map(ServerSentEvent::data))
+                .expectNext("b", "c")
+                .verifyComplete();
+    }
+
+    @Test
+    void otherRequestersCannotResume() {
+        Sinks.Many<ServerSentEvent<Object>> source = Sinks.many().unicast().onBackpressureBuffer();
+        List<ServerSentEvent<Object>> received = new ArrayList<>();
+        registry.start(source.asFlux(), "alice").subscribe(received::add);
+        source.tryEmitNext(event("a"));
+
+        String lastEventId = received.get(0).id();
+        assertThatThrownBy(() -> registry.resume(lastEventId, "mallory"))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> registry.resume(lastEventId, null))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void secondGenerationForTheSameKeyIsRejectedUntilTheFirstEnds() {
+        Sinks.Many<ServerSentEvent<Object>> first = Sinks.many().unicast().onBackpressureBuffer();
+        List<Object> received = new ArrayList<>();
+        registry.reserve("chat:1", "alice").start(first.asFlux()).subscribe(event -> received.add(event.data()));
+        assertThat(registry.isRunning("chat:1")).isTrue();
+
+        assertThatThrownBy(() -> registry.reserve("chat:1", "alice"))
+                .isInstanceOf(ChatException.class);
+
+        // The running generation is untouched
+        first.tryEmitNext(event("a"));
+        first.tryEmitComplete();
+        assertThat(received).containsExactly("a");
+        assertThat(registry.isRunning("chat:1")).isFalse();
+    }
+
+    @Test
+    void keyIsClaimedByTheReservationAndFreedWhenReleased() {
+        ResumableStreamRegistry.Reservation reservation = registry.reserve("chat:1", "alice");
+        assertThat(registry.isRunning("chat:1")).isTrue();
+        assertThatThrownBy(() -> registry.reserve("chat:1", "bob"))
+                .isInstanceOf(ChatException.class);
+
+        reservation.release();
+
+        assertThat(registry.isRunning("chat:1")).isFalse();
+        StepVerifier.create(reservation.start(Flux.just(event("a"))))
+                .expectError(ChatException.class)
+                .verify();
+        registry.reserve("chat:1", "bob").release();
+    }
+
+    @Test
+    void releaseIsIgnoredOnceTheGenerationHasStarted() {
+        Sinks.Many<ServerSentEvent<Object>> source = Sinks.many().unicast().onBackpressureBuffer();
+        List<Object> received = new ArrayList<>();
+        ResumableStreamRegistry.Reservation reservation = registry.reserve("chat:1", "alice");
+        reservation.start(source.asFlux()).subscribe(event -> received.add(event.data()));
+
+        reservation.release();
+        source.tryEmitNext(event("a"));
+
+        assertThat(received).containsExactly("a");
+        assertThat(registry.isRunning("chat:1")).isTrue();
+    }
+
+    @Test
+    void reservationThatIsNeverStartedExpires() throws InterruptedException {
+        OllamaConfig config = new OllamaConfig();
+        config.setStreamResumeGraceSeconds(0);
+        ResumableStreamRegistry registry = new ResumableStreamRegistry(config);
+
+        registry.reserve("chat:1", "alice");
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (registry.isRunning("chat:1") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(registry.isRunning("chat:1")).isFalse();
+    }
+
+    @Test
+    void synchronousSourceLongerThanTheBufferReachesTheFirstClientWhole() {
+        OllamaConfig config = new OllamaConfig();
+        config.setStreamResumeBufferEvents(4);
+        ResumableStreamRegistry registry = new ResumableStreamRegistry(config);
+
+        // Like a cached reply, every event is emitted during the subscription
+        StepVerifier.create(registry.start(Flux.range(0, 20).map(i -> event("t" + i)), "alice"))
+                .expectNextCount(20)
+                .verifyComplete();
+    }
+
+    @Test
+    void keyedGenerationWithoutClientsRunsToTheEnd() throws InterruptedException {
+        OllamaConfig config = new OllamaConfig();
+        config.setStreamResumeGraceSeconds(1);
+        ResumableStreamRegistry registry = new ResumableStreamRegistry(config);
+        Sinks.Many<ServerSentEvent<Object>> source = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicBoolean saved = new AtomicBoolean();
+
+        registry.reserve("chat:1", "alice")
+                .start(source.asFlux().concatWith(Mono.fromRunnable(() -> saved.set(true))))
+                .subscribe()
+                .dispose();
+        // Past the grace period the source is still subscribed
+        Thread.sleep(1500);
+        assertThat(source.currentSubscriberCount()).isEqualTo(1);
+
+        source.tryEmitNext(event("a"));
+        source.tryEmitComplete();
+        assertThat(saved).isTrue();
+        assertThat(registry.isRunning("chat:1")).isFalse();
+    }
+
+    @Test
+    void generationWithoutKeyIsCancelledWhenNobodyReconnects() throws InterruptedException {
+        OllamaConfig config = new OllamaConfig();
+        config.setStreamResumeGraceSeconds(0);
+        ResumableStreamRegistry registry = new ResumableStreamRegistry(config);
+        Sinks.Many<ServerSentEvent<Object>> source = Sinks.many().unicast().onBackpressureBuffer();
+
+        registry.start(source.asFlux(), "alice").subscribe().dispose();
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (source.currentSubscriberCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(source.currentSubscriberCount()).isZero();
+    }
+
+    private static ServerSentEvent<Object> event(String data) {
+        return ServerSentEvent.<Object>builder().data(data).build();
+    }
+}
@@ -0,0 +1,133 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.OllamaConfig;
+import com.congdinh.vivuchat.dtos.ollama.OllamaCompletionResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBatcherTests {
+
+    private final OllamaConfig ollamaConfig = new OllamaConfig();
+    private TokenBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        // Long enough that only the size limit or the end of the stream flushes
+        ollamaConfig.setStreamFlushMillis(60_000);
+        ollamaConfig.setStreamFlushBytes(512);
+        batcher = new TokenBatcher(ollamaConfig, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void firstTokenIsSentAtOnceAndTheRestWithTheFinalChunk() {
+        Sinks.Many<OllamaCompletionResponse> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        List<OllamaCompletionResponse> received = new ArrayList<>();
+        batcher.batch(upstream.asFlux()).subscribe(received::add);
+
+        upstream.tryEmitNext(token("Xin"));
+        assertThat(contents(received)).containsExactly("Xin");
+
+        upstream.tryEmitNext(token(" chao"));
+        upstream.tryEmitNext(token(" ban"));
+        assertThat(received).hasSize(1);
+
+        upstream.tryEmitNext(done("!"));
+        upstream.tryEmitComplete();
+        assertThat(contents(received)).containsExactly("Xin", " chao ban!");
+        assertThat(received.get(1).isDone()).isTrue();
+        assertThat(received.get(1).getEval_count()).isEqualTo(4);
+    }
+
+    @Test
+    void batchIsFlushedOnceItReachesTheSizeLimit() {
+        ollamaConfig.setStreamFlushBytes(4);
+        Sinks.Many<OllamaCompletionResponse> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        List<OllamaCompletionResponse> received = new ArrayList<>();
+        batcher.batch(upstream.asFlux()).subscribe(received::add);
+
+        upstream.tryEmitNext(token("a"));
+        upstream.tryEmitNext(token("bb"));
+        upstream.tryEmitNext(token("cc"));
+        upstream.tryEmitNext(token("d"));
+
+        assertThat(contents(received)).containsExactly("a", "bbcc");
+    }
+
+    @Test
+    void batchIsFlushedWhenTheTimerFires() {
+        ollamaConfig.setStreamFlushMillis(20);
+        Sinks.Many<OllamaCompletionResponse> upstream = Sinks.many().unicast().onBackpressureBuffer();
+
+        StepVerifier.create(batcher.batch(upstream.asFlux()))
+                .then(() -> {
+                    upstream.tryEmitNext(token("a"));
+                    upstream.tryEmitNext(token("b"));
+                    upstream.tryEmitNext(token("c"));
+                })
+                .assertNext(chunk -> assertThat(chunk.getMessage().getContent()).isEqualTo("a"))
+                .assertNext(chunk -> assertThat(chunk.getMessage().getContent()).isEqualTo("bc"))
+                .then(upstream::tryEmitComplete)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void pendingTextIsFlushedBeforeAnError() {
+        Flux<OllamaCompletionResponse> upstream = Flux.just(token("a"), token("b"))
+                .concatWith(Flux.error(new IllegalStateException("node down")));
+
+        StepVerifier.create(batcher.batch(upstream))
+                .assertNext(chunk -> assertThat(chunk.getMessage().getContent()).isEqualTo("a"))
+                .assertNext(chunk -> assertThat(chunk.getMessage().getContent()).isEqualTo("b"))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void subscriberContextReachesTheUpstream() {
+        // Admission and routing read the requester from the context below the batcher
+        Flux<OllamaCompletionResponse> upstream = Flux.deferContextual(context ->
+                Flux.just(token(context.get("vivuchat.requester")), done("")));
+
+        StepVerifier.create(batcher.batch(upstream).contextWrite(Context.of("vivuchat.requester", "alice")))
+                .assertNext(chunk -> assertThat(chunk.getMessage().getContent()).isEqualTo("alice"))
+                .assertNext(chunk -> assertThat(chunk.isDone()).isTrue())
+                .verifyComplete();
+    }
+
+    @Test
+    void disabledBatchingPassesChunksThrough() {
+        ollamaConfig.setStreamFlushMillis(0);
+        Flux<OllamaCompletionResponse> upstream = Flux.just(token("a"), token("b"));
+
+        assertThat(batcher.batch(upstream)).isSameAs(upstream);
+    }
+
+    private static OllamaCompletionResponse token(String content) {
+        return OllamaCompletionResponse.builder()
+                .message(new OllamaCompletionResponse.OllamaMessage("assistant", content))
+                .build();
+    }
+
+    private static OllamaCompletionResponse done(String content) {
+        return token(content).toBuilder()
+                .done(true)
+                .eval_count(4)
+                .build();
+    }
+
+    private static List<String> contents(List<OllamaCompletionResponse> chunks) {
+        return chunks.stream().map(chunk -> chunk.getMessage().getContent()).toList();
+    }
+}
@@ -0,0 +1,146 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.UsageLimitConfig;
+import com.congdinh.vivuchat.exceptions.RateLimitExceededException;
+import com.congdinh.vivuchat.repositories.IUserRepository;
+import com.congdinh.vivuchat.repositories.IUserTokenUsageRepository;
+import com.congdinh.vivuchat.services.implementations.UsageLimiter.Allowance;
+import com.congdinh.vivuchat.services.implementations.UsageLimiter.Limits;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UsageLimiterTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final UsageLimitConfig limitConfig = new UsageLimitConfig();
+    private UsageLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        IUserRepository userRepository = mock(IUserRepository.class);
+        IUserTokenUsageRepository usageRepository = mock(IUserTokenUsageRepository.class);
+        when(userRepository.findByUsername(anyString())).thenReturn(Optional.empty());
+        when(usageRepository.findByUsernameAndUsageDay(anyString(), any())).thenReturn(Optional.empty());
+        limiter = new UsageLimiter(limitConfig, userRepository, usageRepository, null,
+                new SimpleMeterRegistry(), Schedulers.immediate());
+    }
+
+    @Test
+    void gcraAllowsABurstOfTheRateThenOneRequestPerInterval() {
+        // 60 per minute: one every second, up to 60 at once
+        Limits limits = Limits.of(60, 0);
+        Allowance allowance = new Allowance(limits, LocalDate.now(), 0, true);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 60; i++) {
+            assertThat(allowance.tryTakeRequest(limits, now)).as("request %d", i + 1).isZero();
+        }
+        assertThat(allowance.tryTakeRequest(limits, now)).isEqualTo(SECOND);
+        assertThat(allowance.tryTakeRequest(limits, now + SECOND / 2)).isEqualTo(SECOND / 2);
+
+        assertThat(allowance.tryTakeRequest(limits, now + SECOND)).isZero();
+        assertThat(allowance.tryTakeRequest(limits, now + SECOND)).isEqualTo(SECOND);
+    }
+
+    @Test
+    void gcraRefillsWhileIdle() {
+        Limits limits = Limits.of(2, 0);
+        Allowance allowance = new Allowance(limits, LocalDate.now(), 0, true);
+        long now = System.nanoTime();
+
+        assertThat(allowance.tryTakeRequest(limits, now)).isZero();
+        assertThat(allowance.tryTakeRequest(limits, now)).isZero();
+        assertThat(allowance.tryTakeRequest(limits, now)).isPositive();
+
+        // A full minute later the whole burst is available again
+        long later = now + TimeUnit.MINUTES.toNanos(1);
+        assertThat(allowance.tryTakeRequest(limits, later)).isZero();
+        assertThat(allowance.tryTakeRequest(limits, later)).isZero();
+    }
+
+    @Test
+    void zeroRateIsUnlimited() {
+        Limits limits = Limits.of(0, 0);
+        Allowance allowance = new Allowance(limits, LocalDate.now(), 0, true);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(allowance.tryTakeRequest(limits, now)).isZero();
+        }
+    }
+
+    @Test
+    void admitRejectsOverTheRateWithRetryAfter() {
+        limitConfig.setRequestsPerMinute(2);
+
+        StepVerifier.create(limiter.admit("alice", List.of())).verifyComplete();
+        StepVerifier.create(limiter.admit("alice", List.of())).verifyComplete();
+        StepVerifier.create(limiter.admit("alice", List.of()))
+                .expectErrorSatisfies(error -> {
+                    assertThat(error).isInstanceOf(RateLimitExceededException.class);
+                    assertThat(((RateLimitExceededException) error).getRetryAfterSeconds()).isPositive();
+                })
+                .verify();
+        // Buckets are per requester
+        StepVerifier.create(limiter.admit("bob", List.of())).verifyComplete();
+    }
+
+    @Test
+    void mostGenerousRoleWinsAndUserOverrideBeatsRoles() {
+        limitConfig.setRequestsPerMinute(1);
+        UsageLimitConfig.Limit unlimited = new UsageLimitConfig.Limit();
+        unlimited.setRequestsPerMinute(0);
+        limitConfig.getRoles().put("ROLE_ADMIN", unlimited);
+        UsageLimitConfig.Limit strict = new UsageLimitConfig.Limit();
+        strict.setRequestsPerMinute(1);
+        limitConfig.getUsers().put("root", strict);
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(limiter.admit("admin", List.of("ROLE_USER", "ROLE_ADMIN"))).verifyComplete();
+        }
+        StepVerifier.create(limiter.admit("root", List.of("ROLE_ADMIN"))).verifyComplete();
+        StepVerifier.create(limiter.admit("root", List.of("ROLE_ADMIN")))
+                .expectError(RateLimitExceededException.class)
+                .verify();
+    }
+
+    @Test
+    void dailyTokenQuotaBlocksFurtherGenerations() {
+        limitConfig.setTokensPerDay(100);
+
+        StepVerifier.create(limiter.checkQuota("alice", List.of())).verifyComplete();
+        limiter.recordTokens("alice", 100);
+
+        StepVerifier.create(limiter.checkQuota("alice", List.of()))
+                .expectError(RateLimitExceededException.class)
+                .verify();
+        StepVerifier.create(limiter.admit("alice", List.of()))
+                .expectError(RateLimitExceededException.class)
+                .verify();
+    }
+
+    @Test
+    void disabledLimiterAdmitsEverything() {
+        limitConfig.setEnabled(false);
+        limitConfig.setRequestsPerMinute(1);
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(limiter.admit("alice", List.of())).verifyComplete();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.congdinh.vivuchat.services.implementations;
+
+import com.congdinh.vivuchat.config.TokenizerConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VocabTokenCounterTests {
+
+    private static final String TOKENIZER_JSON = """
+            {
+              "model": {
+                "type": "BPE",
+                "vocab": {"h": 0, "e": 1, "l": 2, "o": 3, "Ġ": 4, "w": 5, "r": 6, "d": 7,
+                          "he": 8, "ll": 9, "hell": 10, "hello": 11, "Ġw": 12},
+                "merges": ["h e", "l l", "he ll", "hell o", ["Ġ", "w"]]
+              }
+            }
+            """;
+
+    @TempDir
+    Path dir;
+
+    private final TokenizerConfig tokenizerConfig = new TokenizerConfig();
+    private VocabTokenCounter counter;
+
+    @BeforeEach
+    void setUp() {
+        counter = new VocabTokenCounter(tokenizerConfig, new HeuristicTokenCounter(), new ObjectMapper(),
+                Schedulers.immediate());
+    }
+
+    @Test
+    void countsWithTheConfiguredVocabulary() throws IOException {
+        Path vocab = Files.writeString(dir.resolve("tokenizer.json"), TOKENIZER_JSON);
+        tokenizerConfig.getVocabs().put("tiny:latest", vocab.toString());
+
+        assertThat(counter.count("tiny:latest", "hello world")).isEqualTo(6);
+        // Names without a tag resolve to ":latest" like Ollama does
+        assertThat(counter.count("tiny", "hello world")).isEqualTo(6);
+    }
+
+    @Test
+    void modelsWithoutVocabularyUseTheEstimate() {
+        // 11 ASCII characters, about four per token
+        assertThat(counter.count("other", "hello world")).isEqualTo(3);
+        assertThat(counter.count(null, "hello world")).isEqualTo(3);
+    }
+
+    @Test
+    void unreadableVocabularyFallsBackToTheEstimate() throws IOException {
+        Path broken = Files.writeString(dir.resolve("broken.json"), "{\"model\": {\"type\": \"Unigram\"}}");
+        tokenizerConfig.getVocabs().put("broken:latest", broken.toString());
+
+        assertThat(counter.count("broken:latest", "hello world")).isEqualTo(3);
+    }
+
+    @Test
+    void countsAreEstimatedUntilTheVocabularyHasLoaded() throws IOException {
+        Path vocab = Files.writeString(dir.resolve("tokenizer.json"), TOKENIZER_JSON);
+        tokenizerConfig.getVocabs().put("tiny:latest", vocab.toString());
+        Queue<Runnable> pending = new ArrayDeque<>();
+        counter = new VocabTokenCounter(tokenizerConfig, new HeuristicTokenCounter(), new ObjectMapper(),
+                Schedulers.fromExecutor(pending::add));
+
+        counter.warmUp();
+        assertThat(counter.count("tiny", "hello world")).isEqualTo(3);
+
+        pending.forEach(Runnable::run);
+        assertThat(counter.count("tiny", "hello world")).isEqualTo(6);
+    }
+}